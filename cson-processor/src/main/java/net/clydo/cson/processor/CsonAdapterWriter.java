@@ -0,0 +1,363 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.processor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the source of one generated adapter. Generated code refers to every type by its
+ * qualified name, so that it cannot clash with the names used by the serialized type.
+ */
+final class CsonAdapterWriter {
+    private static final Map<String, String> UNBOXED = Map.of(
+            "java.lang.Boolean", "boolean",
+            "java.lang.Byte", "byte",
+            "java.lang.Short", "short",
+            "java.lang.Character", "char",
+            "java.lang.Integer", "int",
+            "java.lang.Long", "long",
+            "java.lang.Float", "float",
+            "java.lang.Double", "double"
+    );
+    private static final Map<String, String> DEFAULTS = Map.of(
+            "boolean", "false",
+            "byte", "(byte) 0",
+            "short", "(short) 0",
+            "char", "'\\0'",
+            "int", "0",
+            "long", "0L",
+            "float", "0F",
+            "double", "0D"
+    );
+
+    private final String packageName;
+    private final String adapterName;
+    private final String typeName;
+    private final boolean record;
+    private final List<CsonProperty> properties;
+    private final StringBuilder out = new StringBuilder();
+    private int indent;
+
+    CsonAdapterWriter(String packageName, String adapterName, String typeName, boolean record, List<CsonProperty> properties) {
+        this.packageName = packageName;
+        this.adapterName = adapterName;
+        this.typeName = typeName;
+        this.record = record;
+        this.properties = properties;
+    }
+
+    String write() {
+        if (!this.packageName.isEmpty()) {
+            this.line("package " + this.packageName + ";").line("");
+        }
+        this.line("@javax.annotation.processing.Generated(\"" + CsonProcessor.class.getName() + "\")");
+        this.open("public final class " + this.adapterName + " extends net.clydo.cson.binding.CsonGeneratedAdapter<" + this.typeName + ">");
+        this.writeAdapterFields();
+        this.open("public " + this.adapterName + "(com.google.gson.Gson gson)").line("super(gson);").close().line("");
+        this.writeAdapterAccessors();
+        this.writeStreamWrite();
+        this.writeStreamRead();
+        this.writeTreeRead();
+        this.writeTreeWrite();
+        this.writeFactory();
+        this.close();
+        return this.out.toString();
+    }
+
+    private void writeAdapterFields() {
+        boolean any = false;
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            if (property.kind() != CsonProperty.Kind.DELEGATE) {
+                continue;
+            }
+            String token = "com.google.gson.reflect.TypeToken<" + property.type() + ">";
+            String initializer = property.primitive()
+                    ? "com.google.gson.reflect.TypeToken.get(" + UNBOXED.get(property.type()) + ".class)"
+                    : "new " + token + "() {}";
+            this.line("private static final " + token + " TYPE_" + i + " = " + initializer + ";");
+            any = true;
+        }
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            if (property.kind() == CsonProperty.Kind.DELEGATE) {
+                this.line("private com.google.gson.TypeAdapter<" + property.type() + "> adapter" + i + ";");
+            }
+        }
+        if (any) {
+            this.line("");
+        }
+    }
+
+    private void writeAdapterAccessors() {
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            if (property.kind() != CsonProperty.Kind.DELEGATE) {
+                continue;
+            }
+            this.open("private com.google.gson.TypeAdapter<" + property.type() + "> adapter" + i + "()")
+                    .line("com.google.gson.TypeAdapter<" + property.type() + "> adapter = this.adapter" + i + ";")
+                    .open("if (adapter == null)")
+                    .line("this.adapter" + i + " = adapter = this.adapter(TYPE_" + i + ");")
+                    .close()
+                    .line("return adapter;")
+                    .close()
+                    .line("");
+        }
+    }
+
+    private void writeStreamWrite() {
+        this.line("@Override");
+        this.open("public void write(com.google.gson.stream.JsonWriter out, " + this.typeName + " value) throws java.io.IOException");
+        this.open("if (value == null)").line("out.nullValue();").line("return;").close();
+        this.line("out.beginObject();");
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            this.line("out.name(" + literal(property.jsonName()) + ");");
+            String getter = property.getter();
+            this.line(switch (property.kind()) {
+                case INT, BOOLEAN, STRING -> "out.value(" + getter + ");";
+                case LONG -> "this.writeLong(out, " + getter + ");";
+                case DOUBLE -> "this.writeDouble(out, " + getter + ");";
+                case FLOAT -> "this.writeFloat(out, " + getter + ");";
+                case DELEGATE -> "this.adapter" + i + "().write(out, " + getter + ");";
+            });
+        }
+        this.line("out.endObject();");
+        this.close().line("");
+    }
+
+    private void writeStreamRead() {
+        this.line("@Override");
+        this.open("public " + this.typeName + " read(com.google.gson.stream.JsonReader in) throws java.io.IOException");
+        this.open("if (nextIsNull(in))").line("return null;").close();
+        this.writeTarget();
+        this.line("in.beginObject();");
+        this.open("while (in.hasNext())");
+        this.open("switch (in.nextName())");
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            this.open("case " + this.labels(property) + " ->");
+            switch (property.kind()) {
+                case INT -> this.readPrimitive(property, "nextInt(in)");
+                case LONG -> this.readPrimitive(property, "nextLong(in)");
+                case DOUBLE -> this.readPrimitive(property, "nextDouble(in)");
+                case FLOAT -> this.readPrimitive(property, "(float) nextDouble(in)");
+                case BOOLEAN -> this.readPrimitive(property, "nextBoolean(in)");
+                case STRING -> this.line(property.setter().formatted("nextIsNull(in) ? null : nextString(in)"));
+                case DELEGATE -> this.readDelegate(property, "this.adapter" + i + "().read(in)");
+            }
+            this.close();
+        }
+        this.line("default -> in.skipValue();");
+        this.close();
+        this.close();
+        this.line("in.endObject();");
+        this.writeResult();
+        this.close().line("");
+    }
+
+    private void readPrimitive(CsonProperty property, String read) {
+        this.open("if (!nextIsNull(in))").line(property.setter().formatted(read));
+        this.rejectNull(property);
+    }
+
+    private void writeTreeRead() {
+        this.line("@Override");
+        this.open("public " + this.typeName + " fromTree(net.clydo.cson.element.CsonElement element, net.clydo.cson.binding.CsonBinder binder)");
+        this.open("if (element.isNull())").line("return null;").close();
+        this.line("net.clydo.cson.element.CsonObject object = expectObject(element);");
+        this.writeTarget();
+        this.open("for (java.util.Map.Entry<java.lang.String, net.clydo.cson.element.CsonElement> entry : object)");
+        this.line("net.clydo.cson.element.CsonElement member = entry.getValue();");
+        this.open("switch (entry.getKey())");
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            this.open("case " + this.labels(property) + " ->");
+            switch (property.kind()) {
+                case INT -> this.bindPrimitive(property, "intValue(member)");
+                case LONG -> this.bindPrimitive(property, "longValue(member)");
+                case DOUBLE -> this.bindPrimitive(property, "doubleValue(member)");
+                case FLOAT -> this.bindPrimitive(property, "floatValue(member)");
+                case BOOLEAN -> this.bindPrimitive(property, "booleanValue(member)");
+                case STRING -> this.line(property.setter().formatted("stringValue(member)"));
+                case DELEGATE -> this.readDelegate(property, "binder.bind(member, TYPE_" + i + ")");
+            }
+            this.close();
+        }
+        this.open("default ->").close();
+        this.close();
+        this.close();
+        this.writeResult();
+        this.close().line("");
+    }
+
+    private void bindPrimitive(CsonProperty property, String read) {
+        this.open("if (!member.isNull())").line(property.setter().formatted(read));
+        this.rejectNull(property);
+    }
+
+    private void readDelegate(CsonProperty property, String read) {
+        if (property.primitive()) {
+            // Primitives keep their value on null, as with reflection (records reject it)
+            this.line(property.type() + " read = " + read + ";");
+            this.open("if (read != null)").line(property.setter().formatted("read"));
+            this.rejectNull(property);
+        } else {
+            this.line(property.setter().formatted(read));
+        }
+    }
+
+    /**
+     * Closes the branch that stored a non-null value. Records reject null for primitive
+     * components like Gson does, since there is no field default to keep.
+     */
+    private void rejectNull(CsonProperty property) {
+        if (!this.record) {
+            this.close();
+            return;
+        }
+        this.indent--;
+        this.open("} else");
+        this.line("throw new com.google.gson.JsonParseException(" + literal("null is not allowed as value for record component '" + property.jsonName() + "' of primitive type") + ");");
+        this.close();
+    }
+
+    private void writeTreeWrite() {
+        this.line("@Override");
+        this.open("public net.clydo.cson.element.CsonElement toTree(" + this.typeName + " value, net.clydo.cson.binding.CsonBinder binder)");
+        this.open("if (value == null)").line("return net.clydo.cson.element.CsonNull.INSTANCE;").close();
+        this.line("net.clydo.cson.element.CsonObject object = new net.clydo.cson.element.CsonObject(" + this.properties.size() + ");");
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            String getter = property.getter();
+            String tree = switch (property.kind()) {
+                case INT -> "net.clydo.cson.element.CsonPrimitive.of((long) " + getter + ")";
+                case BOOLEAN -> "net.clydo.cson.element.CsonPrimitive.of(" + getter + ")";
+                case LONG -> "this.longTree(" + getter + ")";
+                case DOUBLE -> "this.doubleTree(" + getter + ")";
+                case FLOAT -> "this.floatTree(" + getter + ")";
+                case STRING -> "stringTree(" + getter + ")";
+                case DELEGATE -> "binder.toTree(" + getter + ", TYPE_" + i + ")";
+            };
+            this.line("put(object, " + literal(property.jsonName()) + ", " + tree + ", binder);");
+        }
+        this.line("return object;");
+        this.close().line("");
+    }
+
+    private void writeFactory() {
+        this.open("public static final class Factory implements net.clydo.cson.binding.CsonGeneratedAdapterFactory");
+        this.line("@Override");
+        this.open("public java.lang.Class<?> type()").line("return " + this.typeName + ".class;").close().line("");
+        this.line("@Override");
+        this.line("@SuppressWarnings(\"unchecked\")");
+        this.open("public <T> com.google.gson.TypeAdapter<T> create(com.google.gson.Gson gson, com.google.gson.reflect.TypeToken<T> type)");
+        this.line("return type.getRawType() == " + this.typeName + ".class ? (com.google.gson.TypeAdapter<T>) new " + this.adapterName + "(gson) : null;");
+        this.close();
+        this.close();
+    }
+
+    /**
+     * Declares what read values are stored into: the instance for classes, and one local per
+     * component for records.
+     */
+    private void writeTarget() {
+        if (!this.record) {
+            this.line(this.typeName + " instance = new " + this.typeName + "();");
+            return;
+        }
+        for (int i = 0; i < this.properties.size(); i++) {
+            CsonProperty property = this.properties.get(i);
+            if (property.primitive()) {
+                String primitive = UNBOXED.get(property.type());
+                this.line(primitive + " v" + i + " = " + DEFAULTS.get(primitive) + ";");
+            } else {
+                this.line(property.type() + " v" + i + " = null;");
+            }
+        }
+    }
+
+    private void writeResult() {
+        if (!this.record) {
+            this.line("return instance;");
+            return;
+        }
+        StringBuilder arguments = new StringBuilder();
+        for (int i = 0; i < this.properties.size(); i++) {
+            arguments.append(i == 0 ? "" : ", ").append('v').append(i);
+        }
+        this.line("return new " + this.typeName + "(" + arguments + ");");
+    }
+
+    private String labels(CsonProperty property) {
+        StringBuilder labels = new StringBuilder(literal(property.jsonName()));
+        for (String alternate : property.alternates()) {
+            labels.append(", ").append(literal(alternate));
+        }
+        return labels.toString();
+    }
+
+    private static String literal(String value) {
+        StringBuilder literal = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> literal.append("\\\"");
+                case '\\' -> literal.append("\\\\");
+                case '\n' -> literal.append("\\n");
+                case '\r' -> literal.append("\\r");
+                case '\t' -> literal.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        literal.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        literal.append(c);
+                    }
+                }
+            }
+        }
+        return literal.append('"').toString();
+    }
+
+    //region Source layout
+    private CsonAdapterWriter line(String line) {
+        if (!line.isEmpty()) {
+            this.out.append("    ".repeat(this.indent)).append(line);
+        }
+        this.out.append('\n');
+        return this;
+    }
+
+    private CsonAdapterWriter open(String line) {
+        this.line(line + " {");
+        this.indent++;
+        return this;
+    }
+
+    private CsonAdapterWriter close() {
+        this.indent--;
+        return this.line("}");
+    }
+    //endregion
+}
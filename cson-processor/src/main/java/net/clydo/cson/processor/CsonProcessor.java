@@ -0,0 +1,413 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.processor;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.*;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Generates a {@code CsonGeneratedAdapter} for every type annotated with {@code CsonSerializable},
+ * and lists their factories in {@code META-INF/services} so that Cson picks them up at runtime.
+ * <p>
+ * The adapter of {@code com.example.Outer.Inner} is {@code com.example.Outer_Inner_CsonAdapter}.
+ * Types the processor cannot handle without reflection are reported as compile errors rather
+ * than silently left to Gson.
+ */
+@SupportedAnnotationTypes(CsonProcessor.ANNOTATION)
+public class CsonProcessor extends AbstractProcessor {
+    static final String ANNOTATION = "net.clydo.cson.annotation.CsonSerializable";
+    static final String FACTORY_SERVICE = "META-INF/services/net.clydo.cson.binding.CsonGeneratedAdapterFactory";
+    private static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    /*
+     * Binary names of the factories generated in all rounds
+     */
+    private final Set<String> factories = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+        for (TypeElement annotation : annotations) {
+            for (TypeElement type : ElementFilter.typesIn(round.getElementsAnnotatedWith(annotation))) {
+                this.generate(type);
+            }
+        }
+        if (round.processingOver() && !this.factories.isEmpty()) {
+            this.writeServices();
+        }
+        return true;
+    }
+
+    private void generate(TypeElement type) {
+        if (!this.validate(type)) {
+            return;
+        }
+        List<CsonProperty> properties = type.getKind() == ElementKind.RECORD ? this.recordProperties(type) : this.classProperties(type);
+        if (properties == null || !this.checkNames(type, properties)) {
+            return;
+        }
+
+        String packageName = this.processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+        String adapterName = adapterName(type);
+        String source = new CsonAdapterWriter(packageName, adapterName, type.getQualifiedName().toString(),
+                type.getKind() == ElementKind.RECORD, properties).write();
+        String qualifiedName = packageName.isEmpty() ? adapterName : packageName + "." + adapterName;
+        try (Writer writer = this.processingEnv.getFiler().createSourceFile(qualifiedName, type).openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            this.error(type, "Could not write " + qualifiedName + ": " + e.getMessage());
+            return;
+        }
+        this.factories.add(qualifiedName + "$Factory");
+    }
+
+    //region Validation
+    private boolean validate(TypeElement type) {
+        if (type.getKind() != ElementKind.CLASS && type.getKind() != ElementKind.RECORD) {
+            this.error(type, "@CsonSerializable can only be applied to classes and records");
+            return false;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            this.error(type, "@CsonSerializable types cannot be generic");
+            return false;
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            this.error(type, "@CsonSerializable types cannot be abstract");
+            return false;
+        }
+
+        for (Element element = type; element instanceof TypeElement enclosed; element = element.getEnclosingElement()) {
+            if (enclosed.getModifiers().contains(Modifier.PRIVATE)) {
+                this.error(type, "@CsonSerializable types and the types enclosing them cannot be private");
+                return false;
+            }
+            if (enclosed.getNestingKind() == NestingKind.MEMBER && !enclosed.getModifiers().contains(Modifier.STATIC)
+                    && enclosed.getKind() == ElementKind.CLASS) {
+                this.error(type, "@CsonSerializable types cannot be inner classes; make them static");
+                return false;
+            }
+            if (enclosed.getNestingKind() == NestingKind.LOCAL || enclosed.getNestingKind() == NestingKind.ANONYMOUS) {
+                this.error(type, "@CsonSerializable types cannot be local classes");
+                return false;
+            }
+        }
+
+        if (type.getKind() == ElementKind.CLASS) {
+            boolean constructible = false;
+            for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+                if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                    constructible = true;
+                }
+            }
+            if (!constructible) {
+                this.error(type, "@CsonSerializable classes need a constructor without parameters that is not private");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean checkNames(TypeElement type, List<CsonProperty> properties) {
+        Set<String> names = new HashSet<>();
+        for (CsonProperty property : properties) {
+            if (!names.add(property.jsonName())) {
+                this.error(type, "Several members are named \"" + property.jsonName() + "\"");
+                return false;
+            }
+            for (String alternate : property.alternates()) {
+                if (!names.add(alternate)) {
+                    this.error(type, "Several members are named \"" + alternate + "\"");
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    //endregion
+
+    //region Properties
+    private List<CsonProperty> recordProperties(TypeElement type) {
+        List<CsonProperty> properties = new ArrayList<>();
+        boolean valid = true;
+        int index = 0;
+        for (RecordComponentElement component : type.getRecordComponents()) {
+            String name = component.getSimpleName().toString();
+            // Annotations on a component only reach the field if they target fields
+            VariableElement field = null;
+            for (VariableElement candidate : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+                if (candidate.getSimpleName().contentEquals(name) && !candidate.getModifiers().contains(Modifier.STATIC)) {
+                    field = candidate;
+                }
+            }
+            CsonProperty property = this.property(field != null ? field : component, component.asType(),
+                    "value." + name + "()", "v" + index + " = %s;");
+            if (property == null) {
+                valid = false;
+            } else {
+                properties.add(property);
+            }
+            index++;
+        }
+        return valid ? properties : null;
+    }
+
+    private List<CsonProperty> classProperties(TypeElement type) {
+        PackageElement packageElement = this.processingEnv.getElementUtils().getPackageOf(type);
+        List<ExecutableElement> methods = ElementFilter.methodsIn(this.processingEnv.getElementUtils().getAllMembers(type));
+
+        // Superclass fields first, as Gson orders them
+        Deque<TypeElement> hierarchy = new ArrayDeque<>();
+        for (TypeElement current = type; current != null; current = this.superclass(current)) {
+            hierarchy.push(current);
+        }
+
+        List<CsonProperty> properties = new ArrayList<>();
+        boolean valid = true;
+        for (TypeElement declaring : hierarchy) {
+            for (VariableElement field : ElementFilter.fieldsIn(declaring.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+
+                String name = field.getSimpleName().toString();
+                boolean visible = isVisible(field, packageElement);
+                String getter = visible ? "value." + name : this.accessor(methods, field, true, packageElement);
+                String setter = visible && !modifiers.contains(Modifier.FINAL) ? "instance." + name + " = %s;"
+                        : this.accessor(methods, field, false, packageElement);
+                if (getter == null || setter == null) {
+                    this.error(field, modifiers.contains(Modifier.FINAL) && setter == null
+                            ? "Final field " + name + " cannot be set by generated code; make it non-final or use a record"
+                            : "Field " + name + " is not accessible from " + packageElement.getQualifiedName()
+                            + " and has no accessible " + (getter == null ? "getter" : "setter"));
+                    valid = false;
+                    continue;
+                }
+
+                CsonProperty property = this.property(field, field.asType(), getter, setter);
+                if (property == null) {
+                    valid = false;
+                } else {
+                    properties.add(property);
+                }
+            }
+        }
+        return valid ? properties : null;
+    }
+
+    private TypeElement superclass(TypeElement type) {
+        if (type.getSuperclass() instanceof DeclaredType declared
+                && declared.asElement() instanceof TypeElement superclass
+                && !superclass.getQualifiedName().contentEquals("java.lang.Object")) {
+            return superclass;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the getter or setter of a field, returning the generated expression or statement
+     * using it, or null if there is none.
+     */
+    private String accessor(List<ExecutableElement> methods, VariableElement field, boolean getter, PackageElement packageElement) {
+        String name = field.getSimpleName().toString();
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        TypeMirror fieldType = field.asType();
+        for (ExecutableElement method : methods) {
+            if (method.getModifiers().contains(Modifier.STATIC) || !isVisible(method, packageElement)) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            if (getter) {
+                boolean named = methodName.equals("get" + suffix)
+                        || fieldType.getKind() == TypeKind.BOOLEAN && methodName.equals("is" + suffix);
+                if (named && method.getParameters().isEmpty()
+                        && this.processingEnv.getTypeUtils().isSameType(method.getReturnType(), fieldType)) {
+                    return "value." + methodName + "()";
+                }
+            } else if (methodName.equals("set" + suffix) && method.getParameters().size() == 1
+                    && this.processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), fieldType)) {
+                return "instance." + methodName + "(%s);";
+            }
+        }
+        return null;
+    }
+
+    private static boolean isVisible(Element member, PackageElement from) {
+        Set<Modifier> modifiers = member.getModifiers();
+        if (modifiers.contains(Modifier.PRIVATE)) {
+            return false;
+        }
+        if (modifiers.contains(Modifier.PUBLIC)) {
+            return true;
+        }
+        Element enclosing = member.getEnclosingElement();
+        while (!(enclosing instanceof PackageElement)) {
+            enclosing = enclosing.getEnclosingElement();
+        }
+        return ((PackageElement) enclosing).getQualifiedName().contentEquals(from.getQualifiedName());
+    }
+
+    private CsonProperty property(Element annotated, TypeMirror type, String getter, String setter) {
+        String name = annotated.getSimpleName().toString();
+        List<String> alternates = List.of();
+        for (AnnotationMirror mirror : annotated.getAnnotationMirrors()) {
+            if (!((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(SERIALIZED_NAME)) {
+                continue;
+            }
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+                String element = entry.getKey().getSimpleName().toString();
+                if (element.equals("value")) {
+                    name = (String) entry.getValue().getValue();
+                } else if (element.equals("alternate")) {
+                    List<String> values = new ArrayList<>();
+                    for (Object value : (List<?>) entry.getValue().getValue()) {
+                        values.add((String) ((AnnotationValue) value).getValue());
+                    }
+                    alternates = values;
+                }
+            }
+        }
+
+        String source = this.typeSource(annotated, type);
+        if (source == null) {
+            return null;
+        }
+        CsonProperty.Kind kind = switch (type.getKind()) {
+            case INT -> CsonProperty.Kind.INT;
+            case LONG -> CsonProperty.Kind.LONG;
+            case DOUBLE -> CsonProperty.Kind.DOUBLE;
+            case FLOAT -> CsonProperty.Kind.FLOAT;
+            case BOOLEAN -> CsonProperty.Kind.BOOLEAN;
+            case DECLARED -> source.equals("java.lang.String") ? CsonProperty.Kind.STRING : CsonProperty.Kind.DELEGATE;
+            default -> CsonProperty.Kind.DELEGATE;
+        };
+        return new CsonProperty(name, alternates, kind, source, type.getKind().isPrimitive(), getter, setter);
+    }
+
+    /**
+     * Prints a type as source code, with the primitive types boxed. Type annotations are left
+     * out, as they are not allowed in the places the generated code uses types.
+     */
+    private String typeSource(Element element, TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN, BYTE, SHORT, INT, LONG, CHAR, FLOAT, DOUBLE -> {
+                return this.processingEnv.getTypeUtils().boxedClass((PrimitiveType) type).getQualifiedName().toString();
+            }
+            case ARRAY -> {
+                TypeMirror component = ((ArrayType) type).getComponentType();
+                String componentSource = component.getKind().isPrimitive() ? component.getKind().name().toLowerCase(Locale.ROOT)
+                        : this.typeSource(element, component);
+                return componentSource == null ? null : componentSource + "[]";
+            }
+            case DECLARED -> {
+                DeclaredType declared = (DeclaredType) type;
+                StringBuilder source = new StringBuilder(((TypeElement) declared.asElement()).getQualifiedName());
+                if (!declared.getTypeArguments().isEmpty()) {
+                    source.append('<');
+                    for (int i = 0; i < declared.getTypeArguments().size(); i++) {
+                        String argument = this.typeSource(element, declared.getTypeArguments().get(i));
+                        if (argument == null) {
+                            return null;
+                        }
+                        source.append(i == 0 ? "" : ", ").append(argument);
+                    }
+                    source.append('>');
+                }
+                return source.toString();
+            }
+            case WILDCARD -> {
+                WildcardType wildcard = (WildcardType) type;
+                if (wildcard.getExtendsBound() != null) {
+                    String bound = this.typeSource(element, wildcard.getExtendsBound());
+                    return bound == null ? null : "? extends " + bound;
+                } else if (wildcard.getSuperBound() != null) {
+                    String bound = this.typeSource(element, wildcard.getSuperBound());
+                    return bound == null ? null : "? super " + bound;
+                }
+                return "?";
+            }
+            default -> {
+                this.error(element, "Type " + type + " of " + element.getSimpleName() + " is not supported by generated adapters");
+                return null;
+            }
+        }
+    }
+    //endregion
+
+    private void writeServices() {
+        Filer filer = this.processingEnv.getFiler();
+        // Keep the factories of earlier compilations writing to the same output, such as
+        // incremental builds of other sources
+        try {
+            FileObject existing = filer.getResource(StandardLocation.CLASS_OUTPUT, "", FACTORY_SERVICE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    String factory = (comment < 0 ? line : line.substring(0, comment)).trim();
+                    if (!factory.isEmpty()) {
+                        this.factories.add(factory);
+                    }
+                }
+            }
+        } catch (IOException | IllegalArgumentException ignored) {
+            // No earlier file
+        }
+
+        try {
+            FileObject file = filer.createResource(StandardLocation.CLASS_OUTPUT, "", FACTORY_SERVICE);
+            try (Writer writer = new OutputStreamWriter(file.openOutputStream(), StandardCharsets.UTF_8)) {
+                for (String factory : this.factories) {
+                    writer.write(factory);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not write " + FACTORY_SERVICE + ": " + e.getMessage());
+        }
+    }
+
+    static String adapterName(TypeElement type) {
+        StringBuilder name = new StringBuilder(type.getSimpleName());
+        for (Element enclosing = type.getEnclosingElement(); enclosing instanceof TypeElement outer; enclosing = outer.getEnclosingElement()) {
+            name.insert(0, outer.getSimpleName() + "_");
+        }
+        return name.append("_CsonAdapter").toString();
+    }
+
+    private void error(Element element, String message) {
+        this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
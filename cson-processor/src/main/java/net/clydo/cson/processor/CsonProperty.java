@@ -0,0 +1,51 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.processor;
+
+import java.util.List;
+
+/**
+ * One member of a generated adapter: how it is named in JSON, how the generated code gets its
+ * value from {@code value} and how it stores a read value.
+ *
+ * @param jsonName   the member name written, and the first one accepted when reading
+ * @param alternates further names accepted when reading
+ * @param kind       how the value is converted
+ * @param type       the Java type as source code, boxed for primitives handled by a delegate
+ * @param primitive  whether the Java type is primitive, so that nulls must leave it unchanged
+ * @param getter     the expression reading the value from {@code value}
+ * @param setter     the statement storing a value, with {@code %s} standing for it
+ */
+record CsonProperty(String jsonName, List<String> alternates, Kind kind, String type, boolean primitive, String getter, String setter) {
+    enum Kind {
+        INT,
+        LONG,
+        DOUBLE,
+        FLOAT,
+        BOOLEAN,
+        STRING,
+        /**
+         * Anything else, converted by the adapter Gson or the binder have for its type
+         */
+        DELEGATE
+    }
+}
@@ -24,21 +24,45 @@ import com.google.gson.*;
 import com.google.gson.internal.Primitives;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
-import lombok.val;
+import com.google.gson.stream.MalformedJsonException;
 import net.clydo.cson.adapter.CsonTypeAdapters;
+import net.clydo.cson.binding.CsonBinder;
+import net.clydo.cson.binding.CsonGeneratedAdapter;
 import net.clydo.cson.element.CsonElement;
 import net.clydo.cson.element.CsonNull;
-import net.clydo.cson.reader.CsonJsonTreeReader;
-import net.clydo.cson.writer.CsonJsonTreeWriter;
+import net.clydo.cson.streams.CsonStreams;
+import net.clydo.cson.writer.CsonJsonWriter;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.io.Reader;
+import java.io.*;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 public class Cson {
+    /*
+     * Covers every kind of value, so that warming up touches every branch of the parsers and
+     * writers that has classes of its own
+     */
+    private static final String WARMUP_DOCUMENT = "{\"string\":\"text \\u00e9\",\"integer\":42,\"decimal\":1.5e3,"
+            + "\"boolean\":true,\"null\":null,\"array\":[1,\"a\",false,[]],\"object\":{\"key\":{}}}";
 
     private final Gson gson;
+    /*
+     * The writer settings Gson has no getters for, read once from a writer it created
+     */
+    private final FormattingStyle formattingStyle;
+    private final Strictness strictness;
+    private final CsonBinder binder;
+    private final CsonOptions options;
+    private volatile @Nullable CsonWarmup lastWarmup;
 
     public Cson() {
         this(new GsonBuilder());
@@ -52,12 +76,104 @@ public class Cson {
         this(gsonBuilder.setFormattingStyle(formattingStyle));
     }
 
+    /**
+     * Creates an instance and {@linkplain #warmup warms it up} for the given types.
+     */
+    public Cson(@NotNull GsonBuilder gsonBuilder, @NotNull Type @NotNull ... warmupTypes) {
+        this(gsonBuilder);
+        this.warmup(warmupTypes);
+    }
+
     public Cson(@NotNull GsonBuilder gsonBuilder) {
         gsonBuilder.registerTypeAdapter(CsonElement.class, CsonTypeAdapters.CSON_ELEMENT);
         gsonBuilder.registerTypeAdapterFactory(CsonTypeAdapters.CSON_ELEMENT_FACTORY);
+        gsonBuilder.registerTypeAdapterFactory(CsonGeneratedAdapter.factory());
         this.gson = gsonBuilder.create();
+        try {
+            JsonWriter probe = this.gson.newJsonWriter(Writer.nullWriter());
+            this.formattingStyle = probe.getFormattingStyle();
+            this.strictness = probe.getStrictness();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        this.binder = new CsonBinder(this.gson);
+        this.options = CsonOptions.DEFAULT;
+    }
+
+    private Cson(@NotNull Cson parent, @NotNull CsonOptions options) {
+        this.gson = parent.gson;
+        this.formattingStyle = parent.formattingStyle;
+        this.strictness = parent.strictness;
+        this.binder = parent.binder;
+        this.options = options;
+        this.lastWarmup = parent.lastWarmup;
     }
 
+    /**
+     * Returns an instance writing with the given options, where set, and with the options of
+     * this one otherwise. It shares the Gson instance, adapters and bindings of this one, so
+     * creating it costs one allocation.
+     */
+    public @NotNull Cson withOptions(@NotNull CsonOptions options) {
+        return new Cson(this, this.options.overriddenBy(options));
+    }
+
+    public @NotNull CsonOptions options() {
+        return this.options;
+    }
+
+    //region Warmup
+    /**
+     * Resolves the Gson adapters and tree bindings of the given types and of the types nested in
+     * them, and runs a small document through the parsers and writers, so that the class
+     * loading, reflection and adapter creation they need happen now instead of on the first
+     * request. This does not wait for the JIT. Types that cannot be resolved are reported
+     * rather than thrown.
+     */
+    public @NotNull CsonWarmup warmup(@NotNull Type @NotNull ... types) {
+        long start = System.nanoTime();
+        Map<Type, RuntimeException> failures = new LinkedHashMap<>();
+        for (Type type : types) {
+            TypeToken<?> token = TypeToken.get(type);
+            try {
+                this.gson.getAdapter(token);
+                this.binder.prepare(token);
+            } catch (RuntimeException e) {
+                failures.put(type, e);
+            }
+        }
+        long resolved = System.nanoTime();
+        this.touchCodecs();
+        long end = System.nanoTime();
+
+        CsonWarmup warmup = new CsonWarmup(List.of(types), Collections.unmodifiableMap(failures),
+                Duration.ofNanos(resolved - start), Duration.ofNanos(end - resolved));
+        this.lastWarmup = warmup;
+        return warmup;
+    }
+
+    /**
+     * Returns the report of the last {@link #warmup}, or null if there was none.
+     */
+    public @Nullable CsonWarmup lastWarmup() {
+        return this.lastWarmup;
+    }
+
+    private void touchCodecs() {
+        CsonElement tree = CsonParser.parseString(WARMUP_DOCUMENT);
+        CsonParser.parseUtf8(WARMUP_DOCUMENT.getBytes(StandardCharsets.UTF_8));
+        this.toJson(tree);
+        try {
+            CsonStreams.writeUtf8(tree, OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        // Reading from Gson's own trees goes through reflection
+        this.gson.fromJson(JsonParser.parseString(WARMUP_DOCUMENT), CsonElement.class);
+        this.fromJson(this.toJsonTree(tree), CsonElement.class);
+    }
+    //endregion
+
     //region FromJson
     public <T> T fromJson(String json, Class<T> classOfT) throws JsonSyntaxException {
         return this.gson.fromJson(json, classOfT);
@@ -103,10 +219,59 @@ public class Cson {
     }
 
     public <T> T fromJson(CsonElement json, TypeToken<T> typeOfT) throws JsonSyntaxException {
-        if (json == null) {
-            return null;
+        return this.binder.bind(json, typeOfT);
+    }
+    //endregion
+
+    //region FromJson with a field mask
+    public <T> T fromJson(String json, Class<T> classOfT, @NotNull CsonFieldMask mask) throws JsonSyntaxException {
+        T object = fromJson(json, TypeToken.get(classOfT), mask);
+        return Primitives.wrap(classOfT).cast(object);
+    }
+
+    public <T> T fromJson(String json, TypeToken<T> typeOfT, @NotNull CsonFieldMask mask) throws JsonSyntaxException {
+        return fromJson(new StringReader(json), typeOfT, mask);
+    }
+
+    /**
+     * Binds only the members the mask keeps. The others are skipped while reading, without
+     * building trees for them; fields bound from them keep the values objects are created with.
+     */
+    public <T> T fromJson(Reader json, TypeToken<T> typeOfT, @NotNull CsonFieldMask mask) throws JsonIOException, JsonSyntaxException {
+        JsonReader reader = this.gson.newJsonReader(json);
+        if (reader.getStrictness() == Strictness.LEGACY_STRICT) {
+            // Gson reads leniently unless a strictness was configured
+            reader.setStrictness(Strictness.LENIENT);
+        }
+        try {
+            try {
+                reader.peek();
+            } catch (EOFException e) {
+                // Gson reads an empty document as null
+                return null;
+            }
+            CsonElement element = mask.read(reader);
+            if (reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("JSON document was not fully consumed.");
+            }
+            return this.binder.bind(element, typeOfT);
+        } catch (MalformedJsonException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
         }
-        return fromJson(new CsonJsonTreeReader(json), typeOfT);
+    }
+
+    public <T> T fromJson(CsonElement json, Class<T> classOfT, @NotNull CsonFieldMask mask) throws JsonSyntaxException {
+        T object = fromJson(json, TypeToken.get(classOfT), mask);
+        return Primitives.wrap(classOfT).cast(object);
+    }
+
+    /**
+     * Binds only the members the mask keeps, without visiting the others.
+     */
+    public <T> T fromJson(CsonElement json, TypeToken<T> typeOfT, @NotNull CsonFieldMask mask) throws JsonSyntaxException {
+        return this.binder.bind(json == null ? null : mask.apply(json), typeOfT);
     }
     //endregion
 
@@ -119,25 +284,27 @@ public class Cson {
     }
 
     public CsonElement toJsonTree(Object src, Type typeOfSrc) {
-        val writer = new CsonJsonTreeWriter();
-        this.toJson(src, typeOfSrc, writer);
-        return writer.get();
+        return this.binder.toTree(src, TypeToken.get(typeOfSrc));
     }
 
     public String toJson(Object src) {
-        return this.gson.toJson(src);
+        StringWriter writer = new StringWriter();
+        toJson(src, writer);
+        return writer.toString();
     }
 
     public String toJson(Object src, Type typeOfSrc) {
-        return this.gson.toJson(src, typeOfSrc);
+        StringWriter writer = new StringWriter();
+        toJson(src, typeOfSrc, writer);
+        return writer.toString();
     }
 
     public void toJson(Object src, Appendable writer) throws JsonIOException {
-        this.gson.toJson(src, writer);
+        toJson(src, src == null ? Object.class : src.getClass(), writer);
     }
 
     public void toJson(Object src, Type typeOfSrc, Appendable writer) throws JsonIOException {
-        this.gson.toJson(src, typeOfSrc, writer);
+        this.gson.toJson(src, typeOfSrc, this.newJsonWriter(writer));
     }
 
     public void toJson(Object src, Type typeOfSrc, JsonWriter writer) throws JsonIOException {
@@ -145,15 +312,42 @@ public class Cson {
     }
 
     public String toJson(CsonElement csonElement) {
-        return this.gson.toJson(csonElement);
+        StringWriter writer = new StringWriter();
+        toJson(csonElement, writer);
+        return writer.toString();
     }
 
     public void toJson(CsonElement csonElement, Appendable writer) throws JsonIOException {
-        this.gson.toJson(csonElement, writer);
+        toJson(csonElement, this.newJsonWriter(writer));
     }
 
     public void toJson(CsonElement csonElement, JsonWriter writer) throws JsonIOException {
         this.gson.toJson(csonElement, CsonElement.class, writer);
     }
+
+    /**
+     * Creates a writer configured like Gson's own, with the options of this instance applied.
+     * A sorting writer is configured directly rather than copied from one Gson creates.
+     */
+    private JsonWriter newJsonWriter(Appendable appendable) throws JsonIOException {
+        JsonWriter writer;
+        if (this.options.sortMode() != null) {
+            writer = new CsonJsonWriter(CsonStreams.writerForAppendable(appendable), this.options.sortMode());
+            writer.setFormattingStyle(this.formattingStyle);
+            writer.setHtmlSafe(this.gson.htmlSafe());
+            writer.setStrictness(this.strictness);
+            writer.setSerializeNulls(this.gson.serializeNulls());
+        } else {
+            try {
+                writer = this.gson.newJsonWriter(CsonStreams.writerForAppendable(appendable));
+            } catch (IOException e) {
+                throw new JsonIOException(e);
+            }
+        }
+        if (this.options.formattingStyle() != null) {
+            writer.setFormattingStyle(this.options.formattingStyle());
+        }
+        return writer;
+    }
     //endregion
 }
\ No newline at end of file
@@ -39,4 +39,14 @@ public class CsonConstants {
     public static void setSortMode(SortMode sortMode) {
         CsonConstants.sortMode = sortMode == null ? SortMode.NONE : sortMode;
     }
+
+    /**
+     * The member count above which a {@link net.clydo.cson.element.CsonObject} moves its members
+     * from a red-black tree to a hash table. Lookups in the tree cost O(log n) string comparisons,
+     * which starts to show in lookup tables with many thousands of keys. Ordinary objects stay
+     * well below it and keep the smaller tree.
+     */
+    @Getter
+    @Setter
+    private static int largeObjectThreshold = 4096;
 }
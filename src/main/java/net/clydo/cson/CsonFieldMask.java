@@ -0,0 +1,280 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import lombok.val;
+import net.clydo.cson.adapter.CsonTypeAdapters;
+import net.clydo.cson.element.CsonArray;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The object members to keep when reading or binding a document, as a set of dot-separated
+ * member paths like {@code "user.name"}. A path keeps everything below its last member, {@code *}
+ * stands for any member, and arrays are transparent: {@code "items.id"} keeps the {@code id} of
+ * every object in the {@code items} array. Members not on any path are skipped without being
+ * looked at, which is what makes binding a few fields of a large document cheap.
+ *
+ * @see Cson#fromJson(String, com.google.gson.reflect.TypeToken, CsonFieldMask)
+ */
+public final class CsonFieldMask {
+    /**
+     * Keeps everything.
+     */
+    public static final CsonFieldMask ALL = new CsonFieldMask(null, null);
+
+    /*
+     * Null for a mask keeping everything
+     */
+    private final @Nullable Map<String, CsonFieldMask> members;
+    /*
+     * The mask of members not named in members, or null if they are skipped
+     */
+    private final @Nullable CsonFieldMask anyMember;
+
+    private CsonFieldMask(@Nullable Map<String, CsonFieldMask> members, @Nullable CsonFieldMask anyMember) {
+        this.members = members;
+        this.anyMember = anyMember;
+    }
+
+    /**
+     * Creates a mask keeping the given paths.
+     *
+     * @throws IllegalArgumentException if a path is empty or has an empty member name
+     */
+    public static @NotNull CsonFieldMask of(@NotNull String @NotNull ... paths) {
+        val root = new Node();
+        for (val path : paths) {
+            var node = root;
+            for (val name : path.split("\\.", -1)) {
+                if (name.isEmpty()) {
+                    throw new IllegalArgumentException("Invalid field mask path: \"" + path + "\"");
+                }
+                node = node.child(name);
+            }
+            node.all = true;
+        }
+        return root.freeze();
+    }
+
+    public boolean keepsAll() {
+        return this.members == null;
+    }
+
+    /**
+     * Returns the mask for the value of a member, or null if the member is skipped.
+     */
+    public @Nullable CsonFieldMask member(@NotNull String name) {
+        if (this.members == null) {
+            return this;
+        }
+        val mask = this.members.get(name);
+        return mask != null ? mask : this.anyMember;
+    }
+
+    //region Reading
+    /**
+     * Reads the next value from a reader, skipping the members this mask does not keep with
+     * {@link JsonReader#skipValue()}. Skipped subtrees are neither allocated nor, when reading
+     * from a {@link net.clydo.cson.reader.CsonJsonTreeReader}, walked.
+     */
+    public @NotNull CsonElement read(@NotNull JsonReader in) throws IOException {
+        var peeked = in.peek();
+        if (this.members == null || peeked != JsonToken.BEGIN_OBJECT && peeked != JsonToken.BEGIN_ARRAY) {
+            return CsonTypeAdapters.CSON_ELEMENT.read(in);
+        }
+
+        val root = begin(in, peeked);
+        val stack = new ArrayDeque<Frame>();
+        stack.push(new Frame(root, this));
+        while (!stack.isEmpty()) {
+            val frame = stack.peek();
+            if (!in.hasNext()) {
+                if (frame.container instanceof CsonArray) {
+                    in.endArray();
+                } else {
+                    in.endObject();
+                }
+                stack.pop();
+                continue;
+            }
+
+            String name = null;
+            var mask = frame.mask;
+            if (frame.container instanceof CsonObject) {
+                name = in.nextName();
+                mask = mask.member(name);
+                if (mask == null) {
+                    in.skipValue();
+                    continue;
+                }
+            }
+
+            peeked = in.peek();
+            CsonElement value;
+            if (mask.members == null || peeked != JsonToken.BEGIN_OBJECT && peeked != JsonToken.BEGIN_ARRAY) {
+                value = CsonTypeAdapters.CSON_ELEMENT.read(in);
+            } else {
+                value = begin(in, peeked);
+                stack.push(new Frame(value, mask));
+            }
+
+            if (frame.container instanceof CsonObject object) {
+                object.put(name, value);
+            } else {
+                ((CsonArray) frame.container).add(value);
+            }
+        }
+        return root;
+    }
+
+    private static CsonElement begin(JsonReader in, JsonToken peeked) throws IOException {
+        if (peeked == JsonToken.BEGIN_OBJECT) {
+            in.beginObject();
+            return new CsonObject();
+        }
+        in.beginArray();
+        return new CsonArray();
+    }
+    //endregion
+
+    /**
+     * Returns the part of a tree this mask keeps. Kept subtrees are shared with the given tree
+     * rather than copied, so the result is meant to be read, like by binding it, not changed.
+     */
+    public @NotNull CsonElement apply(@NotNull CsonElement element) {
+        if (this.members == null || !element.isObject() && !element.isArray()) {
+            return element;
+        }
+
+        val root = emptyLike(element);
+        val stack = new ArrayDeque<Copy>();
+        stack.push(new Copy(element, root, this));
+        while (!stack.isEmpty()) {
+            val copy = stack.pop();
+            if (copy.source instanceof CsonObject source) {
+                for (val entry : source) {
+                    val memberMask = copy.mask.member(entry.getKey());
+                    if (memberMask != null) {
+                        ((CsonObject) copy.target).put(entry.getKey(), kept(entry.getValue(), memberMask, stack));
+                    }
+                }
+            } else {
+                for (val child : (CsonArray) copy.source) {
+                    ((CsonArray) copy.target).add(kept(child, copy.mask, stack));
+                }
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Returns what is kept of a value: the value itself if all of it is kept, or an empty
+     * container that is queued for filling.
+     */
+    private static CsonElement kept(CsonElement value, CsonFieldMask mask, Deque<Copy> stack) {
+        if (mask.members == null || !value.isObject() && !value.isArray()) {
+            return value;
+        }
+        val target = emptyLike(value);
+        stack.push(new Copy(value, target, mask));
+        return target;
+    }
+
+    private static CsonElement emptyLike(CsonElement container) {
+        return container.isObject() ? new CsonObject() : new CsonArray(container.asArray().size());
+    }
+
+    @Override
+    public String toString() {
+        if (this.members == null) {
+            return "*";
+        }
+        val paths = new ArrayList<String>();
+        this.collectPaths("", paths);
+        return String.join(", ", paths);
+    }
+
+    private void collectPaths(String prefix, List<String> paths) {
+        if (this.members == null) {
+            paths.add(prefix.isEmpty() ? "*" : prefix.substring(0, prefix.length() - 1));
+            return;
+        }
+        for (val entry : new TreeMap<>(this.members).entrySet()) {
+            entry.getValue().collectPaths(prefix + entry.getKey() + ".", paths);
+        }
+        if (this.anyMember != null) {
+            this.anyMember.collectPaths(prefix + "*.", paths);
+        }
+    }
+
+    private record Frame(CsonElement container, CsonFieldMask mask) {
+    }
+
+    private record Copy(CsonElement source, CsonElement target, CsonFieldMask mask) {
+    }
+
+    /**
+     * A mask under construction. Members matched by a wildcard also get what the wildcard
+     * keeps, merged in when freezing.
+     */
+    private static final class Node {
+        private boolean all;
+        private final HashMap<String, Node> members = new HashMap<>();
+
+        private Node child(String name) {
+            return this.members.computeIfAbsent(name, key -> new Node());
+        }
+
+        private void merge(Node other) {
+            this.all |= other.all;
+            for (val entry : other.members.entrySet()) {
+                this.child(entry.getKey()).merge(entry.getValue());
+            }
+        }
+
+        private CsonFieldMask freeze() {
+            if (this.all) {
+                return ALL;
+            }
+            val any = this.members.get("*");
+            val frozen = new HashMap<String, CsonFieldMask>();
+            for (val entry : this.members.entrySet()) {
+                if (entry.getValue() == any) {
+                    continue;
+                }
+                if (any != null) {
+                    entry.getValue().merge(any);
+                }
+                frozen.put(entry.getKey(), entry.getValue().freeze());
+            }
+            return new CsonFieldMask(frozen, any == null ? null : any.freeze());
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson;
+
+import com.google.gson.FormattingStyle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Output options of a {@link Cson} instance, which unlike the rest of its configuration can
+ * differ between instances sharing one set of adapters. See {@link Cson#withOptions}.
+ *
+ * @param formattingStyle the formatting of written JSON, or null for the one Gson was
+ *                        configured with
+ * @param sortMode        the order object members and array elements of trees are written in,
+ *                        or null for the global one from {@link CsonConstants}
+ */
+public record CsonOptions(@Nullable FormattingStyle formattingStyle, @Nullable SortMode sortMode) {
+    /**
+     * Overrides nothing.
+     */
+    public static final CsonOptions DEFAULT = new CsonOptions(null, null);
+
+    public @NotNull CsonOptions withFormattingStyle(@Nullable FormattingStyle formattingStyle) {
+        return new CsonOptions(formattingStyle, this.sortMode);
+    }
+
+    public @NotNull CsonOptions withSortMode(@Nullable SortMode sortMode) {
+        return new CsonOptions(this.formattingStyle, sortMode);
+    }
+
+    /**
+     * Returns these options with the ones set in {@code overrides} replaced.
+     */
+    public @NotNull CsonOptions overriddenBy(@NotNull CsonOptions overrides) {
+        return new CsonOptions(overrides.formattingStyle != null ? overrides.formattingStyle : this.formattingStyle,
+                overrides.sortMode != null ? overrides.sortMode : this.sortMode);
+    }
+}
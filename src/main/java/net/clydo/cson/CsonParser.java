@@ -28,9 +28,12 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.MalformedJsonException;
 import lombok.experimental.UtilityClass;
+import net.clydo.cson.element.CsonArena;
 import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.reader.CsonUtf8Reader;
 import net.clydo.cson.streams.CsonStreams;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.Reader;
@@ -39,13 +42,21 @@ import java.io.StringReader;
 @UtilityClass
 public final class CsonParser {
     public static @NotNull CsonElement parseString(String json) throws JsonSyntaxException {
-        return parseReader(new StringReader(json));
+        return parseString(json, null);
+    }
+
+    public static @NotNull CsonElement parseString(String json, @Nullable CsonArena arena) throws JsonSyntaxException {
+        return parseReader(new StringReader(json), arena);
     }
 
     public static @NotNull CsonElement parseReader(Reader reader) throws JsonIOException, JsonSyntaxException {
+        return parseReader(reader, null);
+    }
+
+    public static @NotNull CsonElement parseReader(Reader reader, @Nullable CsonArena arena) throws JsonIOException, JsonSyntaxException {
         try {
             JsonReader jsonReader = new JsonReader(reader);
-            CsonElement element = parseReader(jsonReader);
+            CsonElement element = parseReader(jsonReader, arena);
             if (!element.isNull() && jsonReader.peek() != JsonToken.END_DOCUMENT) {
                 throw new JsonSyntaxException("Did not consume the entire document.");
             }
@@ -58,12 +69,36 @@ public final class CsonParser {
     }
 
     public static CsonElement parseReader(@NotNull JsonReader reader) throws JsonIOException, JsonSyntaxException {
+        return parseReader(reader, null);
+    }
+
+    public static @NotNull CsonElement parseUtf8(byte @NotNull [] json) throws JsonSyntaxException {
+        return parseUtf8(json, 0, json.length, false, null);
+    }
+
+    /**
+     * Parses UTF-8 encoded JSON without decoding it to characters first.
+     *
+     * @param lazyStrings whether escape-free string values should keep referencing {@code json}
+     *                    and only be decoded when read; the buffer must then not be modified
+     *                    while the tree is in use
+     * @see CsonUtf8Reader
+     */
+    public static @NotNull CsonElement parseUtf8(byte @NotNull [] json, int offset, int length, boolean lazyStrings) throws JsonSyntaxException {
+        return parseUtf8(json, offset, length, lazyStrings, null);
+    }
+
+    public static @NotNull CsonElement parseUtf8(byte @NotNull [] json, int offset, int length, boolean lazyStrings, @Nullable CsonArena arena) throws JsonSyntaxException {
+        return new CsonUtf8Reader(json, offset, length, lazyStrings, arena).read();
+    }
+
+    public static CsonElement parseReader(@NotNull JsonReader reader, @Nullable CsonArena arena) throws JsonIOException, JsonSyntaxException {
         Strictness strictness = reader.getStrictness();
         if (strictness == Strictness.LEGACY_STRICT) {
             reader.setStrictness(Strictness.LENIENT);
         }
         try {
-            return CsonStreams.parse(reader);
+            return CsonStreams.parse(reader, arena);
         } catch (StackOverflowError | OutOfMemoryError e) {
             throw new JsonParseException("Failed parsing JSON source: " + reader + " to Json", e);
         } finally {
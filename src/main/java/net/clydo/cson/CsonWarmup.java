@@ -0,0 +1,52 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What {@link Cson#warmup} did and how long it took.
+ *
+ * @param types    the types whose adapters and bindings were resolved
+ * @param failures the types that could not be resolved, with the exception Gson or the binder
+ *                 threw for them; the same exception would be thrown on first use
+ * @param adapters the time taken to resolve the types
+ * @param codecs   the time taken to run a sample document through the parsers and writers
+ */
+public record CsonWarmup(@NotNull List<Type> types, @NotNull Map<Type, RuntimeException> failures,
+                         @NotNull Duration adapters, @NotNull Duration codecs) {
+    public @NotNull Duration total() {
+        return this.adapters.plus(this.codecs);
+    }
+
+    @Override
+    public String toString() {
+        return "Warmed up " + this.types.size() + " types in " + this.total().toMillis() + " ms (adapters "
+                + this.adapters.toMillis() + " ms, codecs " + this.codecs.toMillis() + " ms, "
+                + this.failures.size() + " failed)";
+    }
+}
@@ -28,7 +28,6 @@ import net.clydo.cson.element.CsonObject;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
-import java.util.stream.StreamSupport;
 
 @RequiredArgsConstructor
 public enum SortMode {
@@ -53,7 +52,7 @@ public enum SortMode {
     public @NotNull Iterator<CsonElement> sortArray(CsonArray psonArray) {
         return !this.sortArray
                 ? psonArray.iterator()
-                : StreamSupport.stream(psonArray.spliterator(), false)
+                : psonArray.stream()
                 .sorted(
                         (o1, o2) -> (o1.isPrimitive() && o2.isPrimitive())
                                 ? this.arrayComparator.compare(o1.asString(), o2.asString())
@@ -28,10 +28,11 @@ import com.google.gson.stream.JsonReader;
 import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 import lombok.val;
-import net.clydo.cson.CsonConstants;
+import net.clydo.cson.SortMode;
 import net.clydo.cson.element.*;
 import net.clydo.cson.reader.CsonJsonTreeReader;
 import net.clydo.cson.util.CsonUtil;
+import net.clydo.cson.writer.CsonJsonWriter;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -42,19 +43,13 @@ import java.util.ArrayDeque;
 import java.util.Deque;
 
 public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
-    private final Method nextJsonElementMethod;
-
-    public CsonTypeAdapter() {
-        try {
-            this.nextJsonElementMethod = JsonTreeReader.class.getDeclaredMethod("nextJsonElement");
-            this.nextJsonElementMethod.setAccessible(true);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
-    }
 
     @Override
     public void write(JsonWriter out, CsonElement value) throws IOException {
+        this.write(out, value, CsonJsonWriter.sortModeOf(out));
+    }
+
+    private void write(JsonWriter out, CsonElement value, SortMode sortMode) throws IOException {
         if (value != null && !value.isNull()) {
             if (value.isPrimitive()) {
                 val primitive = value.asPrimitive();
@@ -70,9 +65,9 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
                     out.beginArray();
 
                     val array = value.asArray();
-                    val iterator = CsonConstants.getSortMode().sortArray(array);
+                    val iterator = sortMode.sortArray(array);
                     while (iterator.hasNext()) {
-                        this.write(out, iterator.next());
+                        this.write(out, iterator.next(), sortMode);
                     }
 
                     out.endArray();
@@ -84,11 +79,11 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
                     out.beginObject();
 
                     val object = value.asObject();
-                    val iterator = CsonConstants.getSortMode().sortObject(object);
+                    val iterator = sortMode.sortObject(object);
                     while (iterator.hasNext()) {
                         val entry = iterator.next();
                         out.name(entry.getKey());
-                        this.write(out, entry.getValue());
+                        this.write(out, entry.getValue(), sortMode);
                     }
 
                     out.endObject();
@@ -101,7 +96,7 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
 
     public JsonElement nextJsonElement(JsonTreeReader reader)  {
         try {
-            return (JsonElement) this.nextJsonElementMethod.invoke(reader);
+            return (JsonElement) NextJsonElement.METHOD.invoke(reader);
         } catch (IllegalAccessException | InvocationTargetException e) {
             throw new RuntimeException(e);
         }
@@ -109,6 +104,13 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
 
     @Override
     public CsonElement read(JsonReader in) throws IOException {
+        return this.read(in, null);
+    }
+
+    /**
+     * Reads the next element, taking its containers from {@code arena} if one is given.
+     */
+    public CsonElement read(JsonReader in, @Nullable CsonArena arena) throws IOException {
         if (in instanceof JsonTreeReader jsonTreeReader) {
             val jsonElement = this.nextJsonElement(jsonTreeReader);
             return CsonUtil.toCsonElement(jsonElement);
@@ -117,7 +119,7 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
         }
 
         JsonToken peeked = in.peek();
-        CsonElement current = this.tryBeginNesting(in, peeked);
+        CsonElement current = this.tryBeginNesting(in, peeked, arena);
         if (current == null) {
             return this.readTerminal(in, peeked);
         } else {
@@ -144,7 +146,7 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
                 }
 
                 peeked = in.peek();
-                CsonElement value = this.tryBeginNesting(in, peeked);
+                CsonElement value = this.tryBeginNesting(in, peeked, arena);
                 boolean isNesting = value != null;
                 if (value == null) {
                     value = this.readTerminal(in, peeked);
@@ -164,15 +166,15 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
         }
     }
 
-    private @Nullable CsonElement tryBeginNesting(JsonReader in, @NotNull JsonToken peeked) throws IOException {
+    private @Nullable CsonElement tryBeginNesting(JsonReader in, @NotNull JsonToken peeked, @Nullable CsonArena arena) throws IOException {
         return switch (peeked) {
             case BEGIN_ARRAY -> {
                 in.beginArray();
-                yield new CsonArray();
+                yield arena == null ? new CsonArray() : arena.newArray();
             }
             case BEGIN_OBJECT -> {
                 in.beginObject();
-                yield new CsonObject();
+                yield arena == null ? new CsonObject() : arena.newObject();
             }
             default -> null;
         };
@@ -193,4 +195,21 @@ public class CsonTypeAdapter extends TypeAdapter<CsonElement> {
             default -> throw new IllegalStateException("Unexpected token: " + peeked);
         };
     }
+
+    /**
+     * Looks the method up on first use, so that creating adapters does not pay for the
+     * reflection when Gson's tree reader is never used.
+     */
+    private static final class NextJsonElement {
+        private static final Method METHOD;
+
+        static {
+            try {
+                METHOD = JsonTreeReader.class.getDeclaredMethod("nextJsonElement");
+                METHOD.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
 }
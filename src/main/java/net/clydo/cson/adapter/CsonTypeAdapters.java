@@ -27,7 +27,7 @@ import net.clydo.cson.element.CsonElement;
 
 @UtilityClass
 public class CsonTypeAdapters {
-    public static final TypeAdapter<CsonElement> CSON_ELEMENT;
+    public static final CsonTypeAdapter CSON_ELEMENT;
     public static final TypeAdapterFactory CSON_ELEMENT_FACTORY;
 
     static {
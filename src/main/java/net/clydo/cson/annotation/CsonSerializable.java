@@ -0,0 +1,48 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class or record for which the {@code cson-processor} annotation processor generates
+ * an adapter at compile time. Generated adapters are found through {@link java.util.ServiceLoader}
+ * and used by every {@link net.clydo.cson.Cson} instance in place of Gson's reflective adapter.
+ * Adapters registered on the {@link com.google.gson.GsonBuilder}, type hierarchy adapters and
+ * {@link com.google.gson.annotations.JsonAdapter} still take precedence, and Gson's adapter is
+ * kept if it excludes fields through {@code @Expose}, a version or exclusion strategies.
+ * <p>
+ * The generated code reads and writes the fields directly, so they must be accessible from the
+ * same package, or have a getter and setter that are; records are created through their
+ * canonical constructor, other classes through a no-argument constructor. Members are named by
+ * {@link com.google.gson.annotations.SerializedName} or else by the field name, whatever the
+ * field naming strategy, and nested values are handled by the adapter of their declared type.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface CsonSerializable {
+}
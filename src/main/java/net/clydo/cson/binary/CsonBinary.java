@@ -0,0 +1,93 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binary;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes trees as CSON-binary, a compact tagged encoding of the JSON data model: lengths and
+ * integers are varints, doubles are kept as their IEEE bits and containers are prefixed with
+ * their size, so reading needs neither number parsing nor unescaping.
+ *
+ * @see CsonBinaryWriter
+ * @see CsonBinaryReader
+ */
+@UtilityClass
+public final class CsonBinary {
+    public static byte @NotNull [] encode(@NotNull CsonElement element) {
+        val out = new ByteArrayOutputStream();
+        write(element, out);
+        return out.toByteArray();
+    }
+
+    public static void write(@NotNull CsonElement element, @NotNull OutputStream out) throws JsonIOException {
+        try {
+            new CsonBinaryWriter(out).write(element);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    public static @NotNull CsonElement decode(byte @NotNull [] bytes) throws JsonSyntaxException {
+        return decode(bytes, 0, bytes.length, false);
+    }
+
+    /**
+     * @param lazyStrings whether string values should keep referencing {@code bytes} and only be
+     *                    decoded when read; the buffer must then not be modified while the tree
+     *                    is in use
+     */
+    public static @NotNull CsonElement decode(byte @NotNull [] bytes, int offset, int length, boolean lazyStrings) throws JsonSyntaxException {
+        try {
+            val reader = new CsonBinaryReader(bytes, offset, length, lazyStrings);
+            val element = reader.read();
+            if (reader.peek() != CsonBinaryToken.END_DOCUMENT) {
+                throw new JsonSyntaxException("Did not consume the entire document.");
+            }
+            return element;
+        } catch (IOException e) {
+            // Byte arrays are never read from a stream
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Reads one tree from {@code in}, leaving anything after it unread in the reader's buffer.
+     */
+    public static @NotNull CsonElement read(@NotNull InputStream in) throws JsonIOException, JsonSyntaxException {
+        try {
+            return new CsonBinaryReader(in).read();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binary;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The layout of CSON-binary. A stream starts with the bytes {@code CSB} and a version byte,
+ * followed by any number of values. A value is a one-byte tag and its payload:
+ * <ul>
+ *     <li>{@link #NULL}, {@link #FALSE}, {@link #TRUE}: nothing</li>
+ *     <li>{@link #INTEGER}: the value as a zigzag-encoded varint</li>
+ *     <li>{@link #DOUBLE}, {@link #FLOAT}: the IEEE 754 bits, big-endian</li>
+ *     <li>{@link #NUMBER}: a varint length and the number as JSON text, for numbers only known
+ *     by their text that are not plain integers in the range of a long</li>
+ *     <li>{@link #STRING}: a varint length and the UTF-8 bytes</li>
+ *     <li>{@link #ARRAY}: a varint element count and the elements</li>
+ *     <li>{@link #OBJECT}: a varint member count and, per member, a varint length and the UTF-8
+ *     bytes of the name followed by the value</li>
+ * </ul>
+ * Varints are unsigned LEB128: seven bits per byte, least significant first, with the high bit
+ * set on all bytes but the last.
+ */
+final class CsonBinaryFormat {
+    static final byte[] MAGIC = {'C', 'S', 'B'};
+    static final byte VERSION = 1;
+
+    static final byte NULL = 0x00;
+    static final byte FALSE = 0x01;
+    static final byte TRUE = 0x02;
+    static final byte INTEGER = 0x03;
+    static final byte DOUBLE = 0x04;
+    static final byte FLOAT = 0x05;
+    static final byte NUMBER = 0x06;
+    static final byte STRING = 0x07;
+    static final byte ARRAY = 0x08;
+    static final byte OBJECT = 0x09;
+
+    static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private CsonBinaryFormat() {
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,470 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binary;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
+import lombok.val;
+import net.clydo.cson.element.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import static net.clydo.cson.binary.CsonBinaryFormat.*;
+
+/**
+ * Reads CSON-binary written by a {@link CsonBinaryWriter}, either whole trees with
+ * {@link #read()} or value by value. Containers report their size when they are begun, and end
+ * once that many values have been read from them.
+ * <p>
+ * Reading from a byte array can keep strings as slices of it (see
+ * {@link CsonPrimitive#ofUtf8(byte[], int, int)}), which must then stay untouched for as long as
+ * the tree is in use. Malformed input is reported as a {@link JsonSyntaxException}.
+ */
+public final class CsonBinaryReader {
+    private final @Nullable InputStream in;
+    private final boolean lazyStrings;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    /*
+     * The input offset of buffer[0], for error messages
+     */
+    private long bufferOffset;
+    private boolean headerRead;
+
+    public CsonBinaryReader(@NotNull InputStream in) {
+        this.in = in;
+        this.lazyStrings = false;
+        this.buffer = new byte[8192];
+    }
+
+    public CsonBinaryReader(byte @NotNull [] bytes, int offset, int length, boolean lazyStrings) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", buffer " + bytes.length);
+        }
+        this.in = null;
+        this.lazyStrings = lazyStrings;
+        this.buffer = bytes;
+        this.pos = offset;
+        this.limit = offset + length;
+    }
+
+    public @NotNull CsonBinaryToken peek() throws IOException {
+        this.readHeader();
+        if (!this.request(1)) {
+            return CsonBinaryToken.END_DOCUMENT;
+        }
+        return switch (this.buffer[this.pos]) {
+            case NULL -> CsonBinaryToken.NULL;
+            case FALSE, TRUE -> CsonBinaryToken.BOOLEAN;
+            case INTEGER, DOUBLE, FLOAT, NUMBER -> CsonBinaryToken.NUMBER;
+            case STRING -> CsonBinaryToken.STRING;
+            case ARRAY -> CsonBinaryToken.ARRAY;
+            case OBJECT -> CsonBinaryToken.OBJECT;
+            default -> throw this.syntaxError("Unknown tag " + this.buffer[this.pos]);
+        };
+    }
+
+    /**
+     * Reads the next value as a tree.
+     *
+     * @throws JsonSyntaxException if there is no next value or it is malformed
+     */
+    public @NotNull CsonElement read() throws IOException {
+        this.readHeader();
+        val stack = new ArrayDeque<Frame>();
+        val root = this.readShallow(stack);
+        while (!stack.isEmpty()) {
+            val frame = stack.peek();
+            if (frame.remaining == 0) {
+                stack.pop();
+                continue;
+            }
+            frame.remaining--;
+            if (frame.container instanceof CsonObject object) {
+                val name = this.readUtf8();
+                object.put(name, this.readShallow(stack));
+            } else {
+                ((CsonArray) frame.container).add(this.readShallow(stack));
+            }
+        }
+        return root;
+    }
+
+    //region Streaming
+    /**
+     * Begins reading an array, returning the number of elements in it.
+     */
+    public int beginArray() throws IOException {
+        this.expect(ARRAY, "an array");
+        return this.readLength();
+    }
+
+    /**
+     * Begins reading an object, returning the number of members in it. Each member is a
+     * {@link #nextName()} followed by a value.
+     */
+    public int beginObject() throws IOException {
+        this.expect(OBJECT, "an object");
+        return this.readLength();
+    }
+
+    public @NotNull String nextName() throws IOException {
+        return this.readUtf8();
+    }
+
+    public void nextNull() throws IOException {
+        this.expect(NULL, "null");
+    }
+
+    public boolean nextBoolean() throws IOException {
+        val tag = this.readTag();
+        if (tag != TRUE && tag != FALSE) {
+            throw this.unexpected(tag, "a boolean");
+        }
+        return tag == TRUE;
+    }
+
+    /**
+     * Reads an integer. Numbers of other kinds are only accepted if they are integral and in
+     * range.
+     */
+    public long nextLong() throws IOException {
+        val number = this.nextNumber();
+        if (number instanceof Long value) {
+            return value;
+        }
+        val asDouble = number.doubleValue();
+        val asLong = (long) asDouble;
+        if (asLong != asDouble || asDouble == 0x1p63) {
+            throw this.syntaxError("Expected a long but was " + number);
+        }
+        return asLong;
+    }
+
+    public double nextDouble() throws IOException {
+        return this.nextNumber().doubleValue();
+    }
+
+    /**
+     * Reads a number as a {@link Long}, {@link Double}, {@link Float} or, for numbers kept as
+     * text, a {@link LazilyParsedNumber}.
+     */
+    public @NotNull Number nextNumber() throws IOException {
+        val tag = this.readTag();
+        return switch (tag) {
+            case INTEGER -> unzigzag(this.readVarint(10));
+            case DOUBLE -> Double.longBitsToDouble(this.readLongBits());
+            case FLOAT -> Float.intBitsToFloat(this.readIntBits());
+            case NUMBER -> new LazilyParsedNumber(this.readAscii());
+            default -> throw this.unexpected(tag, "a number");
+        };
+    }
+
+    public @NotNull String nextString() throws IOException {
+        this.expect(STRING, "a string");
+        return this.readUtf8();
+    }
+
+    /**
+     * Skips the next value, including everything in it if it is a container.
+     */
+    public void skipValue() throws IOException {
+        this.readHeader();
+        // Values still to skip per container, negative for objects, whose members start with a name
+        var counts = new long[16];
+        var depth = 0;
+        counts[depth++] = 1;
+        while (depth > 0) {
+            if (counts[depth - 1] == 0) {
+                depth--;
+                continue;
+            }
+            if (counts[depth - 1] < 0) {
+                counts[depth - 1]++;
+                this.skip(this.readLength());
+            } else {
+                counts[depth - 1]--;
+            }
+
+            val tag = this.readTag();
+            switch (tag) {
+                case NULL, FALSE, TRUE -> {
+                }
+                case INTEGER -> this.readVarint(10);
+                case DOUBLE -> this.skip(8);
+                case FLOAT -> this.skip(4);
+                case NUMBER, STRING -> this.skip(this.readLength());
+                case ARRAY, OBJECT -> {
+                    val size = this.readLength();
+                    if (depth == counts.length) {
+                        counts = Arrays.copyOf(counts, depth * 2);
+                    }
+                    counts[depth++] = tag == OBJECT ? -size : size;
+                }
+                default -> throw this.unexpected(tag, "a value");
+            }
+        }
+    }
+    //endregion
+
+    /**
+     * Reads a value, or the start of a container, pushing a frame to fill it if it is not empty.
+     */
+    private CsonElement readShallow(ArrayDeque<Frame> stack) throws IOException {
+        val tag = this.readTag();
+        switch (tag) {
+            case NULL -> {
+                return CsonNull.INSTANCE;
+            }
+            case FALSE -> {
+                return CsonPrimitive.of(false);
+            }
+            case TRUE -> {
+                return CsonPrimitive.of(true);
+            }
+            case INTEGER -> {
+                return CsonPrimitive.of(unzigzag(this.readVarint(10)));
+            }
+            case DOUBLE -> {
+                return CsonPrimitive.of(Double.longBitsToDouble(this.readLongBits()));
+            }
+            case FLOAT -> {
+                return new CsonPrimitive(Float.intBitsToFloat(this.readIntBits()));
+            }
+            case NUMBER -> {
+                return new CsonPrimitive(new LazilyParsedNumber(this.readAscii()));
+            }
+            case STRING -> {
+                if (this.lazyStrings) {
+                    val length = this.readLength();
+                    this.require(length);
+                    val string = CsonPrimitive.ofUtf8(this.buffer, this.pos, length);
+                    this.pos += length;
+                    return string;
+                }
+                return CsonPrimitive.of(this.readUtf8());
+            }
+            case ARRAY -> {
+                val size = this.readLength();
+                val array = new CsonArray(this.presize(size));
+                if (size > 0) {
+                    stack.push(new Frame(array, size));
+                }
+                return array;
+            }
+            case OBJECT -> {
+                val size = this.readLength();
+                val object = new CsonObject(this.presize(size));
+                if (size > 0) {
+                    stack.push(new Frame(object, size));
+                }
+                return object;
+            }
+            default -> throw this.unexpected(tag, "a value");
+        }
+    }
+
+    /**
+     * Limits the capacity containers are created with by what the input can hold, so that a
+     * corrupt size does not allocate more than the input is worth.
+     */
+    private int presize(int size) {
+        return Math.min(size, this.in == null ? this.limit - this.pos : 1024);
+    }
+
+    //region Input
+    private void readHeader() throws IOException {
+        if (this.headerRead) {
+            return;
+        }
+        this.require(MAGIC.length + 1);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (this.buffer[this.pos + i] != MAGIC[i]) {
+                throw this.syntaxError("Not CSON-binary");
+            }
+        }
+        if (this.buffer[this.pos + MAGIC.length] != VERSION) {
+            throw this.syntaxError("Unsupported CSON-binary version " + this.buffer[this.pos + MAGIC.length]);
+        }
+        this.pos += MAGIC.length + 1;
+        this.headerRead = true;
+    }
+
+    private void expect(byte expected, String what) throws IOException {
+        val tag = this.readTag();
+        if (tag != expected) {
+            throw this.unexpected(tag, what);
+        }
+    }
+
+    private byte readTag() throws IOException {
+        this.readHeader();
+        this.require(1);
+        return this.buffer[this.pos++];
+    }
+
+    private int readLength() throws IOException {
+        val length = this.readVarint(5);
+        if (length > Integer.MAX_VALUE) {
+            throw this.syntaxError("Length out of range");
+        }
+        return (int) length;
+    }
+
+    private long readVarint(int maxBytes) throws IOException {
+        long value = 0;
+        for (int i = 0; i < maxBytes; i++) {
+            this.require(1);
+            val b = this.buffer[this.pos++];
+            value |= (long) (b & 0x7F) << (7 * i);
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw this.syntaxError("Varint too long");
+    }
+
+    private long readLongBits() throws IOException {
+        this.require(8);
+        val bits = (long) LONGS.get(this.buffer, this.pos);
+        this.pos += 8;
+        return bits;
+    }
+
+    private int readIntBits() throws IOException {
+        this.require(4);
+        val bits = (int) INTS.get(this.buffer, this.pos);
+        this.pos += 4;
+        return bits;
+    }
+
+    private String readUtf8() throws IOException {
+        val length = this.readLength();
+        if (this.in != null && length > this.buffer.length) {
+            return new String(this.readLarge(length), StandardCharsets.UTF_8);
+        }
+        this.require(length);
+        val string = new String(this.buffer, this.pos, length, StandardCharsets.UTF_8);
+        this.pos += length;
+        return string;
+    }
+
+    private String readAscii() throws IOException {
+        val length = this.readLength();
+        if (this.in != null && length > this.buffer.length) {
+            return new String(this.readLarge(length), StandardCharsets.ISO_8859_1);
+        }
+        this.require(length);
+        val string = new String(this.buffer, this.pos, length, StandardCharsets.ISO_8859_1);
+        this.pos += length;
+        return string;
+    }
+
+    /**
+     * Reads a value larger than the buffer from the stream, growing the result only as input
+     * arrives.
+     */
+    private byte[] readLarge(int length) throws IOException {
+        val buffered = this.limit - this.pos;
+        val head = Arrays.copyOfRange(this.buffer, this.pos, this.limit);
+        this.bufferOffset += this.limit;
+        this.pos = this.limit = 0;
+        val rest = this.in.readNBytes(length - buffered);
+        if (rest.length != length - buffered) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+        this.bufferOffset += rest.length;
+        val bytes = Arrays.copyOf(head, length);
+        System.arraycopy(rest, 0, bytes, buffered, rest.length);
+        return bytes;
+    }
+
+    private void skip(int length) throws IOException {
+        while (length > 0) {
+            this.require(1);
+            val chunk = Math.min(length, this.limit - this.pos);
+            this.pos += chunk;
+            length -= chunk;
+        }
+    }
+
+    private void require(int length) throws IOException {
+        if (!this.request(length)) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+    }
+
+    /**
+     * Makes at least {@code length} bytes available from {@link #pos}, refilling the buffer from
+     * the stream if needed. Returns false if the input ends first.
+     */
+    private boolean request(int length) throws IOException {
+        if (this.limit - this.pos >= length) {
+            return true;
+        } else if (this.in == null) {
+            return false;
+        }
+
+        if (length > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(length, this.buffer.length * 2));
+        }
+        System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+        this.bufferOffset += this.pos;
+        this.limit -= this.pos;
+        this.pos = 0;
+        while (this.limit < length) {
+            val read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (read < 0) {
+                return false;
+            }
+            this.limit += read;
+        }
+        return true;
+    }
+
+    private JsonSyntaxException unexpected(byte tag, String expected) {
+        this.pos--;
+        return this.syntaxError("Expected " + expected + " but was tag " + tag);
+    }
+
+    private JsonSyntaxException syntaxError(String message) {
+        return new JsonSyntaxException(message + " at offset " + (this.bufferOffset + this.pos));
+    }
+    //endregion
+
+    private static final class Frame {
+        private final CsonElement container;
+        private int remaining;
+
+        private Frame(CsonElement container, int remaining) {
+            this.container = container;
+            this.remaining = remaining;
+        }
+    }
+}
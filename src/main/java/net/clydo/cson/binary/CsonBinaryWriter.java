@@ -0,0 +1,391 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binary;
+
+import lombok.val;
+import net.clydo.cson.element.*;
+import net.clydo.cson.util.CsonUtf8;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import static net.clydo.cson.binary.CsonBinaryFormat.*;
+
+/**
+ * Writes CSON-binary to a stream, either whole trees or value by value. The format is described
+ * in {@link CsonBinaryFormat}; the header is written before the first value.
+ * <p>
+ * Containers are prefixed with their size, so {@link #beginArray} and {@link #beginObject} take
+ * it, and a container ends by itself once that many values have been written to it. Output is
+ * buffered until {@link #flush()}, which {@link #write(CsonElement)} calls.
+ */
+public final class CsonBinaryWriter implements Flushable {
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int count;
+    private boolean headerWritten;
+
+    /*
+     * The values still to be written to each open container, and whether it is an object
+     */
+    private int[] remaining = new int[16];
+    private boolean[] objects = new boolean[16];
+    private int depth;
+    private boolean nameWritten;
+
+    public CsonBinaryWriter(@NotNull OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes {@code element} as one value and flushes the buffered output.
+     */
+    public void write(@NotNull CsonElement element) throws IOException {
+        this.beforeValue();
+        val stack = new ArrayDeque<Iterator<?>>();
+        this.writeShallow(element, stack);
+        while (!stack.isEmpty()) {
+            val iterator = stack.peek();
+            if (!iterator.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            var next = iterator.next();
+            if (next instanceof Map.Entry<?, ?> member) {
+                this.writeUtf8((String) member.getKey());
+                next = member.getValue();
+            }
+            this.writeShallow((CsonElement) next, stack);
+        }
+        this.afterValue();
+        this.flush();
+    }
+
+    //region Streaming
+    public @NotNull CsonBinaryWriter beginArray(int size) throws IOException {
+        return this.beginContainer(ARRAY, size, false);
+    }
+
+    public @NotNull CsonBinaryWriter beginObject(int size) throws IOException {
+        return this.beginContainer(OBJECT, size, true);
+    }
+
+    public @NotNull CsonBinaryWriter name(@NotNull String name) throws IOException {
+        if (this.depth == 0 || !this.objects[this.depth - 1] || this.nameWritten) {
+            throw new IllegalStateException("Not expecting a name");
+        }
+        this.writeUtf8(name);
+        this.nameWritten = true;
+        return this;
+    }
+
+    public @NotNull CsonBinaryWriter nullValue() throws IOException {
+        this.beforeValue();
+        this.writeByte(NULL);
+        this.afterValue();
+        return this;
+    }
+
+    public @NotNull CsonBinaryWriter value(boolean value) throws IOException {
+        this.beforeValue();
+        this.writeByte(value ? TRUE : FALSE);
+        this.afterValue();
+        return this;
+    }
+
+    public @NotNull CsonBinaryWriter value(long value) throws IOException {
+        this.beforeValue();
+        this.writeInteger(value);
+        this.afterValue();
+        return this;
+    }
+
+    public @NotNull CsonBinaryWriter value(double value) throws IOException {
+        this.beforeValue();
+        this.writeDouble(value);
+        this.afterValue();
+        return this;
+    }
+
+    /**
+     * Writes a number the way it would be written as JSON text: as an integer or floating point
+     * value where one holds it exactly, and as its text otherwise.
+     */
+    public @NotNull CsonBinaryWriter value(@NotNull Number value) throws IOException {
+        this.beforeValue();
+        this.writeNumber(value);
+        this.afterValue();
+        return this;
+    }
+
+    public @NotNull CsonBinaryWriter value(@NotNull String value) throws IOException {
+        this.beforeValue();
+        this.writeByte(STRING);
+        this.writeUtf8(value);
+        this.afterValue();
+        return this;
+    }
+
+    private CsonBinaryWriter beginContainer(byte tag, int size, boolean object) throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Negative size " + size);
+        }
+        this.beforeValue();
+        this.writeByte(tag);
+        this.writeVarint(size);
+        if (size == 0) {
+            this.afterValue();
+        } else {
+            this.push(size, object);
+        }
+        return this;
+    }
+
+    private void beforeValue() throws IOException {
+        if (!this.headerWritten) {
+            this.writeBytes(MAGIC, 0, MAGIC.length);
+            this.writeByte(VERSION);
+            this.headerWritten = true;
+        }
+        if (this.depth > 0 && this.objects[this.depth - 1] && !this.nameWritten) {
+            throw new IllegalStateException("Expected a name");
+        }
+    }
+
+    /**
+     * Counts a finished value against the open containers, closing the ones it completes.
+     */
+    private void afterValue() {
+        while (this.depth > 0) {
+            this.nameWritten = false;
+            if (--this.remaining[this.depth - 1] > 0) {
+                return;
+            }
+            this.depth--;
+        }
+    }
+
+    private void push(int size, boolean object) {
+        if (this.depth == this.remaining.length) {
+            this.remaining = Arrays.copyOf(this.remaining, this.depth * 2);
+            this.objects = Arrays.copyOf(this.objects, this.depth * 2);
+        }
+        this.remaining[this.depth] = size;
+        this.objects[this.depth] = object;
+        this.depth++;
+        this.nameWritten = false;
+    }
+    //endregion
+
+    /**
+     * Writes a value, or the header of a container, pushing the iterator over its children if
+     * it has any.
+     */
+    private void writeShallow(CsonElement element, ArrayDeque<Iterator<?>> stack) throws IOException {
+        if (element == null || element.isNull()) {
+            this.writeByte(NULL);
+        } else if (element instanceof CsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                this.writeByte(primitive.asBoolean() ? TRUE : FALSE);
+            } else if (primitive.isNumber()) {
+                this.writeNumber(primitive.asNumber());
+            } else {
+                this.writeByte(STRING);
+                val raw = primitive.rawUtf8();
+                if (raw != null) {
+                    this.writeUtf8(raw);
+                } else {
+                    this.writeUtf8(primitive.asString());
+                }
+            }
+        } else if (element instanceof CsonArray array) {
+            this.writeByte(ARRAY);
+            this.writeVarint(array.size());
+            if (!array.isEmpty()) {
+                stack.push(array.iterator());
+            }
+        } else if (element instanceof CsonObject object) {
+            this.writeByte(OBJECT);
+            this.writeVarint(object.size());
+            if (!object.isEmpty()) {
+                stack.push(object.iterator());
+            }
+        } else {
+            throw new IllegalArgumentException("Couldn't write " + element.getClass());
+        }
+    }
+
+    private void writeNumber(Number number) throws IOException {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            this.writeInteger(number.longValue());
+        } else if (number instanceof Double) {
+            this.writeDouble(number.doubleValue());
+        } else if (number instanceof Float) {
+            this.writeByte(FLOAT);
+            this.ensureCapacity(4);
+            INTS.set(this.buffer, this.count, Float.floatToRawIntBits(number.floatValue()));
+            this.count += 4;
+        } else if (number instanceof BigInteger bigInteger && bigInteger.bitLength() < 64) {
+            this.writeInteger(bigInteger.longValue());
+        } else {
+            this.writeNumberText(number.toString());
+        }
+    }
+
+    /**
+     * Writes a number known by its text, like one read from JSON, as an integer if it is one
+     * that writes back as the same text, and as the text otherwise, so that it reads back as
+     * written without being parsed here.
+     */
+    private void writeNumberText(String text) throws IOException {
+        val length = text.length();
+        val negative = length > 0 && text.charAt(0) == '-';
+        val digits = length - (negative ? 1 : 0);
+        // Up to 18 digits always fit a long; a leading zero or "-0" would not write back the same
+        if (digits > 0 && digits <= 18 && (text.charAt(length - digits) != '0' || length == 1)) {
+            long value = 0;
+            var i = length - digits;
+            for (; i < length; i++) {
+                val c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    break;
+                }
+                value = value * 10 + (c - '0');
+            }
+            if (i == length) {
+                this.writeInteger(negative ? -value : value);
+                return;
+            }
+        }
+        this.writeByte(NUMBER);
+        this.writeVarint(length);
+        if (length > this.buffer.length) {
+            this.writeBytes(text.getBytes(StandardCharsets.ISO_8859_1), 0, length);
+            return;
+        }
+        this.ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            this.buffer[this.count++] = (byte) text.charAt(i);
+        }
+    }
+
+    private void writeInteger(long value) throws IOException {
+        this.ensureCapacity(11);
+        this.buffer[this.count++] = INTEGER;
+        this.putVarint(zigzag(value));
+    }
+
+    private void writeDouble(double value) throws IOException {
+        this.ensureCapacity(9);
+        this.buffer[this.count++] = DOUBLE;
+        LONGS.set(this.buffer, this.count, Double.doubleToRawLongBits(value));
+        this.count += 8;
+    }
+
+    //region UTF-8
+    private void writeUtf8(String string) throws IOException {
+        val utf8Length = CsonUtf8.length(string);
+        if (utf8Length > this.buffer.length) {
+            this.writeUtf8(ByteBuffer.wrap(string.getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        this.writeVarint(utf8Length);
+        this.ensureCapacity(utf8Length);
+        this.count = CsonUtf8.encode(string, this.buffer, this.count);
+    }
+
+    private void writeUtf8(ByteBuffer raw) throws IOException {
+        val length = raw.remaining();
+        this.writeVarint(length);
+        var from = raw.position();
+        val to = raw.limit();
+        while (from < to) {
+            if (this.count == this.buffer.length) {
+                this.flushBuffer();
+            }
+            val chunk = Math.min(to - from, this.buffer.length - this.count);
+            raw.get(from, this.buffer, this.count, chunk);
+            this.count += chunk;
+            from += chunk;
+        }
+    }
+    //endregion
+
+    //region Buffer
+    private void writeVarint(long value) throws IOException {
+        this.ensureCapacity(10);
+        this.putVarint(value);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            this.buffer[this.count++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.count++] = (byte) value;
+    }
+
+    private void writeByte(int b) throws IOException {
+        this.ensureCapacity(1);
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > this.buffer.length) {
+            this.flushBuffer();
+            this.out.write(bytes, offset, length);
+            return;
+        }
+        this.ensureCapacity(length);
+        System.arraycopy(bytes, offset, this.buffer, this.count, length);
+        this.count += length;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (this.count + length > this.buffer.length) {
+            this.flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.count > 0) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.out.flush();
+    }
+    //endregion
+}
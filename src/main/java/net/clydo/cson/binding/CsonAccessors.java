@@ -0,0 +1,231 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.JsonIOException;
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.function.Function;
+
+/**
+ * Access to the instance fields and, for records, the canonical constructor of one class,
+ * created once per class and shared by all binders.
+ * <p>
+ * Fields are read and written through method handles adapted to a common erased shape, so that
+ * a call site seeing one class stays monomorphic. Record components are read through lambdas
+ * spun by {@link LambdaMetafactory} around their accessor methods, which the JIT treats like any
+ * other small class. Where the class is not open to Cson, this falls back to plain reflection,
+ * which fails the same way Gson would.
+ */
+final class CsonAccessors {
+    private static final ClassValue<CsonAccessors> CACHE = new ClassValue<>() {
+        @Override
+        protected CsonAccessors computeValue(@NotNull Class<?> type) {
+            return new CsonAccessors(type);
+        }
+    };
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR = MethodType.methodType(Object.class, Object[].class);
+
+    private final HashMap<String, Property> properties = new HashMap<>();
+    /*
+     * The canonical constructor of a record, taking its arguments as an Object[]
+     */
+    private final @Nullable MethodHandle canonical;
+
+    private CsonAccessors(Class<?> type) {
+        val lookup = lookupIn(type);
+        for (val field : type.getDeclaredFields()) {
+            if (!Modifier.isStatic(field.getModifiers())) {
+                this.properties.put(field.getName(), property(lookup, type, field));
+            }
+        }
+        this.canonical = type.isRecord() ? canonical(lookup, type) : null;
+    }
+
+    static @NotNull CsonAccessors of(@NotNull Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * Returns the accessor of a field declared by this class.
+     */
+    @NotNull Property property(@NotNull Field field) {
+        return this.properties.get(field.getName());
+    }
+
+    boolean canConstruct() {
+        return this.canonical != null;
+    }
+
+    /**
+     * Creates a record from its components in declaration order.
+     */
+    @NotNull Object construct(@Nullable Object @NotNull [] components) {
+        if (this.canonical == null) {
+            throw new IllegalStateException("Not a record");
+        }
+        try {
+            return (Object) this.canonical.invokeExact(components);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new JsonIOException("Failed to invoke the canonical constructor", e);
+        }
+    }
+
+    private static @Nullable MethodHandles.Lookup lookupIn(Class<?> type) {
+        try {
+            return MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Property property(@Nullable MethodHandles.Lookup lookup, Class<?> type, Field field) {
+        if (lookup != null) {
+            try {
+                if (type.isRecord()) {
+                    val function = componentGetter(lookup, type, field);
+                    return function != null ? new Property(field, null, function, null)
+                            : new Property(field, lookup.unreflectGetter(field).asType(GETTER), null, null);
+                }
+                return new Property(field, lookup.unreflectGetter(field).asType(GETTER), null, setter(lookup, field));
+            } catch (ReflectiveOperationException | RuntimeException ignored) {
+                // Not open to Cson
+            }
+        }
+        return new Property(field, null, null, null);
+    }
+
+    private static @Nullable MethodHandle setter(MethodHandles.Lookup lookup, Field field) throws IllegalAccessException {
+        if (Modifier.isFinal(field.getModifiers()) && !field.trySetAccessible()) {
+            return null;
+        }
+        return lookup.unreflectSetter(field).asType(SETTER);
+    }
+
+    /**
+     * Wraps the accessor method of a record component in a {@code Function}, or returns null if
+     * the lambda cannot be created.
+     */
+    @SuppressWarnings("unchecked")
+    private static @Nullable Function<Object, Object> componentGetter(MethodHandles.Lookup lookup, Class<?> type, Field field) {
+        try {
+            val accessor = lookup.findVirtual(type, field.getName(), MethodType.methodType(field.getType()));
+            val site = LambdaMetafactory.metafactory(lookup, "apply", MethodType.methodType(Function.class),
+                    GETTER, accessor, MethodType.methodType(field.getType(), type).wrap());
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static @Nullable MethodHandle canonical(@Nullable MethodHandles.Lookup lookup, Class<?> type) {
+        if (lookup == null) {
+            return null;
+        }
+        val components = type.getRecordComponents();
+        val parameterTypes = new Class<?>[components.length];
+        for (int i = 0; i < components.length; i++) {
+            parameterTypes[i] = components[i].getType();
+        }
+        try {
+            return lookup.findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                    .asSpreader(Object[].class, components.length)
+                    .asType(CONSTRUCTOR);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads and writes one field. Record components are read through a {@link Function}, other
+     * fields through method handles; where a handle is missing, the field is used reflectively
+     * and must have been made accessible.
+     */
+    static final class Property {
+        private final Field field;
+        private final @Nullable MethodHandle getHandle;
+        private final @Nullable Function<Object, Object> getFunction;
+        private final @Nullable MethodHandle setHandle;
+
+        private Property(Field field, @Nullable MethodHandle getHandle, @Nullable Function<Object, Object> getFunction, @Nullable MethodHandle setHandle) {
+            this.field = field;
+            this.getHandle = getHandle;
+            this.getFunction = getFunction;
+            this.setHandle = setHandle;
+        }
+
+        @NotNull String name() {
+            return this.field.getName();
+        }
+
+        boolean isPrimitive() {
+            return this.field.getType().isPrimitive();
+        }
+
+        @Nullable Object get(@NotNull Object instance) {
+            try {
+                if (this.getFunction != null) {
+                    return this.getFunction.apply(instance);
+                } else if (this.getHandle != null) {
+                    return (Object) this.getHandle.invokeExact(instance);
+                }
+                return this.field.get(instance);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new JsonIOException("Failed to get field " + this.field, e);
+            }
+        }
+
+        void set(@NotNull Object instance, @Nullable Object value) {
+            try {
+                if (this.setHandle != null) {
+                    this.setHandle.invokeExact(instance, value);
+                    return;
+                }
+                this.field.set(instance, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new JsonIOException("Failed to set field " + this.field, e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.field.toString();
+        }
+    }
+}
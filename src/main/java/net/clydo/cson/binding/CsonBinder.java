@@ -0,0 +1,481 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.internal.$Gson$Types;
+import com.google.gson.internal.ConstructorConstructor;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.internal.bind.SerializationDelegatingTypeAdapter;
+import com.google.gson.internal.bind.TreeTypeAdapter;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.reflect.TypeToken;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.reader.CsonJsonTreeReader;
+import net.clydo.cson.writer.CsonJsonTreeWriter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Converts between trees and Java objects without going through a token stream.
+ * <p>
+ * For every type, the binder asks Gson which adapter it would use. Where that is one of Gson's
+ * built-in adapters for scalars, enums, collections, maps, arrays or reflectively bound
+ * classes and records, trees are read and built directly: object members are looked up in a
+ * field table, values converted from the nodes, and new nodes created pre-sized straight from
+ * the field values. Adapters generated by {@code cson-processor} convert trees themselves. Everything
+ * else, like custom type adapters, {@link JsonAdapter} annotations and less
+ * common JDK types, is handed to Gson through a {@link CsonJsonTreeReader} or
+ * {@link CsonJsonTreeWriter} for just that subtree, so the results are the same either way.
+ * <p>
+ * Bindings are created once per type and cached; a binder can be shared between threads.
+ */
+public final class CsonBinder {
+    private final Gson gson;
+    private final ConstructorConstructor constructors;
+    private final boolean finiteFloatsOnly;
+    private final boolean defaultLongs;
+    private final ConcurrentHashMap<TypeToken<?>, CsonBinding> bindings = new ConcurrentHashMap<>();
+    /*
+     * While preparing, the types whose bindings were deferred and still need creating
+     */
+    private final ThreadLocal<ArrayDeque<TypeToken<?>>> preparing = new ThreadLocal<>();
+
+    public CsonBinder(@NotNull Gson gson) {
+        this.gson = gson;
+        this.constructors = constructorsOf(gson);
+        this.finiteFloatsOnly = (Object) gson.getAdapter(double.class) != TypeAdapters.DOUBLE;
+        this.defaultLongs = (Object) gson.getAdapter(long.class) == TypeAdapters.LONG;
+    }
+
+    /**
+     * Binds a tree to the given type.
+     *
+     * @return the bound value, or null for a null tree
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T bind(@Nullable CsonElement element, @NotNull TypeToken<T> type) throws JsonSyntaxException {
+        if (element == null) {
+            return null;
+        }
+        try {
+            return (T) this.binding(type).read(element);
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Builds the tree for a value of the given type, as Gson would write it.
+     */
+    public @NotNull CsonElement toTree(@Nullable Object value, @NotNull TypeToken<?> type) {
+        return this.binding(type).write(value);
+    }
+
+    /**
+     * Creates the bindings for a type and for the types nested in it ahead of their first use,
+     * along with the Gson adapters they are based on. Values whose runtime class differs from
+     * the declared one still get their bindings on first use.
+     */
+    public void prepare(@NotNull TypeToken<?> type) {
+        val pending = new ArrayDeque<TypeToken<?>>();
+        this.preparing.set(pending);
+        try {
+            this.binding(type);
+            TypeToken<?> next;
+            while ((next = pending.poll()) != null) {
+                this.binding(next);
+            }
+        } finally {
+            this.preparing.remove();
+        }
+    }
+
+    boolean serializeNulls() {
+        return this.gson.serializeNulls();
+    }
+
+    CsonBinding binding(TypeToken<?> type) {
+        val cached = this.bindings.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        val created = this.create(type);
+        val previous = this.bindings.putIfAbsent(type, created);
+        return previous != null ? previous : created;
+    }
+
+    /**
+     * Returns a binding that only looks the real one up when first used, so that recursive
+     * types do not recurse while their bindings are being created.
+     */
+    private CsonBinding deferred(TypeToken<?> type) {
+        val cached = this.bindings.get(type);
+        if (cached != null) {
+            return cached;
+        }
+        val pending = this.preparing.get();
+        if (pending != null) {
+            pending.add(type);
+        }
+        return new Deferred(this, type);
+    }
+
+    /**
+     * Returns the binding for a value nested in another one. Like Gson, it writes values with
+     * the binding of their runtime class where the declared type is a class or type variable.
+     */
+    private CsonBinding nested(TypeToken<?> type) {
+        val binding = this.deferred(type);
+        val declared = type.getType();
+        if (declared instanceof TypeVariable<?> || declared instanceof Class<?> c && !c.isPrimitive() && !Modifier.isFinal(c.getModifiers())) {
+            return new RuntimeTyped(this, type, binding);
+        }
+        return binding;
+    }
+
+    private CsonBinding create(TypeToken<?> type) {
+        val rawType = type.getRawType();
+        if (CsonElement.class.isAssignableFrom(rawType)) {
+            return new ElementBinding(rawType);
+        }
+
+        val adapter = this.gson.getAdapter(type);
+        if (adapter instanceof CsonGeneratedAdapter<?> generated) {
+            return new Generated<>(this, generated);
+        } else if (!isBuiltIn(adapter)) {
+            return new Fallback(this.gson, type);
+        }
+
+        val scalar = CsonScalarBinding.forType(rawType);
+        if (scalar == CsonScalarBinding.LONG && !this.defaultLongs) {
+            return new Fallback(this.gson, type);
+        } else if ((scalar == CsonScalarBinding.DOUBLE || scalar == CsonScalarBinding.FLOAT) && this.finiteFloatsOnly) {
+            return scalar.finiteOnly();
+        } else if (scalar != null) {
+            return scalar;
+        }
+
+        val adapterName = adapter.getClass().getName();
+        if (adapterName.endsWith(".EnumTypeAdapter")) {
+            return new CsonContainerBinding.EnumBinding(rawType.isEnum() ? rawType : rawType.getSuperclass());
+        } else if (adapterName.endsWith(".ArrayTypeAdapter")) {
+            val componentType = $Gson$Types.getArrayComponentType(type.getType());
+            return new CsonContainerBinding.ArrayBinding($Gson$Types.getRawType(componentType), this.nested(TypeToken.get(componentType)));
+        } else if (this.constructors == null) {
+            return new Fallback(this.gson, type);
+        } else if (adapterName.endsWith("CollectionTypeAdapterFactory$Adapter") && Collection.class.isAssignableFrom(rawType)) {
+            val elementType = $Gson$Types.getCollectionElementType(type.getType(), rawType);
+            return new CsonContainerBinding.CollectionBinding(this.constructors.get(type), this.nested(TypeToken.get(elementType)));
+        } else if (adapterName.endsWith("MapTypeAdapterFactory$Adapter") && Map.class.isAssignableFrom(rawType)) {
+            val keyAndValue = $Gson$Types.getMapKeyAndValueTypes(type.getType(), rawType);
+            return new CsonContainerBinding.MapBinding(this.constructors.get(type),
+                    this.deferred(TypeToken.get(keyAndValue[0])), this.nested(TypeToken.get(keyAndValue[1])),
+                    this.gson.serializeNulls(), keyAndValue[0] == String.class ? null : new Fallback(this.gson, type));
+        } else if (adapterName.endsWith("ReflectiveTypeAdapterFactory$FieldReflectionAdapter")) {
+            return this.objectBinding(type);
+        } else if (adapterName.endsWith("ReflectiveTypeAdapterFactory$RecordAdapter") && rawType.isRecord()) {
+            return this.recordBinding(type);
+        }
+        return new Fallback(this.gson, type);
+    }
+
+    /**
+     * Collects the fields of a class and its superclasses the way Gson's reflective adapter
+     * does. Falls back to Gson if a field has its own {@link JsonAdapter}, which only Gson can
+     * resolve.
+     */
+    private CsonBinding objectBinding(TypeToken<?> type) {
+        val readFields = new HashMap<String, CsonObjectBinding.BoundField>();
+        val writeFields = new ArrayList<CsonObjectBinding.BoundField>();
+        var current = type;
+        var raw = type.getRawType();
+        while (raw != Object.class) {
+            val accessors = CsonAccessors.of(raw);
+            for (val field : raw.getDeclaredFields()) {
+                val names = this.names(field);
+                if (names == null) {
+                    continue;
+                }
+                if (field.isAnnotationPresent(JsonAdapter.class)) {
+                    return new Fallback(this.gson, type);
+                }
+
+                field.setAccessible(true);
+                val fieldType = TypeToken.get($Gson$Types.resolve(current.getType(), raw, field.getGenericType()));
+                val bound = new CsonObjectBinding.BoundField(accessors.property(field), names.name, this.nested(fieldType));
+                if (names.serialize) {
+                    writeFields.add(bound);
+                }
+                if (names.deserialize) {
+                    readFields.putIfAbsent(names.name, bound);
+                    for (val alternate : names.alternates) {
+                        readFields.putIfAbsent(alternate, bound);
+                    }
+                }
+            }
+            current = TypeToken.get($Gson$Types.resolve(current.getType(), raw, raw.getGenericSuperclass()));
+            raw = current.getRawType();
+        }
+        return new CsonObjectBinding(this.constructors.get(type), readFields,
+                writeFields.toArray(new CsonObjectBinding.BoundField[0]), this.gson.serializeNulls());
+    }
+
+    /**
+     * Collects the components of a record like {@link #objectBinding} collects fields. Falls
+     * back to Gson if the canonical constructor is not accessible.
+     */
+    private CsonBinding recordBinding(TypeToken<?> type) {
+        val raw = type.getRawType();
+        val accessors = CsonAccessors.of(raw);
+        if (!accessors.canConstruct()) {
+            return new Fallback(this.gson, type);
+        }
+
+        val components = raw.getRecordComponents();
+        val defaults = new Object[components.length];
+        val readComponents = new HashMap<String, CsonRecordBinding.Component>();
+        val writeComponents = new ArrayList<CsonRecordBinding.Component>();
+        for (int i = 0; i < components.length; i++) {
+            Field field;
+            try {
+                field = raw.getDeclaredField(components[i].getName());
+            } catch (NoSuchFieldException e) {
+                return new Fallback(this.gson, type);
+            }
+            if (field.getType().isPrimitive()) {
+                defaults[i] = Array.get(Array.newInstance(field.getType(), 1), 0);
+            }
+
+            val names = this.names(field);
+            if (names == null) {
+                continue;
+            }
+            if (field.isAnnotationPresent(JsonAdapter.class)) {
+                return new Fallback(this.gson, type);
+            }
+
+            val componentType = TypeToken.get($Gson$Types.resolve(type.getType(), raw, field.getGenericType()));
+            val component = new CsonRecordBinding.Component(i, accessors.property(field), names.name, this.nested(componentType));
+            if (names.serialize) {
+                writeComponents.add(component);
+            }
+            if (names.deserialize) {
+                readComponents.putIfAbsent(names.name, component);
+                for (val alternate : names.alternates) {
+                    readComponents.putIfAbsent(alternate, component);
+                }
+            }
+        }
+        return new CsonRecordBinding(accessors, defaults, readComponents,
+                writeComponents.toArray(new CsonRecordBinding.Component[0]), this.gson.serializeNulls());
+    }
+
+    /**
+     * Returns the names Gson binds a field under, or null if it excludes the field both ways.
+     */
+    @SuppressWarnings("deprecation") // Gson.excluder() is the only way to reach the excluder
+    private @Nullable FieldNames names(Field field) {
+        val excluder = this.gson.excluder();
+        val serialize = !excluder.excludeClass(field.getType(), true) && !excluder.excludeField(field, true);
+        val deserialize = !excluder.excludeClass(field.getType(), false) && !excluder.excludeField(field, false);
+        if (!serialize && !deserialize) {
+            return null;
+        }
+        val serializedName = field.getAnnotation(SerializedName.class);
+        return serializedName == null
+                ? new FieldNames(this.gson.fieldNamingStrategy().translateName(field), new String[0], serialize, deserialize)
+                : new FieldNames(serializedName.value(), serializedName.alternate(), serialize, deserialize);
+    }
+
+    /**
+     * Returns true for the adapters Gson creates itself, as opposed to registered adapters,
+     * serializers and deserializers, which are wrapped in a {@link TreeTypeAdapter}.
+     */
+    private static boolean isBuiltIn(TypeAdapter<?> adapter) {
+        val name = adapter.getClass().getName();
+        return name.startsWith("com.google.gson.internal.bind.") && !(adapter instanceof TreeTypeAdapter)
+                || name.startsWith("com.google.gson.Gson$");
+    }
+
+    private boolean isReflective(TypeToken<?> type) {
+        TypeAdapter<?> adapter = this.gson.getAdapter(type);
+        while (adapter instanceof SerializationDelegatingTypeAdapter<?> delegating) {
+            val delegate = delegating.getSerializationDelegate();
+            if (delegate == adapter) {
+                break;
+            }
+            adapter = delegate;
+        }
+        return adapter instanceof ReflectiveTypeAdapterFactory.Adapter;
+    }
+
+    /**
+     * Gson does not expose its constructor lookup, which also knows the registered instance
+     * creators. Without it, only types not needing one are bound directly.
+     */
+    private static @Nullable ConstructorConstructor constructorsOf(Gson gson) {
+        try {
+            Field field = Gson.class.getDeclaredField("constructorConstructor");
+            field.setAccessible(true);
+            return (ConstructorConstructor) field.get(gson);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private record FieldNames(String name, String[] alternates, boolean serialize, boolean deserialize) {
+    }
+
+    private record ElementBinding(Class<?> type) implements CsonBinding {
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            if (!this.type.isInstance(element)) {
+                throw new JsonSyntaxException("Expected a " + this.type.getName() + " but was " + element.getClass().getName());
+            }
+            return element;
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            return value == null ? CsonNull.INSTANCE : ((CsonElement) value).deepCopy();
+        }
+    }
+
+    private record Generated<T>(CsonBinder binder, CsonGeneratedAdapter<T> adapter) implements CsonBinding {
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            return this.adapter.fromTree(element, this.binder);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public @NotNull CsonElement write(@Nullable Object value) {
+            // The adapter was looked up for the type of the value
+            return this.adapter.toTree((T) value, this.binder);
+        }
+    }
+
+    private record Fallback(Gson gson, TypeToken<?> type) implements CsonBinding {
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            return this.gson.fromJson(new CsonJsonTreeReader(element), this.type);
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            val writer = new CsonJsonTreeWriter();
+            this.gson.toJson(value, this.type.getType(), writer);
+            return writer.get();
+        }
+    }
+
+    /**
+     * Picks the binding for a value's runtime class by the rule Gson's runtime type wrapper
+     * follows: the runtime one, unless only the declared one is not reflective. The choice is
+     * remembered per runtime class.
+     */
+    private static final class RuntimeTyped implements CsonBinding {
+        private final CsonBinder binder;
+        private final TypeToken<?> declared;
+        private final CsonBinding binding;
+        private final ConcurrentHashMap<Class<?>, CsonBinding> byRuntimeClass = new ConcurrentHashMap<>();
+
+        RuntimeTyped(CsonBinder binder, TypeToken<?> declared, CsonBinding binding) {
+            this.binder = binder;
+            this.declared = declared;
+            this.binding = binding;
+        }
+
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            return this.binding.read(element);
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            if (value == null || value.getClass() == this.declared.getType()) {
+                return this.binding.write(value);
+            }
+            return this.byRuntimeClass.computeIfAbsent(value.getClass(), this::choose).write(value);
+        }
+
+        private CsonBinding choose(Class<?> runtimeClass) {
+            val runtime = TypeToken.get(runtimeClass);
+            if (!this.binder.isReflective(runtime) || this.binder.isReflective(this.declared)) {
+                return this.binder.binding(runtime);
+            }
+            return this.binding;
+        }
+    }
+
+    private static final class Deferred implements CsonBinding {
+        private final CsonBinder binder;
+        private final TypeToken<?> type;
+        /*
+         * Resolving twice is a benign race, both threads get equivalent bindings
+         */
+        private CsonBinding resolved;
+
+        Deferred(CsonBinder binder, TypeToken<?> type) {
+            this.binder = binder;
+            this.type = type;
+        }
+
+        private CsonBinding resolved() {
+            var resolved = this.resolved;
+            if (resolved == null) {
+                resolved = this.binder.binding(this.type);
+                this.resolved = resolved;
+            }
+            return resolved;
+        }
+
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            return this.resolved().read(element);
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            return this.resolved().write(value);
+        }
+    }
+}
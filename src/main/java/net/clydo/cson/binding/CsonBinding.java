@@ -0,0 +1,67 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.JsonSyntaxException;
+import net.clydo.cson.element.CsonArray;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Converts between trees and values of one Java type. Implementations are immutable and shared
+ * by all threads using the binder that created them.
+ */
+interface CsonBinding {
+    @Nullable Object read(@NotNull CsonElement element);
+
+    /**
+     * Builds the tree for a value, {@link CsonNull#INSTANCE} for null. The tree only shares
+     * immutable nodes with anything else.
+     */
+    @NotNull CsonElement write(@Nullable Object value);
+
+    /**
+     * Returns the name of the token the tree reader would report for the element, for error
+     * messages that match the ones Gson produces through it.
+     */
+    static String tokenOf(CsonElement element) {
+        if (element instanceof CsonObject) {
+            return "BEGIN_OBJECT";
+        } else if (element instanceof CsonArray) {
+            return "BEGIN_ARRAY";
+        } else if (element instanceof CsonNull) {
+            return "NULL";
+        } else if (element.isString()) {
+            return "STRING";
+        } else if (element.isBoolean()) {
+            return "BOOLEAN";
+        }
+        return "NUMBER";
+    }
+
+    static JsonSyntaxException unexpected(String expected, CsonElement element) {
+        return new JsonSyntaxException("Expected " + expected + " but was " + tokenOf(element));
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.internal.ObjectConstructor;
+import lombok.val;
+import net.clydo.cson.element.CsonArray;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonObject;
+import net.clydo.cson.element.CsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bindings for the collection, map, array and enum types Gson handles with its built-in adapters.
+ */
+final class CsonContainerBinding {
+    private CsonContainerBinding() {
+    }
+
+    record CollectionBinding(ObjectConstructor<?> constructor, CsonBinding elements) implements CsonBinding {
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            if (element.isNull()) {
+                return null;
+            }
+            if (!(element instanceof CsonArray array)) {
+                throw CsonBinding.unexpected("BEGIN_ARRAY", element);
+            }
+
+            @SuppressWarnings("unchecked")
+            val collection = (Collection<Object>) this.constructor.construct();
+            for (val child : array) {
+                collection.add(this.elements.read(child));
+            }
+            return collection;
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            if (value == null) {
+                return CsonNull.INSTANCE;
+            }
+
+            val collection = (Collection<?>) value;
+            val array = new CsonArray(collection.size());
+            for (val child : collection) {
+                array.add(this.elements.write(child));
+            }
+            return array;
+        }
+    }
+
+    record ArrayBinding(Class<?> componentType, CsonBinding elements) implements CsonBinding {
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            if (element.isNull()) {
+                return null;
+            }
+            if (!(element instanceof CsonArray array)) {
+                throw CsonBinding.unexpected("BEGIN_ARRAY", element);
+            }
+
+            val size = array.size();
+            val result = Array.newInstance(this.componentType, size);
+            for (int i = 0; i < size; i++) {
+                Array.set(result, i, this.elements.read(array.get(i)));
+            }
+            return result;
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            if (value == null) {
+                return CsonNull.INSTANCE;
+            }
+
+            val size = Array.getLength(value);
+            val array = new CsonArray(size);
+            for (int i = 0; i < size; i++) {
+                array.add(this.elements.write(Array.get(value, i)));
+            }
+            return array;
+        }
+    }
+
+    /**
+     * Reads objects with keys converted from their string form, and arrays of key-value pairs as
+     * written with complex map key serialization. Only maps with string keys are written
+     * directly, since how other keys are written depends on the Gson settings; the others go to
+     * {@code writeFallback}.
+     */
+    record MapBinding(ObjectConstructor<?> constructor, CsonBinding keys, CsonBinding values, boolean serializeNulls,
+                      @Nullable CsonBinding writeFallback) implements CsonBinding {
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            if (element.isNull()) {
+                return null;
+            }
+
+            @SuppressWarnings("unchecked")
+            val map = (Map<Object, Object>) this.constructor.construct();
+            if (element instanceof CsonObject object) {
+                for (val entry : object) {
+                    this.put(map, this.keys.read(new CsonPrimitive(entry.getKey())), entry.getValue());
+                }
+            } else if (element instanceof CsonArray array) {
+                for (val pair : array) {
+                    if (!(pair instanceof CsonArray entry) || entry.size() != 2) {
+                        throw CsonBinding.unexpected("BEGIN_ARRAY", pair);
+                    }
+                    this.put(map, this.keys.read(entry.get(0)), entry.get(1));
+                }
+            } else {
+                throw CsonBinding.unexpected("BEGIN_OBJECT", element);
+            }
+            return map;
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            if (this.writeFallback != null) {
+                return this.writeFallback.write(value);
+            } else if (value == null) {
+                return CsonNull.INSTANCE;
+            }
+
+            val map = (Map<?, ?>) value;
+            val object = new CsonObject(map.size());
+            for (val entry : map.entrySet()) {
+                val element = this.values.write(entry.getValue());
+                if (this.serializeNulls || !element.isNull()) {
+                    object.put(String.valueOf(entry.getKey()), element);
+                }
+            }
+            return object;
+        }
+
+        private void put(Map<Object, Object> map, Object key, CsonElement value) {
+            if (map.put(key, this.values.read(value)) != null) {
+                throw new JsonSyntaxException("duplicate key: " + key);
+            }
+        }
+    }
+
+    /**
+     * Looks constants up by their serialized name, then by their {@code toString()}.
+     */
+    static final class EnumBinding implements CsonBinding {
+        private final HashMap<String, Object> byName = new HashMap<>();
+        private final HashMap<String, Object> byString = new HashMap<>();
+        private final HashMap<Object, CsonPrimitive> names = new HashMap<>();
+
+        EnumBinding(Class<?> type) {
+            for (val constant : type.getEnumConstants()) {
+                val name = ((Enum<?>) constant).name();
+                SerializedName annotation;
+                try {
+                    annotation = type.getField(name).getAnnotation(SerializedName.class);
+                } catch (NoSuchFieldException e) {
+                    throw new IllegalStateException(e);
+                }
+
+                if (annotation != null) {
+                    this.names.put(constant, new CsonPrimitive(annotation.value()));
+                    this.byName.put(annotation.value(), constant);
+                    for (val alternate : annotation.alternate()) {
+                        this.byName.put(alternate, constant);
+                    }
+                } else {
+                    this.names.put(constant, new CsonPrimitive(name));
+                    this.byName.put(name, constant);
+                }
+                this.byString.put(constant.toString(), constant);
+            }
+        }
+
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            if (element.isNull()) {
+                return null;
+            } else if (!element.isString() && !element.isNumber()) {
+                throw CsonBinding.unexpected("STRING", element);
+            }
+
+            val key = element.asString();
+            val constant = this.byName.get(key);
+            return constant == null ? this.byString.get(key) : constant;
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            return value == null ? CsonNull.INSTANCE : this.names.get(value);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.internal.Excluder;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonObject;
+import net.clydo.cson.element.CsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * Base class of the adapters generated by {@code cson-processor}. Besides the token stream
+ * methods of a {@link TypeAdapter}, a generated adapter converts directly between trees and
+ * objects; {@link CsonBinder} uses those whenever Gson would pick the generated adapter.
+ * <p>
+ * The protected helpers are for generated code. They apply the same conversions and Gson
+ * settings as the built-in adapters.
+ */
+public abstract class CsonGeneratedAdapter<T> extends TypeAdapter<T> {
+    protected final Gson gson;
+    private final boolean finiteFloatsOnly;
+    private final boolean longsAsStrings;
+
+    protected CsonGeneratedAdapter(@NotNull Gson gson) {
+        this.gson = gson;
+        this.finiteFloatsOnly = (Object) gson.getAdapter(double.class) != TypeAdapters.DOUBLE;
+        this.longsAsStrings = (Object) gson.getAdapter(long.class) != TypeAdapters.LONG;
+    }
+
+    public abstract @Nullable T fromTree(@NotNull CsonElement element, @NotNull CsonBinder binder);
+
+    public abstract @NotNull CsonElement toTree(@Nullable T value, @NotNull CsonBinder binder);
+
+    /**
+     * Returns the factories of all generated adapters visible to the context class loader. They
+     * are looked up once.
+     */
+    public static @NotNull List<CsonGeneratedAdapterFactory> factories() {
+        return Factories.ALL;
+    }
+
+    /**
+     * Returns the factory through which {@link net.clydo.cson.Cson} registers all generated
+     * adapters. It only uses a generated adapter where Gson would otherwise bind the type
+     * reflectively, so adapters registered on the builder, type hierarchy adapters and
+     * {@link com.google.gson.annotations.JsonAdapter} keep precedence whatever the order of
+     * registration.
+     */
+    public static @NotNull TypeAdapterFactory factory() {
+        return Factories.DISPATCHER;
+    }
+
+    //region Token streams
+    protected static boolean nextIsNull(@NotNull JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+
+    protected static int nextInt(@NotNull JsonReader in) throws IOException {
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static long nextLong(@NotNull JsonReader in) throws IOException {
+        try {
+            return in.nextLong();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static double nextDouble(@NotNull JsonReader in) throws IOException {
+        try {
+            return in.nextDouble();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    protected static boolean nextBoolean(@NotNull JsonReader in) throws IOException {
+        return in.peek() == JsonToken.STRING ? Boolean.parseBoolean(in.nextString()) : in.nextBoolean();
+    }
+
+    protected static String nextString(@NotNull JsonReader in) throws IOException {
+        return in.peek() == JsonToken.BOOLEAN ? Boolean.toString(in.nextBoolean()) : in.nextString();
+    }
+
+    protected final void writeLong(@NotNull JsonWriter out, long value) throws IOException {
+        if (this.longsAsStrings) {
+            out.value(Long.toString(value));
+        } else {
+            out.value(value);
+        }
+    }
+
+    protected final void writeDouble(@NotNull JsonWriter out, double value) throws IOException {
+        out.value(this.finite(value));
+    }
+
+    protected final void writeFloat(@NotNull JsonWriter out, float value) throws IOException {
+        this.finite(value);
+        out.value(value);
+    }
+    //endregion
+
+    //region Trees
+    protected static @NotNull CsonObject expectObject(@NotNull CsonElement element) {
+        if (element instanceof CsonObject object) {
+            return object;
+        }
+        throw CsonBinding.unexpected("BEGIN_OBJECT", element);
+    }
+
+    protected static int intValue(@NotNull CsonElement element) {
+        return (Integer) CsonScalarBinding.INTEGER.read(element);
+    }
+
+    protected static long longValue(@NotNull CsonElement element) {
+        return (Long) CsonScalarBinding.LONG.read(element);
+    }
+
+    protected static double doubleValue(@NotNull CsonElement element) {
+        return (Double) CsonScalarBinding.DOUBLE.read(element);
+    }
+
+    protected static float floatValue(@NotNull CsonElement element) {
+        return (Float) CsonScalarBinding.FLOAT.read(element);
+    }
+
+    protected static boolean booleanValue(@NotNull CsonElement element) {
+        return (Boolean) CsonScalarBinding.BOOLEAN.read(element);
+    }
+
+    protected static @Nullable String stringValue(@NotNull CsonElement element) {
+        return (String) CsonScalarBinding.STRING.read(element);
+    }
+
+    protected final @NotNull CsonElement longTree(long value) {
+        return this.longsAsStrings ? new CsonPrimitive(Long.toString(value)) : CsonPrimitive.of(value);
+    }
+
+    protected final @NotNull CsonElement doubleTree(double value) {
+        return CsonPrimitive.of(this.finite(value));
+    }
+
+    protected final @NotNull CsonElement floatTree(float value) {
+        this.finite(value);
+        return new CsonPrimitive(value);
+    }
+
+    protected static @NotNull CsonElement stringTree(@Nullable String value) {
+        return value == null ? CsonNull.INSTANCE : new CsonPrimitive(value);
+    }
+
+    /**
+     * Puts a member, leaving nulls out unless the binder's Gson serializes them.
+     */
+    protected static void put(@NotNull CsonObject object, @NotNull String name, @NotNull CsonElement value, @NotNull CsonBinder binder) {
+        if (binder.serializeNulls() || !value.isNull()) {
+            object.put(name, value);
+        }
+    }
+    //endregion
+
+    protected final <V> @NotNull TypeAdapter<V> adapter(@NotNull TypeToken<V> type) {
+        return this.gson.getAdapter(type);
+    }
+
+    private double finite(double value) {
+        if (this.finiteFloatsOnly && (Double.isNaN(value) || Double.isInfinite(value))) {
+            throw new IllegalArgumentException(value + " is not a valid double value as per JSON specification. To override this"
+                    + " behavior, use GsonBuilder.serializeSpecialFloatingPointValues() method.");
+        }
+        return value;
+    }
+
+    private static final class Factories {
+        static final List<CsonGeneratedAdapterFactory> ALL;
+        static final Dispatcher DISPATCHER;
+
+        static {
+            val loader = ServiceLoader.load(CsonGeneratedAdapterFactory.class);
+            ALL = loader.stream().map(ServiceLoader.Provider::get).toList();
+            DISPATCHER = new Dispatcher(ALL);
+        }
+    }
+
+    private static final class Dispatcher implements TypeAdapterFactory {
+        private final Map<Class<?>, CsonGeneratedAdapterFactory> factories = new HashMap<>();
+
+        private Dispatcher(List<CsonGeneratedAdapterFactory> factories) {
+            for (val factory : factories) {
+                this.factories.put(factory.type(), factory);
+            }
+        }
+
+        @Override
+        public <T> @Nullable TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            val factory = this.factories.get(type.getRawType());
+            if (factory == null) {
+                return null;
+            }
+
+            TypeAdapter<T> delegate;
+            try {
+                delegate = gson.getDelegateAdapter(this, type);
+            } catch (JsonIOException e) {
+                // A ReflectionAccessFilter blocks reflection on the type, which the generated
+                // adapter does not need unless there are exclusions only Gson can apply
+                if (!usesDefaultExclusions(gson)) {
+                    throw e;
+                }
+                return factory.create(gson, type);
+            }
+            if (!(delegate instanceof ReflectiveTypeAdapterFactory.Adapter) || !usesDefaultExclusions(gson)) {
+                return delegate;
+            }
+            return factory.create(gson, type);
+        }
+
+        /**
+         * Returns whether Gson excludes no more fields than the generated code leaves out itself,
+         * static and transient ones. Generated adapters know nothing of {@code @Expose},
+         * {@code @Since}, {@code @Until} or exclusion strategies, so Gson's reflective adapter is
+         * kept wherever any of them are configured.
+         */
+        @SuppressWarnings("deprecation") // Gson.excluder() is the only way to reach the excluder
+        private static boolean usesDefaultExclusions(Gson gson) {
+            return gson.excluder() == Excluder.DEFAULT;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.TypeAdapterFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The service through which generated adapters are found; see
+ * {@link net.clydo.cson.annotation.CsonSerializable}. Each factory creates the
+ * {@link CsonGeneratedAdapter} for exactly one class.
+ */
+public interface CsonGeneratedAdapterFactory extends TypeAdapterFactory {
+    @NotNull Class<?> type();
+}
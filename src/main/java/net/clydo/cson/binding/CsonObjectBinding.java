@@ -0,0 +1,106 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.internal.ObjectConstructor;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+
+/**
+ * Binds objects to classes Gson handles reflectively. Reading creates the instance with Gson's
+ * constructor lookup and assigns the fields named by the members it knows, ignoring the rest; as
+ * in Gson, a null member leaves a primitive field at its default value. Writing puts the
+ * serialized fields in declaration order into an object sized for them. Fields are accessed
+ * through {@link CsonAccessors}.
+ */
+final class CsonObjectBinding implements CsonBinding {
+    private final ObjectConstructor<?> constructor;
+    private final HashMap<String, BoundField> readFields;
+    private final BoundField[] writeFields;
+    private final boolean serializeNulls;
+
+    CsonObjectBinding(ObjectConstructor<?> constructor, HashMap<String, BoundField> readFields, BoundField[] writeFields, boolean serializeNulls) {
+        this.constructor = constructor;
+        this.readFields = readFields;
+        this.writeFields = writeFields;
+        this.serializeNulls = serializeNulls;
+    }
+
+    @Override
+    public @Nullable Object read(@NotNull CsonElement element) {
+        if (element.isNull()) {
+            return null;
+        }
+        if (!(element instanceof CsonObject object)) {
+            throw CsonBinding.unexpected("BEGIN_OBJECT", element);
+        }
+
+        val instance = this.constructor.construct();
+        for (val entry : object) {
+            val field = this.readFields.get(entry.getKey());
+            if (field != null) {
+                field.read(instance, entry.getValue());
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public @NotNull CsonElement write(@Nullable Object value) {
+        if (value == null) {
+            return CsonNull.INSTANCE;
+        }
+
+        val object = new CsonObject(this.writeFields.length);
+        for (val field : this.writeFields) {
+            val fieldValue = field.get(value);
+            // Gson skips fields referring to the object itself
+            if (fieldValue == value) {
+                continue;
+            }
+            val element = field.binding.write(fieldValue);
+            if (this.serializeNulls || !element.isNull()) {
+                object.put(field.name, element);
+            }
+        }
+        return object;
+    }
+
+    record BoundField(CsonAccessors.Property property, String name, CsonBinding binding) {
+        void read(Object instance, CsonElement element) {
+            val value = this.binding.read(element);
+            if (value != null || !this.property.isPrimitive()) {
+                this.property.set(instance, value);
+            }
+        }
+
+        Object get(Object instance) {
+            return this.property.get(instance);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.JsonParseException;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+
+/**
+ * Binds objects to records Gson handles reflectively. Reading collects the components named by
+ * the members into an array, starting from the defaults of primitive components, and passes it
+ * to the canonical constructor; as in Gson, a null member for a primitive component is an
+ * error. Writing reads the components through their accessors.
+ */
+final class CsonRecordBinding implements CsonBinding {
+    private final CsonAccessors accessors;
+    private final Object[] defaults;
+    private final HashMap<String, Component> readComponents;
+    private final Component[] writeComponents;
+    private final boolean serializeNulls;
+
+    CsonRecordBinding(CsonAccessors accessors, Object[] defaults, HashMap<String, Component> readComponents, Component[] writeComponents, boolean serializeNulls) {
+        this.accessors = accessors;
+        this.defaults = defaults;
+        this.readComponents = readComponents;
+        this.writeComponents = writeComponents;
+        this.serializeNulls = serializeNulls;
+    }
+
+    @Override
+    public @Nullable Object read(@NotNull CsonElement element) {
+        if (element.isNull()) {
+            return null;
+        }
+        if (!(element instanceof CsonObject object)) {
+            throw CsonBinding.unexpected("BEGIN_OBJECT", element);
+        }
+
+        val arguments = this.defaults.clone();
+        for (val entry : object) {
+            val component = this.readComponents.get(entry.getKey());
+            if (component == null) {
+                continue;
+            }
+            val value = component.binding.read(entry.getValue());
+            if (value == null && component.property.isPrimitive()) {
+                throw new JsonParseException("null is not allowed as value for record component '" + component.property.name() + "' of primitive type");
+            }
+            arguments[component.index] = value;
+        }
+        return this.accessors.construct(arguments);
+    }
+
+    @Override
+    public @NotNull CsonElement write(@Nullable Object value) {
+        if (value == null) {
+            return CsonNull.INSTANCE;
+        }
+
+        val object = new CsonObject(this.writeComponents.length);
+        for (val component : this.writeComponents) {
+            val componentValue = component.property.get(value);
+            // Gson skips components referring to the record itself
+            if (componentValue == value) {
+                continue;
+            }
+            val element = component.binding.write(componentValue);
+            if (this.serializeNulls || !element.isNull()) {
+                object.put(component.name, element);
+            }
+        }
+        return object;
+    }
+
+    record Component(int index, CsonAccessors.Property property, String name, CsonBinding binding) {
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.binding;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.NumberLimits;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Bindings for the types Gson handles with its built-in scalar adapters. Each one accepts what
+ * that adapter accepts when reading a tree through {@link net.clydo.cson.reader.CsonJsonTreeReader},
+ * and converts the value the same way. Integral values are written as long primitives, which
+ * come from the shared cache when small.
+ */
+enum CsonScalarBinding implements CsonBinding {
+    INTEGER {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            return number(primitive).asInt();
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return CsonPrimitive.of(((Number) value).longValue());
+        }
+    },
+    LONG {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            return number(primitive).asLong();
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return CsonPrimitive.of(((Number) value).longValue());
+        }
+    },
+    SHORT {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            val value = number(primitive).asInt();
+            if (value > 65535 || value < Short.MIN_VALUE) {
+                throw new JsonSyntaxException("Lossy conversion from " + value + " to short");
+            }
+            return (short) value;
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return CsonPrimitive.of(((Number) value).longValue());
+        }
+    },
+    BYTE {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            val value = number(primitive).asInt();
+            if (value > 255 || value < Byte.MIN_VALUE) {
+                throw new JsonSyntaxException("Lossy conversion from " + value + " to byte");
+            }
+            return (byte) value;
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return CsonPrimitive.of(((Number) value).longValue());
+        }
+    },
+    DOUBLE {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            return number(primitive).asDouble();
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return CsonPrimitive.of(((Number) value).doubleValue());
+        }
+    },
+    FLOAT {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            return (float) number(primitive).asDouble();
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return new CsonPrimitive(value instanceof Float ? (Number) value : (Number) ((Number) value).floatValue());
+        }
+    },
+    BOOLEAN {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            if (primitive.isString()) {
+                return Boolean.parseBoolean(primitive.asString());
+            } else if (!primitive.isBoolean()) {
+                throw CsonBinding.unexpected("BOOLEAN", primitive);
+            }
+            return primitive.asBoolean();
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return CsonPrimitive.of((boolean) (Boolean) value);
+        }
+    },
+    CHARACTER {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            val string = string(primitive);
+            if (string.length() != 1) {
+                throw new JsonSyntaxException("Expecting character, got: " + string);
+            }
+            return string.charAt(0);
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return new CsonPrimitive(String.valueOf(value));
+        }
+    },
+    STRING {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            return primitive.isBoolean() ? Boolean.toString(primitive.asBoolean()) : string(primitive);
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return new CsonPrimitive((String) value);
+        }
+    },
+    BIG_DECIMAL {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            try {
+                return NumberLimits.parseBigDecimal(string(primitive));
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException("Failed parsing '" + primitive.asString() + "' as BigDecimal", e);
+            }
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return new CsonPrimitive((Number) value);
+        }
+    },
+    BIG_INTEGER {
+        @Override
+        Object convert(CsonPrimitive primitive) {
+            try {
+                return NumberLimits.parseBigInteger(string(primitive));
+            } catch (NumberFormatException e) {
+                throw new JsonSyntaxException("Failed parsing '" + primitive.asString() + "' as BigInteger", e);
+            }
+        }
+
+        @Override
+        CsonElement toTree(Object value) {
+            return new CsonPrimitive((Number) value);
+        }
+    };
+
+    @Override
+    public @Nullable Object read(@NotNull CsonElement element) {
+        if (element.isNull()) {
+            return null;
+        }
+        if (!(element instanceof CsonPrimitive primitive)) {
+            throw CsonBinding.unexpected(this == BOOLEAN ? "BOOLEAN" : this == STRING || this == CHARACTER ? "STRING" : "NUMBER", element);
+        }
+        try {
+            return this.convert(primitive);
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    @Override
+    public @NotNull CsonElement write(@Nullable Object value) {
+        return value == null ? CsonNull.INSTANCE : this.toTree(value);
+    }
+
+    abstract Object convert(CsonPrimitive primitive);
+
+    abstract CsonElement toTree(Object value);
+
+    /**
+     * Returns a binding like this one that rejects NaN and infinities when writing, as Gson does
+     * unless special floating point values are enabled.
+     */
+    CsonBinding finiteOnly() {
+        return new FiniteOnly(this);
+    }
+
+    /**
+     * Returns the binding for a scalar type, or null if the type is not one.
+     */
+    static @Nullable CsonScalarBinding forType(Class<?> type) {
+        if (type == int.class || type == Integer.class) {
+            return INTEGER;
+        } else if (type == long.class || type == Long.class) {
+            return LONG;
+        } else if (type == double.class || type == Double.class) {
+            return DOUBLE;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        } else if (type == String.class) {
+            return STRING;
+        } else if (type == float.class || type == Float.class) {
+            return FLOAT;
+        } else if (type == short.class || type == Short.class) {
+            return SHORT;
+        } else if (type == byte.class || type == Byte.class) {
+            return BYTE;
+        } else if (type == char.class || type == Character.class) {
+            return CHARACTER;
+        } else if (type == BigDecimal.class) {
+            return BIG_DECIMAL;
+        } else if (type == BigInteger.class) {
+            return BIG_INTEGER;
+        }
+        return null;
+    }
+
+    private record FiniteOnly(CsonScalarBinding scalar) implements CsonBinding {
+        @Override
+        public @Nullable Object read(@NotNull CsonElement element) {
+            return this.scalar.read(element);
+        }
+
+        @Override
+        public @NotNull CsonElement write(@Nullable Object value) {
+            if (value != null) {
+                val number = ((Number) value).doubleValue();
+                if (Double.isNaN(number) || Double.isInfinite(number)) {
+                    throw new IllegalArgumentException(value + " is not a valid double value as per JSON specification. To override this"
+                            + " behavior, use GsonBuilder.serializeSpecialFloatingPointValues() method.");
+                }
+            }
+            return this.scalar.write(value);
+        }
+    }
+
+    private static CsonPrimitive number(CsonPrimitive primitive) {
+        if (!primitive.isNumber() && !primitive.isString()) {
+            throw CsonBinding.unexpected("NUMBER", primitive);
+        }
+        return primitive;
+    }
+
+    private static String string(CsonPrimitive primitive) {
+        if (!primitive.isNumber() && !primitive.isString()) {
+            throw CsonBinding.unexpected("STRING", primitive);
+        }
+        return primitive.asString();
+    }
+}
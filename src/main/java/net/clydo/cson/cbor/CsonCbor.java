@@ -0,0 +1,95 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.cbor;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts trees to and from CBOR (RFC 8949) directly, without going through another library's
+ * data model.
+ *
+ * @see CsonCborWriter
+ * @see CsonCborReader
+ */
+@UtilityClass
+public final class CsonCbor {
+    public static byte @NotNull [] encode(@NotNull CsonElement element) {
+        val out = new ByteArrayOutputStream();
+        write(element, out);
+        return out.toByteArray();
+    }
+
+    public static void write(@NotNull CsonElement element, @NotNull OutputStream out) throws JsonIOException {
+        try {
+            new CsonCborWriter(out).write(element);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Decodes {@code bytes}, which must hold exactly one data item.
+     */
+    public static @NotNull CsonElement decode(byte @NotNull [] bytes) throws JsonSyntaxException {
+        val buffer = ByteBuffer.wrap(bytes);
+        val element = decode(buffer);
+        if (buffer.hasRemaining()) {
+            throw new JsonSyntaxException("Did not consume the entire document.");
+        }
+        return element;
+    }
+
+    /**
+     * Decodes the next data item in {@code buffer}, advancing its position past it.
+     */
+    public static @NotNull CsonElement decode(@NotNull ByteBuffer buffer) throws JsonSyntaxException {
+        try {
+            return new CsonCborReader(buffer).read();
+        } catch (IOException e) {
+            // Buffers are never read from a stream
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Reads one data item from {@code in}, leaving anything after it unread in the reader's
+     * buffer; use a {@link CsonCborReader} to read a sequence.
+     */
+    public static @NotNull CsonElement read(@NotNull InputStream in) throws JsonIOException, JsonSyntaxException {
+        try {
+            return new CsonCborReader(in).read();
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.cbor;
+
+import lombok.val;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The parts of CBOR (RFC 8949) that Cson reads and writes. Every data item starts with an
+ * initial byte holding its major type in the top three bits and, in the low five, either a
+ * value below 24 or which of the following 1, 2, 4 or 8 bytes hold its argument.
+ */
+final class CsonCborFormat {
+    static final int MAJOR_UNSIGNED = 0;
+    static final int MAJOR_NEGATIVE = 1;
+    static final int MAJOR_BYTES = 2;
+    static final int MAJOR_TEXT = 3;
+    static final int MAJOR_ARRAY = 4;
+    static final int MAJOR_MAP = 5;
+    static final int MAJOR_TAG = 6;
+    static final int MAJOR_SIMPLE = 7;
+
+    static final int INFO_ONE_BYTE = 24;
+    static final int INFO_TWO_BYTES = 25;
+    static final int INFO_FOUR_BYTES = 26;
+    static final int INFO_EIGHT_BYTES = 27;
+    static final int INFO_INDEFINITE = 31;
+
+    static final int FALSE = 0xF4;
+    static final int TRUE = 0xF5;
+    static final int NULL = 0xF6;
+    static final int UNDEFINED = 0xF7;
+    static final int HALF = 0xF9;
+    static final int SINGLE = 0xFA;
+    static final int DOUBLE = 0xFB;
+    static final int BREAK = 0xFF;
+
+    static final int TAG_BIGNUM = 2;
+    static final int TAG_NEGATIVE_BIGNUM = 3;
+    static final int TAG_DECIMAL_FRACTION = 4;
+
+    static final VarHandle SHORTS = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private CsonCborFormat() {
+    }
+
+    static float halfToFloat(int half) {
+        val exponent = (half >>> 10) & 0x1F;
+        val mantissa = half & 0x3FF;
+        float value;
+        if (exponent == 0) {
+            value = Math.scalb((float) mantissa, -24);
+        } else if (exponent != 0x1F) {
+            value = Math.scalb((float) (mantissa | 0x400), exponent - 25);
+        } else {
+            value = mantissa == 0 ? Float.POSITIVE_INFINITY : Float.NaN;
+        }
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+
+    /**
+     * Returns the half-precision bits of {@code value}, or -1 if it has none that hold it
+     * exactly.
+     */
+    static int floatToHalf(float value) {
+        if (Float.isNaN(value)) {
+            return 0x7E00;
+        }
+        val bits = Float.floatToRawIntBits(value);
+        val sign = (bits >>> 16) & 0x8000;
+        val magnitude = Math.abs(value);
+        if (magnitude == 0) {
+            return sign;
+        } else if (Float.isInfinite(value)) {
+            return sign | 0x7C00;
+        }
+
+        val exponent = Math.getExponent(value);
+        if (exponent > 15) {
+            return -1;
+        } else if (exponent >= -14) {
+            val mantissa = bits & 0x7FFFFF;
+            return (mantissa & 0x1FFF) != 0 ? -1 : sign | ((exponent + 15) << 10) | (mantissa >>> 13);
+        }
+        // Subnormal, in steps of 2^-24
+        val scaled = magnitude * 0x1p24f;
+        return scaled != (int) scaled ? -1 : sign | (int) scaled;
+    }
+}
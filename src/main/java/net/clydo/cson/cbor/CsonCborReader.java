@@ -0,0 +1,506 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.cbor;
+
+import com.google.gson.JsonSyntaxException;
+import lombok.val;
+import net.clydo.cson.element.*;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static net.clydo.cson.cbor.CsonCborFormat.*;
+
+/**
+ * Reads CBOR (RFC 8949) data items as trees, one per {@link #read()}, from a stream or a
+ * {@link ByteBuffer}. Reading a CBOR sequence takes one reader for all of it, since a stream is
+ * read ahead into a buffer; a {@code ByteBuffer} is instead left positioned right after the last
+ * item read.
+ * <p>
+ * Integers are read as longs, and as {@link BigInteger}s when they do not fit one or are bignums
+ * (tags 2 and 3). Decimal fractions (tag 4) are read as {@link BigDecimal}s and floating point
+ * values of any precision as doubles. Byte strings become base64url strings without padding,
+ * integer map keys become their decimal text, and other tags are dropped in favor of their
+ * content. Simple values other than booleans and null, including undefined, are read as null,
+ * as RFC 8949 suggests for converting to JSON. Malformed input is reported as a
+ * {@link JsonSyntaxException}.
+ */
+public final class CsonCborReader {
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final @Nullable InputStream in;
+    /*
+     * The buffer read from, when it is not backed by an accessible array and is copied from
+     */
+    private final @Nullable ByteBuffer source;
+    private final boolean copySource;
+    private int sourcePosition;
+    private byte[] buffer;
+    private int pos;
+    private int limit;
+    /*
+     * The input offset of buffer[0], for error messages
+     */
+    private long bufferOffset;
+
+    public CsonCborReader(@NotNull InputStream in) {
+        this.in = in;
+        this.source = null;
+        this.copySource = false;
+        this.buffer = new byte[8192];
+    }
+
+    /**
+     * Reads from the remaining bytes of {@code source}, advancing its position past each data
+     * item read. Buffers backed by an accessible array are read from in place.
+     */
+    public CsonCborReader(@NotNull ByteBuffer source) {
+        this.in = null;
+        this.source = source;
+        this.copySource = !source.hasArray();
+        if (this.copySource) {
+            this.buffer = new byte[8192];
+            this.sourcePosition = source.position();
+            this.bufferOffset = this.sourcePosition;
+        } else {
+            this.buffer = source.array();
+            this.pos = source.arrayOffset() + source.position();
+            this.limit = source.arrayOffset() + source.limit();
+            this.bufferOffset = -source.arrayOffset();
+        }
+    }
+
+    /**
+     * Returns whether another data item follows.
+     */
+    public boolean hasNext() throws IOException {
+        return this.request(1);
+    }
+
+    /**
+     * Reads the next data item as a tree.
+     *
+     * @throws JsonSyntaxException if there is no next data item or it is malformed
+     */
+    public @NotNull CsonElement read() throws IOException {
+        try {
+            val stack = new ArrayDeque<Frame>();
+            val root = this.readShallow(stack);
+            while (!stack.isEmpty()) {
+                val frame = stack.peek();
+                if (frame.remaining < 0) {
+                    this.require(1);
+                    if ((this.buffer[this.pos] & 0xFF) == BREAK) {
+                        this.pos++;
+                        stack.pop();
+                        continue;
+                    }
+                } else if (frame.remaining-- == 0) {
+                    stack.pop();
+                    continue;
+                }
+
+                if (frame.container instanceof CsonObject object) {
+                    val key = this.readKey();
+                    object.put(key, this.readShallow(stack));
+                } else {
+                    ((CsonArray) frame.container).add(this.readShallow(stack));
+                }
+            }
+            return root;
+        } finally {
+            this.updateSource();
+        }
+    }
+
+    /**
+     * Reads a data item, or the head of a container, pushing a frame to fill it if it may have
+     * children.
+     */
+    private CsonElement readShallow(ArrayDeque<Frame> stack) throws IOException {
+        while (true) {
+            val initial = this.readByte();
+            val major = initial >>> 5;
+            val info = initial & 0x1F;
+            switch (major) {
+                case MAJOR_UNSIGNED -> {
+                    return unsigned(this.readArgument(info));
+                }
+                case MAJOR_NEGATIVE -> {
+                    return negative(this.readArgument(info));
+                }
+                case MAJOR_BYTES -> {
+                    return CsonPrimitive.of(BASE64URL.encodeToString(this.readString(MAJOR_BYTES, info)));
+                }
+                case MAJOR_TEXT -> {
+                    return CsonPrimitive.of(this.readText(info));
+                }
+                case MAJOR_ARRAY -> {
+                    val size = this.readLength(info);
+                    val array = new CsonArray(this.presize(size));
+                    if (size != 0) {
+                        stack.push(new Frame(array, size));
+                    }
+                    return array;
+                }
+                case MAJOR_MAP -> {
+                    val size = this.readLength(info);
+                    val object = new CsonObject(this.presize(size));
+                    if (size != 0) {
+                        stack.push(new Frame(object, size));
+                    }
+                    return object;
+                }
+                case MAJOR_TAG -> {
+                    val tag = this.readArgument(info);
+                    if (tag == TAG_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) {
+                        return new CsonPrimitive(this.readBignum(tag));
+                    } else if (tag == TAG_DECIMAL_FRACTION) {
+                        return new CsonPrimitive(this.readDecimalFraction());
+                    }
+                    // Other tags only annotate their content, which is read in their place
+                }
+                default -> {
+                    return this.readSimple(initial);
+                }
+            }
+        }
+    }
+
+    private CsonElement readSimple(int initial) throws IOException {
+        return switch (initial) {
+            case FALSE -> CsonPrimitive.of(false);
+            case TRUE -> CsonPrimitive.of(true);
+            case HALF -> {
+                this.require(2);
+                val half = (short) SHORTS.get(this.buffer, this.pos);
+                this.pos += 2;
+                yield CsonPrimitive.of(halfToFloat(half));
+            }
+            case SINGLE -> {
+                this.require(4);
+                val bits = (int) INTS.get(this.buffer, this.pos);
+                this.pos += 4;
+                yield CsonPrimitive.of(Float.intBitsToFloat(bits));
+            }
+            case DOUBLE -> {
+                this.require(8);
+                val bits = (long) LONGS.get(this.buffer, this.pos);
+                this.pos += 8;
+                yield CsonPrimitive.of(Double.longBitsToDouble(bits));
+            }
+            case BREAK -> throw this.syntaxError("Unexpected break");
+            default -> {
+                // Null, undefined and unassigned simple values
+                this.readArgument(initial & 0x1F);
+                yield CsonNull.INSTANCE;
+            }
+        };
+    }
+
+    private String readKey() throws IOException {
+        val initial = this.readByte();
+        val info = initial & 0x1F;
+        return switch (initial >>> 5) {
+            case MAJOR_TEXT -> this.readText(info);
+            case MAJOR_UNSIGNED -> unsigned(this.readArgument(info)).asString();
+            case MAJOR_NEGATIVE -> negative(this.readArgument(info)).asString();
+            default -> throw this.syntaxError("Unsupported map key of major type " + (initial >>> 5));
+        };
+    }
+
+    //region Numbers
+    private static CsonPrimitive unsigned(long argument) {
+        return argument >= 0 ? CsonPrimitive.of(argument) : new CsonPrimitive(unsignedBig(argument));
+    }
+
+    private static CsonPrimitive negative(long argument) {
+        return argument >= 0 ? CsonPrimitive.of(~argument) : new CsonPrimitive(unsignedBig(argument).not());
+    }
+
+    private static BigInteger unsignedBig(long argument) {
+        return new BigInteger(Long.toUnsignedString(argument));
+    }
+
+    private BigInteger readBignum(long tag) throws IOException {
+        val initial = this.readByte();
+        if (initial >>> 5 != MAJOR_BYTES) {
+            throw this.syntaxError("Expected the byte string of a bignum");
+        }
+        val magnitude = new BigInteger(1, this.readString(MAJOR_BYTES, initial & 0x1F));
+        return tag == TAG_NEGATIVE_BIGNUM ? magnitude.not() : magnitude;
+    }
+
+    private BigDecimal readDecimalFraction() throws IOException {
+        val initial = this.readByte();
+        if (initial != (MAJOR_ARRAY << 5 | 2)) {
+            throw this.syntaxError("Expected the exponent and mantissa of a decimal fraction");
+        }
+        val exponent = this.readInteger();
+        if (exponent.bitLength() >= 32 || exponent.intValue() == Integer.MIN_VALUE) {
+            throw this.syntaxError("Decimal fraction exponent out of range");
+        }
+        return new BigDecimal(this.readInteger(), -exponent.intValue());
+    }
+
+    private BigInteger readInteger() throws IOException {
+        val initial = this.readByte();
+        val info = initial & 0x1F;
+        switch (initial >>> 5) {
+            case MAJOR_UNSIGNED -> {
+                val argument = this.readArgument(info);
+                return argument >= 0 ? BigInteger.valueOf(argument) : unsignedBig(argument);
+            }
+            case MAJOR_NEGATIVE -> {
+                val argument = this.readArgument(info);
+                return argument >= 0 ? BigInteger.valueOf(~argument) : unsignedBig(argument).not();
+            }
+            case MAJOR_TAG -> {
+                val tag = this.readArgument(info);
+                if (tag == TAG_BIGNUM || tag == TAG_NEGATIVE_BIGNUM) {
+                    return this.readBignum(tag);
+                }
+            }
+            default -> {
+            }
+        }
+        throw this.syntaxError("Expected an integer");
+    }
+    //endregion
+
+    //region Strings
+    private String readText(int info) throws IOException {
+        if (info == INFO_INDEFINITE) {
+            return new String(this.readChunks(MAJOR_TEXT), StandardCharsets.UTF_8);
+        }
+        val length = this.readStringLength(info);
+        if (this.limit - this.pos >= length) {
+            val text = new String(this.buffer, this.pos, length, StandardCharsets.UTF_8);
+            this.pos += length;
+            return text;
+        }
+        return new String(this.readBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readString(int major, int info) throws IOException {
+        return info == INFO_INDEFINITE ? this.readChunks(major) : this.readBytes(this.readStringLength(info));
+    }
+
+    /**
+     * Reads the definite-length chunks of an indefinite-length string up to its break.
+     */
+    private byte[] readChunks(int major) throws IOException {
+        val chunks = new ByteArrayOutputStream();
+        while (true) {
+            val initial = this.readByte();
+            if (initial == BREAK) {
+                return chunks.toByteArray();
+            } else if (initial >>> 5 != major || (initial & 0x1F) == INFO_INDEFINITE) {
+                throw this.syntaxError("Expected a string chunk");
+            }
+            chunks.writeBytes(this.readBytes(this.readStringLength(initial & 0x1F)));
+        }
+    }
+
+    private int readStringLength(int info) throws IOException {
+        val length = this.readArgument(info);
+        if (length < 0 || length > Integer.MAX_VALUE - 8) {
+            throw this.syntaxError("String length out of range");
+        }
+        return (int) length;
+    }
+    //endregion
+
+    //region Input
+    /**
+     * Reads the argument of a container head, or -1 for an indefinite length.
+     */
+    private long readLength(int info) throws IOException {
+        if (info == INFO_INDEFINITE) {
+            return -1;
+        }
+        val length = this.readArgument(info);
+        if (length < 0) {
+            throw this.syntaxError("Length out of range");
+        }
+        return length;
+    }
+
+    /**
+     * Reads the argument following an initial byte, which is unsigned and so negative as a long
+     * past {@link Long#MAX_VALUE}.
+     */
+    private long readArgument(int info) throws IOException {
+        if (info < INFO_ONE_BYTE) {
+            return info;
+        }
+        switch (info) {
+            case INFO_ONE_BYTE -> {
+                return this.readByte();
+            }
+            case INFO_TWO_BYTES -> {
+                this.require(2);
+                val argument = (short) SHORTS.get(this.buffer, this.pos);
+                this.pos += 2;
+                return argument & 0xFFFF;
+            }
+            case INFO_FOUR_BYTES -> {
+                this.require(4);
+                val argument = (int) INTS.get(this.buffer, this.pos);
+                this.pos += 4;
+                return argument & 0xFFFFFFFFL;
+            }
+            case INFO_EIGHT_BYTES -> {
+                this.require(8);
+                val argument = (long) LONGS.get(this.buffer, this.pos);
+                this.pos += 8;
+                return argument;
+            }
+            default -> throw this.syntaxError("Unexpected additional information " + info);
+        }
+    }
+
+    /**
+     * Limits the capacity containers are created with by what the input can hold, so that a
+     * corrupt size does not allocate more than the input is worth.
+     */
+    private int presize(long size) {
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, this.in == null && !this.copySource ? this.limit - this.pos : 1024);
+    }
+
+    private int readByte() throws IOException {
+        this.require(1);
+        return this.buffer[this.pos++] & 0xFF;
+    }
+
+    /**
+     * Reads {@code length} bytes, growing the result only as input arrives, so that a corrupt
+     * length fails at the end of the input rather than by allocating it up front.
+     */
+    private byte[] readBytes(int length) throws IOException {
+        if (this.limit - this.pos >= length) {
+            val bytes = Arrays.copyOfRange(this.buffer, this.pos, this.pos + length);
+            this.pos += length;
+            return bytes;
+        }
+
+        var bytes = new byte[Math.min(length, 1 << 16)];
+        var filled = 0;
+        while (filled < length) {
+            this.require(1);
+            val chunk = Math.min(length - filled, this.limit - this.pos);
+            if (filled + chunk > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.min(length, Math.max(filled + chunk, bytes.length * 2)));
+            }
+            System.arraycopy(this.buffer, this.pos, bytes, filled, chunk);
+            this.pos += chunk;
+            filled += chunk;
+        }
+        return bytes;
+    }
+
+    private void require(int length) throws IOException {
+        if (!this.request(length)) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+    }
+
+    /**
+     * Makes at least {@code length} bytes available from {@link #pos}, refilling the buffer from
+     * the stream or the copied source if needed. Returns false if the input ends first.
+     */
+    private boolean request(int length) throws IOException {
+        if (this.limit - this.pos >= length) {
+            return true;
+        } else if (this.in == null && !this.copySource) {
+            return false;
+        }
+
+        System.arraycopy(this.buffer, this.pos, this.buffer, 0, this.limit - this.pos);
+        this.bufferOffset += this.pos;
+        this.limit -= this.pos;
+        this.pos = 0;
+        while (this.limit < length) {
+            if (this.in != null) {
+                val read = this.in.read(this.buffer, this.limit, this.buffer.length - this.limit);
+                if (read < 0) {
+                    return false;
+                }
+                this.limit += read;
+            } else {
+                val available = Math.min(this.source.limit() - this.sourcePosition, this.buffer.length - this.limit);
+                if (available == 0) {
+                    return false;
+                }
+                this.source.get(this.sourcePosition, this.buffer, this.limit, available);
+                this.sourcePosition += available;
+                this.limit += available;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves the position of the source buffer to right after what has been read from it.
+     */
+    private void updateSource() {
+        if (this.source == null) {
+            return;
+        }
+        if (this.copySource) {
+            this.source.position(this.sourcePosition - (this.limit - this.pos));
+        } else {
+            this.source.position(this.pos - this.source.arrayOffset());
+        }
+    }
+
+    private JsonSyntaxException syntaxError(String message) {
+        return new JsonSyntaxException(message + " at offset " + (this.bufferOffset + this.pos));
+    }
+    //endregion
+
+    private static final class Frame {
+        private final CsonElement container;
+        /*
+         * Children still to read, or -1 until a break for indefinite lengths
+         */
+        private long remaining;
+
+        private Frame(CsonElement container, long remaining) {
+            this.container = container;
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.cbor;
+
+import lombok.val;
+import net.clydo.cson.element.*;
+import net.clydo.cson.util.CsonUtf8;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+
+import static net.clydo.cson.cbor.CsonCborFormat.*;
+
+/**
+ * Writes trees as CBOR (RFC 8949) to a stream, one data item per {@link #write(CsonElement)}, so
+ * that several writes form a CBOR sequence.
+ * <p>
+ * Integers take the smallest head that holds them and grow into bignums (tags 2 and 3) past 64
+ * bits. {@link BigDecimal}s are written as decimal fractions (tag 4), and floating point values
+ * as the narrowest of half, single and double precision that holds them exactly. Numbers only
+ * known by their text, like those read from JSON, are written as integers if they are integers,
+ * as floating point if a double reads back as the same number, and as decimal fractions
+ * otherwise. Containers always have a definite length.
+ */
+public final class CsonCborWriter implements Flushable {
+    private static final BigInteger UNSIGNED_LONG_LIMIT = BigInteger.ONE.shiftLeft(64);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int count;
+
+    public CsonCborWriter(@NotNull OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes {@code element} as one data item and flushes the buffered output.
+     */
+    public void write(@NotNull CsonElement element) throws IOException {
+        val stack = new ArrayDeque<Iterator<?>>();
+        this.writeShallow(element, stack);
+        while (!stack.isEmpty()) {
+            val iterator = stack.peek();
+            if (!iterator.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            var next = iterator.next();
+            if (next instanceof Map.Entry<?, ?> member) {
+                this.writeText((String) member.getKey());
+                next = member.getValue();
+            }
+            this.writeShallow((CsonElement) next, stack);
+        }
+        this.flush();
+    }
+
+    /**
+     * Writes a value, or the head of a container, pushing the iterator over its children if it
+     * has any.
+     */
+    private void writeShallow(CsonElement element, ArrayDeque<Iterator<?>> stack) throws IOException {
+        if (element == null || element.isNull()) {
+            this.writeByte(NULL);
+        } else if (element instanceof CsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                this.writeByte(primitive.asBoolean() ? TRUE : FALSE);
+            } else if (primitive.isNumber()) {
+                this.writeNumber(primitive.asNumber());
+            } else {
+                val raw = primitive.rawUtf8();
+                if (raw != null) {
+                    this.writeText(raw);
+                } else {
+                    this.writeText(primitive.asString());
+                }
+            }
+        } else if (element instanceof CsonArray array) {
+            this.writeHead(MAJOR_ARRAY, array.size());
+            if (!array.isEmpty()) {
+                stack.push(array.iterator());
+            }
+        } else if (element instanceof CsonObject object) {
+            this.writeHead(MAJOR_MAP, object.size());
+            if (!object.isEmpty()) {
+                stack.push(object.iterator());
+            }
+        } else {
+            throw new IllegalArgumentException("Couldn't write " + element.getClass());
+        }
+    }
+
+    //region Numbers
+    private void writeNumber(Number number) throws IOException {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            this.writeInteger(number.longValue());
+        } else if (number instanceof Double || number instanceof Float) {
+            this.writeFloat(number.doubleValue());
+        } else if (number instanceof BigInteger bigInteger) {
+            this.writeInteger(bigInteger);
+        } else if (number instanceof BigDecimal bigDecimal) {
+            this.writeDecimal(bigDecimal);
+        } else {
+            this.writeNumberText(number.toString());
+        }
+    }
+
+    private void writeNumberText(String text) throws IOException {
+        val length = text.length();
+        val negative = length > 0 && text.charAt(0) == '-';
+        val digits = length - (negative ? 1 : 0);
+        var integer = digits > 0;
+        for (int i = length - digits; integer && i < length; i++) {
+            val c = text.charAt(i);
+            integer = c >= '0' && c <= '9';
+        }
+
+        try {
+            if (integer) {
+                if (digits <= 18) {
+                    this.writeInteger(Long.parseLong(text));
+                } else {
+                    this.writeInteger(new BigInteger(text));
+                }
+                return;
+            }
+            val decimal = new BigDecimal(text);
+            val value = Double.parseDouble(text);
+            if (Double.isFinite(value) && new BigDecimal(Double.toString(value)).compareTo(decimal) == 0) {
+                this.writeFloat(value);
+            } else {
+                this.writeDecimal(decimal);
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Couldn't write number " + text, e);
+        }
+    }
+
+    private void writeInteger(long value) throws IOException {
+        if (value >= 0) {
+            this.writeHead(MAJOR_UNSIGNED, value);
+        } else {
+            this.writeHead(MAJOR_NEGATIVE, ~value);
+        }
+    }
+
+    private void writeInteger(BigInteger value) throws IOException {
+        if (value.bitLength() < 64) {
+            this.writeInteger(value.longValue());
+            return;
+        }
+        // Negative integers are stored as -1 - n, which is ~n
+        val negative = value.signum() < 0;
+        val magnitude = negative ? value.not() : value;
+        if (magnitude.compareTo(UNSIGNED_LONG_LIMIT) < 0) {
+            this.writeHead(negative ? MAJOR_NEGATIVE : MAJOR_UNSIGNED, magnitude.longValue());
+            return;
+        }
+
+        this.writeHead(MAJOR_TAG, negative ? TAG_NEGATIVE_BIGNUM : TAG_BIGNUM);
+        val bytes = magnitude.toByteArray();
+        // Drop the sign byte toByteArray adds when the top bit is set
+        val offset = bytes[0] == 0 ? 1 : 0;
+        this.writeHead(MAJOR_BYTES, bytes.length - offset);
+        this.writeBytes(bytes, offset, bytes.length - offset);
+    }
+
+    private void writeDecimal(BigDecimal value) throws IOException {
+        this.writeHead(MAJOR_TAG, TAG_DECIMAL_FRACTION);
+        this.writeHead(MAJOR_ARRAY, 2);
+        this.writeInteger(-(long) value.scale());
+        this.writeInteger(value.unscaledValue());
+    }
+
+    private void writeFloat(double value) throws IOException {
+        val single = (float) value;
+        if (single != value && !Double.isNaN(value)) {
+            this.ensureCapacity(9);
+            this.buffer[this.count++] = (byte) DOUBLE;
+            LONGS.set(this.buffer, this.count, Double.doubleToRawLongBits(value));
+            this.count += 8;
+            return;
+        }
+
+        val half = floatToHalf(single);
+        if (half >= 0) {
+            this.ensureCapacity(3);
+            this.buffer[this.count++] = (byte) HALF;
+            SHORTS.set(this.buffer, this.count, (short) half);
+            this.count += 2;
+        } else {
+            this.ensureCapacity(5);
+            this.buffer[this.count++] = (byte) SINGLE;
+            INTS.set(this.buffer, this.count, Float.floatToRawIntBits(single));
+            this.count += 4;
+        }
+    }
+    //endregion
+
+    //region Text
+    private void writeText(String string) throws IOException {
+        val utf8Length = CsonUtf8.length(string);
+        if (utf8Length > this.buffer.length) {
+            this.writeText(ByteBuffer.wrap(string.getBytes(StandardCharsets.UTF_8)));
+            return;
+        }
+        this.writeHead(MAJOR_TEXT, utf8Length);
+        this.ensureCapacity(utf8Length);
+        this.count = CsonUtf8.encode(string, this.buffer, this.count);
+    }
+
+    private void writeText(ByteBuffer raw) throws IOException {
+        this.writeHead(MAJOR_TEXT, raw.remaining());
+        var from = raw.position();
+        val to = raw.limit();
+        while (from < to) {
+            if (this.count == this.buffer.length) {
+                this.flushBuffer();
+            }
+            val chunk = Math.min(to - from, this.buffer.length - this.count);
+            raw.get(from, this.buffer, this.count, chunk);
+            this.count += chunk;
+            from += chunk;
+        }
+    }
+    //endregion
+
+    //region Buffer
+    /**
+     * Writes an initial byte and its argument, taken as unsigned, in as few bytes as hold it.
+     */
+    private void writeHead(int major, long argument) throws IOException {
+        this.ensureCapacity(9);
+        val type = major << 5;
+        if (argument >= 0 && argument < INFO_ONE_BYTE) {
+            this.buffer[this.count++] = (byte) (type | (int) argument);
+        } else if (argument >= 0 && argument <= 0xFF) {
+            this.buffer[this.count++] = (byte) (type | INFO_ONE_BYTE);
+            this.buffer[this.count++] = (byte) argument;
+        } else if (argument >= 0 && argument <= 0xFFFF) {
+            this.buffer[this.count++] = (byte) (type | INFO_TWO_BYTES);
+            SHORTS.set(this.buffer, this.count, (short) argument);
+            this.count += 2;
+        } else if (argument >= 0 && argument <= 0xFFFFFFFFL) {
+            this.buffer[this.count++] = (byte) (type | INFO_FOUR_BYTES);
+            INTS.set(this.buffer, this.count, (int) argument);
+            this.count += 4;
+        } else {
+            this.buffer[this.count++] = (byte) (type | INFO_EIGHT_BYTES);
+            LONGS.set(this.buffer, this.count, argument);
+            this.count += 8;
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        this.ensureCapacity(1);
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > this.buffer.length) {
+            this.flushBuffer();
+            this.out.write(bytes, offset, length);
+            return;
+        }
+        this.ensureCapacity(length);
+        System.arraycopy(bytes, offset, this.buffer, this.count, length);
+        this.count += length;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (this.count + length > this.buffer.length) {
+            this.flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.count > 0) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.out.flush();
+    }
+    //endregion
+}
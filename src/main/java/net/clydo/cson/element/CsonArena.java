@@ -0,0 +1,168 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import lombok.val;
+import net.clydo.cson.CsonParser;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * A region owning the {@link CsonObject}s and {@link CsonArray}s created through it.
+ * <p>
+ * Containers are taken from pools kept by the arena and are all handed back at once by
+ * {@link #reset()}, so request-scoped documents can be parsed over and over without leaving
+ * their container nodes and backing lists to the garbage collector. Primitives are immutable
+ * and may be shared between trees, so they are never pooled.
+ * <p>
+ * A tree obtained from an arena must not be used once the arena has been reset or closed.
+ * A debug arena never recycles its containers: it marks them as released instead, so any later
+ * access to them throws an {@link IllegalStateException}.
+ * <p>
+ * Arenas are not thread-safe.
+ */
+public final class CsonArena implements AutoCloseable {
+    private static final int DEFAULT_MAX_POOLED = 4096;
+    /*
+     * Containers bigger than this are dropped on reset rather than pooled, so one huge document
+     * does not pin its backing storage for the lifetime of the arena.
+     */
+    private static final int MAX_POOLED_CONTAINER_SIZE = 1024;
+
+    private final boolean debug;
+    private final int maxPooled;
+
+    private final ArrayList<CsonObject> liveObjects = new ArrayList<>();
+    private final ArrayList<CsonArray> liveArrays = new ArrayList<>();
+    private final ArrayDeque<CsonObject> objectPool = new ArrayDeque<>();
+    private final ArrayDeque<CsonArray> arrayPool = new ArrayDeque<>();
+
+    private boolean closed;
+
+    public CsonArena() {
+        this(false);
+    }
+
+    public CsonArena(boolean debug) {
+        this(debug, DEFAULT_MAX_POOLED);
+    }
+
+    /**
+     * @param debug     whether released containers are poisoned instead of recycled
+     * @param maxPooled the maximum number of objects and of arrays kept for reuse
+     */
+    public CsonArena(boolean debug, int maxPooled) {
+        if (maxPooled < 0) {
+            throw new IllegalArgumentException("maxPooled must not be negative");
+        }
+        this.debug = debug;
+        this.maxPooled = maxPooled;
+    }
+
+    public boolean isDebug() {
+        return this.debug;
+    }
+
+    public CsonObject newObject() {
+        this.ensureOpen();
+        var object = this.objectPool.pollLast();
+        if (object == null) {
+            object = new CsonObject();
+        }
+        this.liveObjects.add(object);
+        return object;
+    }
+
+    public CsonArray newArray() {
+        this.ensureOpen();
+        var array = this.arrayPool.pollLast();
+        if (array == null) {
+            array = new CsonArray();
+        }
+        this.liveArrays.add(array);
+        return array;
+    }
+
+    public @NotNull CsonElement parseString(String json) throws JsonSyntaxException {
+        this.ensureOpen();
+        return CsonParser.parseString(json, this);
+    }
+
+    public @NotNull CsonElement parseReader(Reader reader) throws JsonIOException, JsonSyntaxException {
+        this.ensureOpen();
+        return CsonParser.parseReader(reader, this);
+    }
+
+    public CsonElement parseReader(@NotNull JsonReader reader) throws JsonIOException, JsonSyntaxException {
+        this.ensureOpen();
+        return CsonParser.parseReader(reader, this);
+    }
+
+    /**
+     * Releases every container created since the last reset. The arena stays usable.
+     */
+    public void reset() {
+        for (CsonObject object : this.liveObjects) {
+            val reusable = !this.debug && object.size() <= MAX_POOLED_CONTAINER_SIZE;
+            object.release(this.debug);
+            if (reusable && this.objectPool.size() < this.maxPooled) {
+                this.objectPool.addLast(object);
+            }
+        }
+        this.liveObjects.clear();
+
+        for (CsonArray array : this.liveArrays) {
+            val reusable = !this.debug && array.size() <= MAX_POOLED_CONTAINER_SIZE;
+            array.release(this.debug);
+            if (reusable && this.arrayPool.size() < this.maxPooled) {
+                this.arrayPool.addLast(array);
+            }
+        }
+        this.liveArrays.clear();
+    }
+
+    /**
+     * Releases every live container and drops the pools. The arena cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        if (this.closed) {
+            return;
+        }
+        this.reset();
+        this.objectPool.clear();
+        this.arrayPool.clear();
+        this.closed = true;
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("CsonArena is closed");
+        }
+    }
+}
@@ -26,48 +26,51 @@ import lombok.val;
 import net.clydo.cson.util.CsonUtil;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class CsonArray extends CsonElement implements Iterable<CsonElement> {
-    private final ArrayList<CsonElement> elements;
+    private final CsonElementList elements;
+    private boolean released;
+    private CsonHasher.Cached digest;
 
     public CsonArray(Collection<CsonElement> list) {
-        this.elements = new ArrayList<>(list);
+        this.elements = new CsonElementList(list);
     }
 
     public CsonArray(CsonElement @NotNull ... elements) {
-        this.elements = new ArrayList<>(elements.length);
+        this.elements = new CsonElementList(elements.length);
         this.addAll(elements);
     }
 
     public CsonArray() {
-        this.elements = new ArrayList<>();
+        this.elements = new CsonElementList();
     }
 
     public CsonArray(int capacity) {
-        this.elements = new ArrayList<>(capacity);
+        this.elements = new CsonElementList(capacity);
     }
 
     @Override
     public CsonElement deepCopy() {
-        if (this.elements.isEmpty()) {
-            return new CsonArray();
-        } else {
-            val result = new CsonArray(this.elements.size());
-            for (CsonElement element : this.elements) {
-                result.add(element.deepCopy());
-            }
-            return result;
-        }
+        this.ensureLive();
+        return CsonCursor.transform(this, CsonCursor.COPY);
     }
 
     public CsonArray addUnknown(Object value) {
+        this.ensureLive();
         val psonElement = CsonUtil.toElement(value);
         this.elements.add(psonElement);
         return this;
@@ -94,63 +97,119 @@ public class CsonArray extends CsonElement implements Iterable<CsonElement> {
     }
 
     public CsonArray addAll(Collection<CsonElement> elements) {
+        this.ensureLive();
         this.elements.addAll(elements);
         return this;
     }
 
     public CsonArray add(CsonElement value) {
-        return this.addUnknown(value);
+        return this.addElement(value == null ? CsonNull.INSTANCE : value);
     }
 
     public CsonArray add(Boolean value) {
-        return this.addUnknown(value);
+        return this.addElement(value == null ? CsonNull.INSTANCE : CsonPrimitive.of(value));
     }
 
     public CsonArray add(Character value) {
-        return this.addUnknown(value);
+        return this.addElement(value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
     }
 
     public CsonArray add(Number value) {
-        return this.addUnknown(value);
+        return this.addElement(value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
     }
 
     public CsonArray add(String value) {
-        return this.addUnknown(value);
+        return this.addElement(value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
+    }
+
+    private CsonArray addElement(CsonElement element) {
+        this.ensureLive();
+        this.elements.add(element);
+        return this;
+    }
+
+    /**
+     * Returns a builder for an array of about the given size. The elements are added without
+     * type dispatch into a list sized up front, so it is never resized while building.
+     */
+    @Contract("_ -> new")
+    public static @NotNull Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public CsonArray add(int index, CsonElement element) {
+        this.ensureLive();
+        this.elements.add(index, element == null ? CsonNull.INSTANCE : element);
+        return this;
     }
 
     @CanIgnoreReturnValue
     public CsonElement set(int index, CsonElement element) {
+        this.ensureLive();
         return this.elements.set(index, element == null ? CsonNull.INSTANCE : element);
     }
 
     @CanIgnoreReturnValue
     public boolean remove(CsonElement element) {
+        this.ensureLive();
         return this.elements.remove(element);
     }
 
     @CanIgnoreReturnValue
     public CsonElement remove(int index) {
+        this.ensureLive();
         return this.elements.remove(index);
     }
 
     public boolean contains(CsonElement element) {
+        this.ensureLive();
         return this.elements.contains(element);
     }
 
     public int size() {
+        this.ensureLive();
         return this.elements.size();
     }
 
     public boolean isEmpty() {
+        this.ensureLive();
         return this.elements.isEmpty();
     }
 
     @Override
     public @NotNull Iterator<CsonElement> iterator() {
+        this.ensureLive();
         return this.elements.iterator();
     }
 
+    /**
+     * Returns a spliterator that knows its exact size and splits the index range in halves, so
+     * parallel streams over the array balance well.
+     */
+    @Override
+    public @NotNull Spliterator<CsonElement> spliterator() {
+        this.ensureLive();
+        return this.elements.spliterator();
+    }
+
+    public @NotNull Stream<CsonElement> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    public @NotNull Stream<CsonElement> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /**
+     * Performs the action for every element on the common fork/join pool, in no particular
+     * order. The array must not be modified until this returns.
+     */
+    public void forEachParallel(@NotNull Consumer<? super CsonElement> action) {
+        this.parallelStream().forEach(action);
+    }
+
     public CsonElement get(int i) {
+        this.ensureLive();
         return this.elements.get(i);
     }
 
@@ -163,11 +222,99 @@ public class CsonArray extends CsonElement implements Iterable<CsonElement> {
         throw new IllegalStateException("Array must have size 1, but has size " + size);
     }
 
+    /**
+     * Builds a hash index from the values selected by the given paths to the positions of the
+     * elements holding them. Paths are JSONPath expressions relative to each element, such as
+     * {@code id} or {@code user.id}; several paths form a composite key.
+     *
+     * @see CsonArrayIndex
+     */
+    @Contract("_ -> new")
+    public @NotNull CsonArrayIndex indexBy(@NotNull String @NotNull ... paths) {
+        return new CsonArrayIndex(this, paths, false);
+    }
+
+    /**
+     * Like {@link #indexBy(String...)}, but every key must occur at most once.
+     *
+     * @throws IllegalStateException if two elements have the same key
+     */
+    @Contract("_ -> new")
+    public @NotNull CsonArrayIndex indexByUnique(@NotNull String @NotNull ... paths) {
+        return new CsonArrayIndex(this, paths, true);
+    }
+
+    /**
+     * Extracts the given members of every element into a columnar batch. Every element must be
+     * an object; members it does not have are marked as missing.
+     *
+     * @throws IllegalStateException if an element is not an object
+     * @see CsonColumns
+     */
+    @Contract("_ -> new")
+    public @NotNull CsonColumns toColumns(@NotNull String @NotNull ... fields) {
+        this.ensureLive();
+        return CsonColumns.extract(this, fields);
+    }
+
     @Contract(value = " -> new", pure = true)
     public @NotNull List<CsonElement> asList() {
+        this.ensureLive();
         return new NonNullElementWrapperList<>(this.elements);
     }
 
+    /**
+     * Returns the elements as doubles, converted the way {@link CsonElement#asDouble()} does.
+     * Numbers parsed from JSON text are only parsed once, however often they are streamed.
+     */
+    public @NotNull DoubleStream doubleStream() {
+        this.ensureLive();
+        return StreamSupport.doubleStream(new DoubleElementSpliterator(this.elements, 0, this.elements.size()), false);
+    }
+
+    /**
+     * Returns the elements as longs, converted the way {@link CsonElement#asLong()} does.
+     */
+    public @NotNull LongStream longStream() {
+        this.ensureLive();
+        return StreamSupport.longStream(new LongElementSpliterator(this.elements, 0, this.elements.size()), false);
+    }
+
+    /**
+     * Returns the elements as ints, converted the way {@link CsonElement#asInt()} does.
+     */
+    public @NotNull IntStream intStream() {
+        this.ensureLive();
+        return StreamSupport.intStream(new IntElementSpliterator(this.elements, 0, this.elements.size()), false);
+    }
+
+    public double @NotNull [] toDoubleArray() {
+        this.ensureLive();
+        val result = new double[this.elements.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.elements.get(i).asDouble();
+        }
+        return result;
+    }
+
+    public long @NotNull [] toLongArray() {
+        this.ensureLive();
+        val result = new long[this.elements.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.elements.get(i).asLong();
+        }
+        return result;
+    }
+
+    public int @NotNull [] toIntArray() {
+        this.ensureLive();
+        val result = new int[this.elements.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = this.elements.get(i).asInt();
+        }
+        return result;
+    }
+
     @Override
     public boolean asBoolean() {
         return this.asSingle().asBoolean();
@@ -230,13 +377,219 @@ public class CsonArray extends CsonElement implements Iterable<CsonElement> {
 
     @Override
     public boolean equals(Object obj) {
-        return obj == this || obj instanceof CsonArray psonArray && psonArray.elements.equals(this.elements);
+        this.ensureLive();
+        return obj == this || obj instanceof CsonArray psonArray && CsonDeep.equals(this, psonArray);
     }
 
     @Override
     public int hashCode() {
-        return this.elements.hashCode();
+        this.ensureLive();
+        return CsonDeep.hashCode(this);
     }
 
+    public static final class Builder {
+        private CsonArray array;
+
+        private Builder(int expectedSize) {
+            this.array = new CsonArray(expectedSize);
+        }
+
+        @Contract("_ -> this")
+        public @NotNull Builder add(@Nullable CsonElement value) {
+            return this.append(value == null ? CsonNull.INSTANCE : value);
+        }
+
+        @Contract("_ -> this")
+        public @NotNull Builder addLong(long value) {
+            return this.append(CsonPrimitive.of(value));
+        }
+
+        @Contract("_ -> this")
+        public @NotNull Builder addDouble(double value) {
+            return this.append(CsonPrimitive.of(value));
+        }
+
+        @Contract("_ -> this")
+        public @NotNull Builder addString(@Nullable String value) {
+            return this.append(value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
+        }
+
+        @Contract("_ -> this")
+        public @NotNull Builder addBoolean(boolean value) {
+            return this.append(CsonPrimitive.of(value));
+        }
+
+        @Contract(" -> this")
+        public @NotNull Builder addNull() {
+            return this.append(CsonNull.INSTANCE);
+        }
+
+        /**
+         * Returns the built array. The builder cannot be used afterwards.
+         */
+        public @NotNull CsonArray build() {
+            val array = this.target();
+            this.array = null;
+            return array;
+        }
 
+        private Builder append(CsonElement element) {
+            this.target().elements.add(element);
+            return this;
+        }
+
+        private CsonArray target() {
+            if (this.array == null) {
+                throw new IllegalStateException("Builder has already been built");
+            }
+            return this.array;
+        }
+    }
+
+    int modCount() {
+        return this.elements.modCount();
+    }
+
+    int appendModCount() {
+        return this.elements.appendModCount();
+    }
+
+    /**
+     * Returns the digest last computed for this array, which may be stale; {@link CsonHasher}
+     * validates it.
+     */
+    CsonHasher.Cached cachedDigest() {
+        return this.digest;
+    }
+
+    void cacheDigest(CsonHasher.Cached digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Called by the owning {@link CsonArena} when it is reset.
+     *
+     * @param poison whether any later access to this array should fail
+     */
+    void release(boolean poison) {
+        this.elements.clear();
+        this.released = poison;
+    }
+
+    private void ensureLive() {
+        if (this.released) {
+            throw new IllegalStateException("CsonArray used after its CsonArena was reset");
+        }
+    }
+
+    /**
+     * Base of the primitive spliterators, covering the index range [index, fence) and splitting it
+     * in halves.
+     */
+    private abstract static class ElementSpliterator {
+        final List<CsonElement> elements;
+        final int fence;
+        int index;
+
+        ElementSpliterator(List<CsonElement> elements, int index, int fence) {
+            this.elements = elements;
+            this.index = index;
+            this.fence = fence;
+        }
+
+        public long estimateSize() {
+            return this.fence - this.index;
+        }
+
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    private static final class DoubleElementSpliterator extends ElementSpliterator implements Spliterator.OfDouble {
+        DoubleElementSpliterator(List<CsonElement> elements, int index, int fence) {
+            super(elements, index, fence);
+        }
+
+        @Override
+        public Spliterator.OfDouble trySplit() {
+            val lo = this.index;
+            val mid = (lo + this.fence) >>> 1;
+            return lo >= mid ? null : new DoubleElementSpliterator(this.elements, lo, this.index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(DoubleConsumer action) {
+            if (this.index < this.fence) {
+                action.accept(this.elements.get(this.index++).asDouble());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(DoubleConsumer action) {
+            for (; this.index < this.fence; this.index++) {
+                action.accept(this.elements.get(this.index).asDouble());
+            }
+        }
+    }
+
+    private static final class LongElementSpliterator extends ElementSpliterator implements Spliterator.OfLong {
+        LongElementSpliterator(List<CsonElement> elements, int index, int fence) {
+            super(elements, index, fence);
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            val lo = this.index;
+            val mid = (lo + this.fence) >>> 1;
+            return lo >= mid ? null : new LongElementSpliterator(this.elements, lo, this.index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (this.index < this.fence) {
+                action.accept(this.elements.get(this.index++).asLong());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            for (; this.index < this.fence; this.index++) {
+                action.accept(this.elements.get(this.index).asLong());
+            }
+        }
+    }
+
+    private static final class IntElementSpliterator extends ElementSpliterator implements Spliterator.OfInt {
+        IntElementSpliterator(List<CsonElement> elements, int index, int fence) {
+            super(elements, index, fence);
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            val lo = this.index;
+            val mid = (lo + this.fence) >>> 1;
+            return lo >= mid ? null : new IntElementSpliterator(this.elements, lo, this.index = mid);
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (this.index < this.fence) {
+                action.accept(this.elements.get(this.index++).asInt());
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            for (; this.index < this.fence; this.index++) {
+                action.accept(this.elements.get(this.index).asInt());
+            }
+        }
+    }
 }
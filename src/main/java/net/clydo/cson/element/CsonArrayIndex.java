@@ -0,0 +1,291 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import net.clydo.cson.path.CsonPath;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * A hash index over the elements of a {@link CsonArray}, from the values selected by one or more
+ * paths to element positions. Created by {@link CsonArray#indexBy} and
+ * {@link CsonArray#indexByUnique}.
+ * <p>
+ * Keys are compared the way {@link CsonPrimitive#equals} compares values: integral numbers by
+ * value regardless of type, other numbers as doubles, and strings and booleans as they are.
+ * Lookups accept the same kinds of Java values or {@link CsonElement}s. Elements where a path
+ * selects nothing, null or a container are not indexed.
+ * <p>
+ * The index follows changes made to the array: appended elements are added to it, and any other
+ * change rebuilds it on the next lookup. Changing the key of an element that is already in the
+ * array is not noticed; call {@link #rebuild()} afterwards.
+ */
+public final class CsonArrayIndex {
+    private final CsonArray array;
+    private final CsonPath[] paths;
+    private final boolean unique;
+    /*
+     * Values are an Integer for keys with one position, or a Positions otherwise
+     */
+    private final HashMap<Object, Object> positions = new HashMap<>();
+
+    private int indexedSize;
+    private int indexedModCount;
+    private int indexedAppendModCount;
+    /*
+     * False while indexing and after indexing failed on a duplicate key
+     */
+    private boolean complete;
+
+    CsonArrayIndex(CsonArray array, String[] paths, boolean unique) {
+        if (paths.length == 0) {
+            throw new IllegalArgumentException("At least one path is required");
+        }
+        this.array = array;
+        this.paths = new CsonPath[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            this.paths[i] = CsonPath.compile(toAbsolute(paths[i]));
+        }
+        this.unique = unique;
+        this.rebuild();
+    }
+
+    private static String toAbsolute(String path) {
+        if (path.startsWith("$")) {
+            return path;
+        }
+        return path.startsWith("[") ? "$" + path : "$." + path;
+    }
+
+    /**
+     * Returns the elements with the given key, in array order.
+     */
+    public @NotNull List<CsonElement> get(@NotNull Object @NotNull ... key) {
+        val positions = this.positions(key);
+        val elements = new ArrayList<CsonElement>(positions.length);
+        for (val position : positions) {
+            elements.add(this.array.get(position));
+        }
+        return elements;
+    }
+
+    /**
+     * Returns the first element with the given key, or null.
+     */
+    public @Nullable CsonElement first(@NotNull Object @NotNull ... key) {
+        this.sync();
+        val normalized = this.lookupKey(key);
+        val value = normalized == null ? null : this.positions.get(normalized);
+        if (value == null) {
+            return null;
+        }
+        return this.array.get(value instanceof Integer position ? position : ((Positions) value).values[0]);
+    }
+
+    /**
+     * Returns the positions of the elements with the given key, in ascending order.
+     */
+    public int @NotNull [] positions(@NotNull Object @NotNull ... key) {
+        this.sync();
+        val normalized = this.lookupKey(key);
+        val value = normalized == null ? null : this.positions.get(normalized);
+        if (value == null) {
+            return new int[0];
+        } else if (value instanceof Integer position) {
+            return new int[]{position};
+        }
+        val list = (Positions) value;
+        return Arrays.copyOf(list.values, list.size);
+    }
+
+    public boolean contains(@NotNull Object @NotNull ... key) {
+        this.sync();
+        val normalized = this.lookupKey(key);
+        return normalized != null && this.positions.containsKey(normalized);
+    }
+
+    /**
+     * Returns the number of distinct keys.
+     */
+    public int keyCount() {
+        this.sync();
+        return this.positions.size();
+    }
+
+    public boolean isUnique() {
+        return this.unique;
+    }
+
+    /**
+     * Re-reads the keys of all elements.
+     *
+     * @throws IllegalStateException if the index is unique and a key occurs twice
+     */
+    public void rebuild() {
+        this.positions.clear();
+        this.indexedSize = 0;
+        this.indexFrom(0);
+    }
+
+    /**
+     * Brings the index up to date with the array: incrementally if elements were only appended
+     * since it was last updated, by rebuilding otherwise.
+     */
+    private void sync() {
+        val modCount = this.array.modCount();
+        if (this.complete && modCount == this.indexedModCount) {
+            return;
+        }
+
+        // The array only grew if appends account for every modification since
+        val appendModCount = this.array.appendModCount();
+        if (this.complete && modCount - this.indexedModCount == appendModCount - this.indexedAppendModCount) {
+            this.indexFrom(this.indexedSize);
+        } else {
+            this.rebuild();
+        }
+    }
+
+    private void indexFrom(int start) {
+        this.complete = false;
+        val modCount = this.array.modCount();
+        val appendModCount = this.array.appendModCount();
+        val size = this.array.size();
+        for (int i = start; i < size; i++) {
+            val key = this.elementKey(this.array.get(i));
+            if (key != null) {
+                this.insert(key, i);
+            }
+        }
+        this.indexedSize = size;
+        this.indexedModCount = modCount;
+        this.indexedAppendModCount = appendModCount;
+        this.complete = true;
+    }
+
+    private void insert(Object key, int position) {
+        val previous = this.positions.putIfAbsent(key, position);
+        if (previous == null) {
+            return;
+        }
+        if (this.unique) {
+            throw new IllegalStateException("Duplicate key " + key + " at positions " + previous + " and " + position);
+        }
+        if (previous instanceof Integer first) {
+            this.positions.put(key, new Positions(first, position));
+        } else {
+            ((Positions) previous).add(position);
+        }
+    }
+
+    private @Nullable Object elementKey(CsonElement element) {
+        if (this.paths.length == 1) {
+            return normalize(this.paths[0].selectFirst(element));
+        }
+
+        val parts = new Object[this.paths.length];
+        for (int i = 0; i < this.paths.length; i++) {
+            val part = normalize(this.paths[i].selectFirst(element));
+            if (part == null) {
+                return null;
+            }
+            parts[i] = part;
+        }
+        return List.of(parts);
+    }
+
+    private @Nullable Object lookupKey(Object[] key) {
+        if (key.length != this.paths.length) {
+            throw new IllegalArgumentException("Expected a key of " + this.paths.length + " parts but got " + key.length);
+        }
+        if (key.length == 1) {
+            return normalize(key[0]);
+        }
+
+        val parts = new Object[key.length];
+        for (int i = 0; i < key.length; i++) {
+            val part = normalize(key[i]);
+            if (part == null) {
+                return null;
+            }
+            parts[i] = part;
+        }
+        return List.of(parts);
+    }
+
+    /**
+     * Maps a key value to the object it is hashed as: a Long for integral numbers within range,
+     * a Double for other numbers, a String or a Boolean. Returns null for values that cannot be
+     * keys.
+     */
+    private static @Nullable Object normalize(@Nullable Object value) {
+        if (value instanceof CsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                return primitive.asBoolean();
+            }
+            value = primitive.isNumber() ? primitive.asNumber() : primitive.asString();
+        }
+
+        if (value instanceof String || value instanceof Boolean) {
+            return value;
+        } else if (value instanceof Character character) {
+            return character.toString();
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Double || value instanceof Float) {
+            val number = ((Number) value).doubleValue();
+            return number == Math.rint(number) && Math.abs(number) < 0x1p63 ? (Object) (long) number : (Object) number;
+        } else if (value instanceof Number number) {
+            try {
+                val decimal = number instanceof BigDecimal bigDecimal ? bigDecimal
+                        : number instanceof BigInteger bigInteger ? new BigDecimal(bigInteger)
+                        : new BigDecimal(number.toString());
+                return decimal.longValueExact();
+            } catch (ArithmeticException | NumberFormatException e) {
+                return number.doubleValue();
+            }
+        }
+        return null;
+    }
+
+    private static final class Positions {
+        private int[] values;
+        private int size;
+
+        private Positions(int first, int second) {
+            this.values = new int[]{first, second, 0, 0};
+            this.size = 2;
+        }
+
+        private void add(int position) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = position;
+        }
+    }
+}
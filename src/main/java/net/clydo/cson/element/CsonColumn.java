@@ -0,0 +1,245 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * One field of a {@link CsonColumns} batch, with one entry per row in primitive storage.
+ * <p>
+ * Rows where the field is JSON null or absent are marked in the null bitmap, and the absent ones
+ * additionally in the missing bitmap; both have bit {@code row & 63} of word {@code row >>> 6}
+ * set. The value storage holds zero, false or no code ({@code -1}) for those rows. The arrays
+ * returned by the accessors are the column's own storage and are not copied.
+ */
+public abstract sealed class CsonColumn permits CsonColumn.Longs, CsonColumn.Doubles, CsonColumn.Booleans, CsonColumn.Strings, CsonColumn.Elements {
+    private final String name;
+    private final int size;
+    final long[] nulls;
+    final long[] missing;
+
+    CsonColumn(String name, int size) {
+        this.name = name;
+        this.size = size;
+        this.nulls = new long[words(size)];
+        this.missing = new long[words(size)];
+    }
+
+    static int words(int size) {
+        return (size + 63) >>> 6;
+    }
+
+    public @NotNull String name() {
+        return this.name;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isNull(int row) {
+        return (this.nulls[row >>> 6] & 1L << row) != 0;
+    }
+
+    /**
+     * Returns true if the row does not have this field at all, as opposed to having it set to
+     * null.
+     */
+    public boolean isMissing(int row) {
+        return (this.missing[row >>> 6] & 1L << row) != 0;
+    }
+
+    public long @NotNull [] nullBitmap() {
+        return this.nulls;
+    }
+
+    public long @NotNull [] missingBitmap() {
+        return this.missing;
+    }
+
+    public int nullCount() {
+        var count = 0;
+        for (long word : this.nulls) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the value of a row as an element, or null if the row does not have the field.
+     */
+    public @Nullable CsonElement element(int row) {
+        if (this.isNull(row)) {
+            return this.isMissing(row) ? null : CsonNull.INSTANCE;
+        }
+        return this.value(row);
+    }
+
+    abstract CsonElement value(int row);
+
+    void markNull(int row, boolean missing) {
+        this.nulls[row >>> 6] |= 1L << row;
+        if (missing) {
+            this.missing[row >>> 6] |= 1L << row;
+        }
+    }
+
+    /**
+     * A field whose values are all integers within the range of a long.
+     */
+    public static final class Longs extends CsonColumn {
+        final long[] values;
+
+        Longs(String name, int size) {
+            super(name, size);
+            this.values = new long[size];
+        }
+
+        public long get(int row) {
+            return this.values[row];
+        }
+
+        public long @NotNull [] values() {
+            return this.values;
+        }
+
+        @Override
+        CsonElement value(int row) {
+            return CsonPrimitive.of(this.values[row]);
+        }
+    }
+
+    /**
+     * A numeric field with at least one value that is not an integer within the range of a
+     * long. Values are converted the way {@link CsonElement#asDouble()} does.
+     */
+    public static final class Doubles extends CsonColumn {
+        final double[] values;
+
+        Doubles(String name, int size) {
+            super(name, size);
+            this.values = new double[size];
+        }
+
+        public double get(int row) {
+            return this.values[row];
+        }
+
+        public double @NotNull [] values() {
+            return this.values;
+        }
+
+        @Override
+        CsonElement value(int row) {
+            return CsonPrimitive.of(this.values[row]);
+        }
+    }
+
+    /**
+     * A boolean field, stored as a bitmap laid out like the null bitmap.
+     */
+    public static final class Booleans extends CsonColumn {
+        final long[] values;
+
+        Booleans(String name, int size) {
+            super(name, size);
+            this.values = new long[words(size)];
+        }
+
+        public boolean get(int row) {
+            return (this.values[row >>> 6] & 1L << row) != 0;
+        }
+
+        public long @NotNull [] bitmap() {
+            return this.values;
+        }
+
+        @Override
+        CsonElement value(int row) {
+            return CsonPrimitive.of(this.get(row));
+        }
+    }
+
+    /**
+     * A string field, dictionary-encoded: every row holds the index of its value in the
+     * dictionary, which lists the distinct values in the order they first occur.
+     */
+    public static final class Strings extends CsonColumn {
+        final int[] codes;
+        String[] dictionary;
+
+        Strings(String name, int size) {
+            super(name, size);
+            this.codes = new int[size];
+        }
+
+        public @Nullable String get(int row) {
+            val code = this.codes[row];
+            return code < 0 ? null : this.dictionary[code];
+        }
+
+        public int code(int row) {
+            return this.codes[row];
+        }
+
+        public int @NotNull [] codes() {
+            return this.codes;
+        }
+
+        public @NotNull String @NotNull [] dictionary() {
+            return this.dictionary;
+        }
+
+        @Override
+        CsonElement value(int row) {
+            return new CsonPrimitive(this.dictionary[this.codes[row]]);
+        }
+    }
+
+    /**
+     * A field whose values are of mixed types or containers, or are all null. The elements are
+     * shared with the source array.
+     */
+    public static final class Elements extends CsonColumn {
+        final CsonElement[] values;
+
+        Elements(String name, int size) {
+            super(name, size);
+            this.values = new CsonElement[size];
+        }
+
+        public @Nullable CsonElement get(int row) {
+            return this.values[row];
+        }
+
+        public @Nullable CsonElement @NotNull [] values() {
+            return this.values;
+        }
+
+        @Override
+        CsonElement value(int row) {
+            return this.values[row];
+        }
+    }
+}
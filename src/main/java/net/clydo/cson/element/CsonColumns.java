@@ -0,0 +1,302 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Fields of an array of objects, laid out column by column in primitive arrays, so that
+ * aggregates can run as tight loops instead of looking every cell up in its object.
+ * <p>
+ * The type of each column is picked from the values of its field: {@link CsonColumn.Longs} if
+ * all are integers within the range of a long, {@link CsonColumn.Doubles} for other numbers,
+ * {@link CsonColumn.Booleans} and {@link CsonColumn.Strings} for booleans and strings, and
+ * {@link CsonColumn.Elements} for anything else. Null and absent values do not affect the
+ * choice.
+ * <p>
+ * Extraction runs on the common fork/join pool for large arrays. Rows are handed out in chunks of
+ * a multiple of 64, so no two threads ever write the same bitmap word.
+ *
+ * @see CsonArray#toColumns(String...)
+ */
+public final class CsonColumns {
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final int BOOLEAN = 1;
+    private static final int LONG = 1 << 1;
+    private static final int DOUBLE = 1 << 2;
+    private static final int STRING = 1 << 3;
+    private static final int OTHER = 1 << 4;
+
+    private final int rowCount;
+    private final CsonColumn[] columns;
+    private final HashMap<String, CsonColumn> byName;
+
+    private CsonColumns(int rowCount, CsonColumn[] columns) {
+        this.rowCount = rowCount;
+        this.columns = columns;
+        this.byName = new HashMap<>(columns.length * 2);
+        for (val column : columns) {
+            this.byName.put(column.name(), column);
+        }
+    }
+
+    public int rowCount() {
+        return this.rowCount;
+    }
+
+    public int columnCount() {
+        return this.columns.length;
+    }
+
+    public @NotNull List<CsonColumn> columns() {
+        return List.of(this.columns);
+    }
+
+    public @NotNull CsonColumn column(int index) {
+        return this.columns[index];
+    }
+
+    /**
+     * @throws IllegalArgumentException if the batch has no such column
+     */
+    public @NotNull CsonColumn column(@NotNull String name) {
+        val column = this.byName.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("No column named " + name);
+        }
+        return column;
+    }
+
+    /**
+     * Converts the batch back into an array of objects with the members in column order. Absent
+     * values are left out and nulls become {@link CsonNull}. Numbers come back as a long or a
+     * double, so values beyond the precision of a double do not survive the round trip.
+     */
+    @Contract(" -> new")
+    public @NotNull CsonArray toCsonArray() {
+        val rows = new CsonElement[this.rowCount];
+        forEachChunk(this.rowCount, (from, to) -> {
+            for (int row = from; row < to; row++) {
+                val object = new CsonObject(this.columns.length);
+                for (val column : this.columns) {
+                    val element = column.element(row);
+                    if (element != null) {
+                        object.put(column.name(), element);
+                    }
+                }
+                rows[row] = object;
+            }
+        });
+
+        val array = new CsonArray(this.rowCount);
+        for (val row : rows) {
+            array.add(row);
+        }
+        return array;
+    }
+
+    //region Extraction
+    static CsonColumns extract(CsonArray array, String[] fields) {
+        if (new HashSet<>(Arrays.asList(fields)).size() != fields.length) {
+            throw new IllegalArgumentException("Duplicate field in " + Arrays.toString(fields));
+        }
+
+        val rows = array.size();
+        val chunks = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        val chunkKinds = new int[chunks][];
+        forEachChunk(rows, (from, to) -> {
+            val kinds = new int[fields.length];
+            for (int row = from; row < to; row++) {
+                val object = objectAt(array, row);
+                for (int f = 0; f < fields.length; f++) {
+                    kinds[f] |= kindOf(object.get(fields[f]));
+                }
+            }
+            chunkKinds[from / CHUNK_SIZE] = kinds;
+        });
+
+        val columns = new CsonColumn[fields.length];
+        for (int f = 0; f < fields.length; f++) {
+            var kinds = 0;
+            for (val chunk : chunkKinds) {
+                kinds |= chunk[f];
+            }
+            columns[f] = newColumn(fields[f], rows, kinds);
+        }
+
+        /*
+         * Strings are first coded against a dictionary per chunk, which is merged afterwards
+         */
+        val chunkDictionaries = new String[chunks][][];
+        forEachChunk(rows, (from, to) -> {
+            val dictionaries = new String[fields.length][];
+            for (int f = 0; f < fields.length; f++) {
+                dictionaries[f] = fill(columns[f], array, from, to);
+            }
+            chunkDictionaries[from / CHUNK_SIZE] = dictionaries;
+        });
+
+        for (int f = 0; f < fields.length; f++) {
+            if (columns[f] instanceof CsonColumn.Strings strings) {
+                val column = f;
+                val remaps = mergeDictionaries(strings, chunks, chunk -> chunkDictionaries[chunk][column]);
+                forEachChunk(rows, (from, to) -> {
+                    val remap = remaps[from / CHUNK_SIZE];
+                    for (int row = from; row < to; row++) {
+                        val code = strings.codes[row];
+                        if (code >= 0) {
+                            strings.codes[row] = remap[code];
+                        }
+                    }
+                });
+            }
+        }
+        return new CsonColumns(rows, columns);
+    }
+
+    private static CsonObject objectAt(CsonArray array, int row) {
+        val element = array.get(row);
+        if (element instanceof CsonObject object) {
+            return object;
+        }
+        throw new IllegalStateException("Element " + row + " is not an object");
+    }
+
+    private static int kindOf(CsonElement value) {
+        if (value == null || value.isNull()) {
+            return 0;
+        } else if (value instanceof CsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                return BOOLEAN;
+            } else if (primitive.isNumber()) {
+                return primitive.isExactLong() ? LONG : DOUBLE;
+            }
+            return STRING;
+        }
+        return OTHER;
+    }
+
+    private static CsonColumn newColumn(String name, int rows, int kinds) {
+        return switch (kinds) {
+            case BOOLEAN -> new CsonColumn.Booleans(name, rows);
+            case LONG -> new CsonColumn.Longs(name, rows);
+            case DOUBLE, LONG | DOUBLE -> new CsonColumn.Doubles(name, rows);
+            case STRING -> new CsonColumn.Strings(name, rows);
+            default -> new CsonColumn.Elements(name, rows);
+        };
+    }
+
+    /**
+     * Fills the rows of a chunk into a column and returns the chunk's own dictionary for string
+     * columns, or null for others.
+     */
+    private static String[] fill(CsonColumn column, CsonArray array, int from, int to) {
+        val name = column.name();
+        HashMap<String, Integer> codes = null;
+        if (column instanceof CsonColumn.Strings) {
+            codes = new HashMap<>();
+        }
+
+        for (int row = from; row < to; row++) {
+            val value = objectAt(array, row).get(name);
+            if (value == null || value.isNull()) {
+                column.markNull(row, value == null);
+                if (column instanceof CsonColumn.Strings strings) {
+                    strings.codes[row] = -1;
+                }
+                continue;
+            }
+
+            if (column instanceof CsonColumn.Longs longs) {
+                longs.values[row] = value.asLong();
+            } else if (column instanceof CsonColumn.Doubles doubles) {
+                doubles.values[row] = value.asDouble();
+            } else if (column instanceof CsonColumn.Booleans booleans) {
+                if (value.asBoolean()) {
+                    booleans.values[row >>> 6] |= 1L << row;
+                }
+            } else if (column instanceof CsonColumn.Strings strings) {
+                val dictionary = codes;
+                strings.codes[row] = dictionary.computeIfAbsent(value.asString(), key -> dictionary.size());
+            } else {
+                ((CsonColumn.Elements) column).values[row] = value;
+            }
+        }
+
+        if (codes == null) {
+            return null;
+        }
+        val dictionary = new String[codes.size()];
+        for (val entry : codes.entrySet()) {
+            dictionary[entry.getValue()] = entry.getKey();
+        }
+        return dictionary;
+    }
+
+    /**
+     * Builds the column's dictionary from the chunk dictionaries, in chunk order, and returns per
+     * chunk the mapping from its codes to the merged ones.
+     */
+    private static int[][] mergeDictionaries(CsonColumn.Strings column, int chunks, IntFunction<String[]> chunkDictionary) {
+        val merged = new HashMap<String, Integer>();
+        val remaps = new int[chunks][];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            val dictionary = chunkDictionary.apply(chunk);
+            val remap = new int[dictionary.length];
+            for (int code = 0; code < dictionary.length; code++) {
+                remap[code] = merged.computeIfAbsent(dictionary[code], key -> merged.size());
+            }
+            remaps[chunk] = remap;
+        }
+
+        column.dictionary = new String[merged.size()];
+        for (val entry : merged.entrySet()) {
+            column.dictionary[entry.getValue()] = entry.getKey();
+        }
+        return remaps;
+    }
+    //endregion
+
+    private static void forEachChunk(int rows, ChunkAction action) {
+        val chunks = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        var stream = IntStream.range(0, chunks);
+        if (chunks > 1) {
+            stream = stream.parallel();
+        }
+        stream.forEach(chunk -> action.run(chunk * CHUNK_SIZE, Math.min(rows, (chunk + 1) * CHUNK_SIZE)));
+    }
+
+    @FunctionalInterface
+    private interface ChunkAction {
+        void run(int from, int to);
+    }
+}
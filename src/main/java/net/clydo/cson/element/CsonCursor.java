@@ -0,0 +1,344 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import net.clydo.cson.patch.CsonPointer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The position of a {@link CsonVisitor} or {@link CsonTransformer} in the tree, and the means
+ * to steer the walk from within a callback. One cursor is reused for the whole walk, so it must
+ * not be kept beyond the callback it was passed to.
+ */
+public final class CsonCursor {
+    /*
+     * Rebuilds every container and shares the primitives, like deepCopy always did
+     */
+    static final CsonTransformer COPY = new CsonTransformer() {
+    };
+
+    private final CsonVisitor visitor;
+    private final CsonTransformer transformer;
+
+    private Frame[] stack = new Frame[16];
+    private int stackSize;
+
+    private String key;
+    private int index = -1;
+    private boolean entering;
+    private boolean skip;
+    private boolean stopped;
+    private CsonElement replacement;
+    private CsonElement root;
+
+    private CsonCursor(CsonVisitor visitor, CsonTransformer transformer) {
+        this.visitor = visitor;
+        this.transformer = transformer;
+    }
+
+    /**
+     * Returns the member name of the current element, or null if it is not an object member.
+     */
+    public @Nullable String key() {
+        return this.key;
+    }
+
+    /**
+     * Returns the index of the current element in its source array, or -1 if it is not an array
+     * element.
+     */
+    public int index() {
+        return this.index;
+    }
+
+    /**
+     * Returns the depth of the current element; the root has depth 0.
+     */
+    public int depth() {
+        return this.stackSize;
+    }
+
+    /**
+     * Returns the container in the source tree holding the current element, or null at the
+     * root. When visiting, this is the container after earlier replacements.
+     */
+    public @Nullable CsonElement parent() {
+        return this.stackSize == 0 ? null : this.stack[this.stackSize - 1].node;
+    }
+
+    /**
+     * Returns the JSON Pointer of the current element, built on demand.
+     */
+    public @NotNull String pointer() {
+        val pointer = new StringBuilder();
+        for (int i = 1; i < this.stackSize; i++) {
+            appendToken(pointer, this.stack[i].key, this.stack[i].index);
+        }
+        if (this.stackSize > 0) {
+            appendToken(pointer, this.key, this.index);
+        }
+        return pointer.toString();
+    }
+
+    private static void appendToken(StringBuilder pointer, String key, int index) {
+        pointer.append('/');
+        if (key != null) {
+            pointer.append(CsonPointer.escape(key));
+        } else {
+            pointer.append(index);
+        }
+    }
+
+    /**
+     * Does not descend into the children of the current element. Only has an effect in
+     * {@code enter}.
+     */
+    public void skipSubtree() {
+        this.skip = true;
+    }
+
+    /**
+     * Ends the walk after the current callback.
+     */
+    public void stop() {
+        this.stopped = true;
+    }
+
+    /**
+     * Replaces the current element. A visitor replaces it in its parent container, or as the
+     * result of the walk at the root, and then descends into the replacement unless told to skip
+     * it. A transformer puts the replacement into the result without descending into it, and
+     * may only replace in {@code enter}.
+     */
+    public void replace(@NotNull CsonElement replacement) {
+        if (this.transformer != null && !this.entering) {
+            throw new IllegalStateException("A transformer replaces elements in exit by returning them");
+        }
+        this.replacement = replacement;
+    }
+
+    //region Visiting
+    static CsonElement walk(CsonElement root, CsonVisitor visitor) {
+        val cursor = new CsonCursor(visitor, null);
+        cursor.root = root;
+        cursor.visit(root, null, -1);
+        while (cursor.stackSize > 0 && !cursor.stopped) {
+            val frame = cursor.stack[cursor.stackSize - 1];
+            if (frame.hasNext()) {
+                val child = frame.next();
+                cursor.visit(child, frame.childKey, frame.childIndex);
+                continue;
+            }
+
+            cursor.pop();
+            cursor.key = frame.key;
+            cursor.index = frame.index;
+            cursor.entering = false;
+            visitor.exit(frame.node, cursor);
+            cursor.applyReplacement();
+        }
+        return cursor.root;
+    }
+
+    private void visit(CsonElement element, String key, int index) {
+        this.key = key;
+        this.index = index;
+        this.skip = false;
+        this.entering = true;
+        this.visitor.enter(element, this);
+        if (this.replacement != null) {
+            element = this.replacement;
+            this.applyReplacement();
+        }
+        if (this.stopped) {
+            return;
+        }
+
+        if (!this.skip && isContainer(element)) {
+            this.push(new Frame(element, key, index, null));
+            return;
+        }
+        this.entering = false;
+        this.visitor.exit(element, this);
+        this.applyReplacement();
+    }
+
+    private void applyReplacement() {
+        val replacement = this.replacement;
+        if (replacement == null) {
+            return;
+        }
+        this.replacement = null;
+
+        if (this.stackSize == 0) {
+            this.root = replacement;
+        } else if (this.key != null) {
+            this.stack[this.stackSize - 1].node.asObject().put(this.key, replacement);
+        } else {
+            this.stack[this.stackSize - 1].node.asArray().set(this.index, replacement);
+        }
+    }
+    //endregion
+
+    //region Transforming
+    static @Nullable CsonElement transform(CsonElement root, CsonTransformer transformer) {
+        val cursor = new CsonCursor(null, transformer);
+        cursor.enterTransform(root, null, -1);
+        while (cursor.stackSize > 0) {
+            val frame = cursor.stack[cursor.stackSize - 1];
+            if (cursor.stopped) {
+                // Take the rest over unchanged
+                while (frame.hasNext()) {
+                    val child = frame.next();
+                    cursor.key = frame.childKey;
+                    cursor.index = frame.childIndex;
+                    cursor.emit(child);
+                }
+                cursor.pop();
+                cursor.key = frame.key;
+                cursor.index = frame.index;
+                cursor.emit(frame.rebuilt);
+                continue;
+            }
+
+            if (frame.hasNext()) {
+                val child = frame.next();
+                cursor.enterTransform(child, frame.childKey, frame.childIndex);
+                continue;
+            }
+
+            cursor.pop();
+            cursor.key = frame.key;
+            cursor.index = frame.index;
+            cursor.entering = false;
+            cursor.emit(transformer.exit(frame.node, frame.rebuilt, cursor));
+        }
+        return cursor.root;
+    }
+
+    private void enterTransform(CsonElement element, String key, int index) {
+        this.key = key;
+        this.index = index;
+        this.skip = false;
+        this.entering = true;
+        this.transformer.enter(element, this);
+
+        val replacement = this.replacement;
+        if (replacement != null) {
+            this.replacement = null;
+            this.emit(replacement);
+            return;
+        }
+        if (this.stopped) {
+            this.emit(element);
+            return;
+        }
+
+        if (!this.skip && isContainer(element)) {
+            val rebuilt = element.isObject()
+                    ? new CsonObject(element.asObject().size())
+                    : new CsonArray(element.asArray().size());
+            this.push(new Frame(element, key, index, rebuilt));
+            return;
+        }
+        this.entering = false;
+        this.emit(this.transformer.exit(element, element, this));
+    }
+
+    /**
+     * Puts a result into the container being rebuilt, or makes it the result at the root.
+     */
+    private void emit(@Nullable CsonElement result) {
+        if (result == null) {
+            return;
+        }
+        if (this.stackSize == 0) {
+            this.root = result;
+        } else if (this.key != null) {
+            this.stack[this.stackSize - 1].rebuilt.asObject().put(this.key, result);
+        } else {
+            this.stack[this.stackSize - 1].rebuilt.asArray().add(result);
+        }
+    }
+    //endregion
+
+    private static boolean isContainer(CsonElement element) {
+        return element instanceof CsonObject || element instanceof CsonArray;
+    }
+
+    private void push(Frame frame) {
+        if (this.stackSize == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.stackSize * 2);
+        }
+        this.stack[this.stackSize++] = frame;
+    }
+
+    private void pop() {
+        this.stack[--this.stackSize] = null;
+    }
+
+    /**
+     * A container being walked: where it sits in its parent, how far its children have been
+     * walked, and when transforming, the container being rebuilt from it.
+     */
+    private static final class Frame {
+        final CsonElement node;
+        final String key;
+        final int index;
+        final CsonElement rebuilt;
+        final Iterator<Map.Entry<String, CsonElement>> members;
+        final CsonArray array;
+        int next;
+
+        String childKey;
+        int childIndex = -1;
+
+        Frame(CsonElement node, String key, int index, CsonElement rebuilt) {
+            this.node = node;
+            this.key = key;
+            this.index = index;
+            this.rebuilt = rebuilt;
+            this.members = node instanceof CsonObject object ? object.iterator() : null;
+            this.array = node instanceof CsonArray array ? array : null;
+        }
+
+        boolean hasNext() {
+            return this.members != null ? this.members.hasNext() : this.next < this.array.size();
+        }
+
+        CsonElement next() {
+            if (this.members != null) {
+                val entry = this.members.next();
+                this.childKey = entry.getKey();
+                return entry.getValue();
+            }
+            this.childIndex = this.next++;
+            return this.array.get(this.childIndex);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Structural equality and hashing of trees without recursion. The hash codes are the ones the
+ * collections behind the containers have always produced: the sum of the entry hashes for
+ * objects and the list hash for arrays.
+ */
+final class CsonDeep {
+    private CsonDeep() {
+    }
+
+    static boolean equals(@NotNull CsonElement a, @NotNull CsonElement b) {
+        val pending = new ArrayDeque<CsonElement>();
+        pending.push(b);
+        pending.push(a);
+        while (!pending.isEmpty()) {
+            val left = pending.pop();
+            val right = pending.pop();
+            if (left == right) {
+                continue;
+            }
+
+            if (left instanceof CsonObject leftObject) {
+                if (!(right instanceof CsonObject rightObject) || leftObject.size() != rightObject.size()) {
+                    return false;
+                }
+                for (val entry : leftObject) {
+                    val other = rightObject.get(entry.getKey());
+                    if (other == null) {
+                        return false;
+                    }
+                    pending.push(other);
+                    pending.push(entry.getValue());
+                }
+            } else if (left instanceof CsonArray leftArray) {
+                if (!(right instanceof CsonArray rightArray) || leftArray.size() != rightArray.size()) {
+                    return false;
+                }
+                for (int i = leftArray.size() - 1; i >= 0; i--) {
+                    pending.push(rightArray.get(i));
+                    pending.push(leftArray.get(i));
+                }
+            } else if (!left.equals(right)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static int hashCode(@NotNull CsonElement root) {
+        if (!(root instanceof CsonObject) && !(root instanceof CsonArray)) {
+            return root.hashCode();
+        }
+
+        var stack = new HashFrame[16];
+        var size = 0;
+        stack[size++] = new HashFrame(root);
+        var result = 0;
+        while (size > 0) {
+            val frame = stack[size - 1];
+            if (frame.hasNext()) {
+                val child = frame.next();
+                if (child instanceof CsonObject || child instanceof CsonArray) {
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, size * 2);
+                    }
+                    stack[size++] = new HashFrame(child);
+                } else {
+                    frame.combine(child.hashCode());
+                }
+                continue;
+            }
+
+            stack[--size] = null;
+            if (size == 0) {
+                result = frame.hash;
+            } else {
+                stack[size - 1].combine(frame.hash);
+            }
+        }
+        return result;
+    }
+
+    private static final class HashFrame {
+        final Iterator<Map.Entry<String, CsonElement>> members;
+        final CsonArray array;
+        int next;
+        int hash;
+        String key;
+
+        HashFrame(CsonElement node) {
+            this.members = node instanceof CsonObject object ? object.iterator() : null;
+            this.array = node instanceof CsonArray array ? array : null;
+            this.hash = this.members != null ? 0 : 1;
+        }
+
+        boolean hasNext() {
+            return this.members != null ? this.members.hasNext() : this.next < this.array.size();
+        }
+
+        CsonElement next() {
+            if (this.members != null) {
+                val entry = this.members.next();
+                this.key = entry.getKey();
+                return entry.getValue();
+            }
+            return this.array.get(this.next++);
+        }
+
+        /**
+         * Adds the hash of the child last returned by {@link #next()}.
+         */
+        void combine(int childHash) {
+            if (this.members != null) {
+                this.hash += this.key.hashCode() ^ childHash;
+            } else {
+                this.hash = 31 * this.hash + childHash;
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import net.clydo.cson.patch.CsonPointer;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A 128-bit content digest of a {@link CsonElement} and everything below it.
+ * <p>
+ * Equal elements have equal digests: object digests do not depend on member order, and numbers
+ * that compare equal, such as {@code 1} and {@code 1.0}, digest the same. The value is stable
+ * across runs and JVMs, so it can be used as a cache key or compared between snapshots.
+ * <p>
+ * Objects and arrays cache their digest. A cached digest is checked against the modification
+ * counts of its container and of the containers below it before it is reused, so digesting a
+ * modified tree again only hashes the subtrees on the paths to the changes. That check still
+ * visits every container of the tree, without hashing the unchanged ones.
+ *
+ * @see CsonElement#digest()
+ */
+public record CsonDigest(long high, long low) {
+    public static @NotNull CsonDigest of(@NotNull CsonElement element) {
+        return CsonHasher.digest(element);
+    }
+
+    /**
+     * Parses the 32 hex digits produced by {@link #toString()}.
+     */
+    public static @NotNull CsonDigest fromHex(@NotNull String hex) {
+        if (hex.length() != 32) {
+            throw new IllegalArgumentException("Digest must have 32 hex digits: " + hex);
+        }
+        return new CsonDigest(Long.parseUnsignedLong(hex.substring(0, 16), 16), Long.parseUnsignedLong(hex.substring(16), 16));
+    }
+
+    /**
+     * Returns the JSON Pointers of the outermost subtrees that differ between the two elements,
+     * descending only where the digests differ. Members present on one side only are reported as
+     * changed, and arrays whose length changed are reported as a whole.
+     */
+    public static @NotNull List<String> changedPaths(@NotNull CsonElement before, @NotNull CsonElement after) {
+        val changed = new ArrayList<String>();
+        collectChanges(before, after, "", changed);
+        return changed;
+    }
+
+    private static void collectChanges(CsonElement before, CsonElement after, String path, List<String> changed) {
+        if (before == after || of(before).equals(of(after))) {
+            return;
+        }
+
+        if (before.isObject() && after.isObject()) {
+            val afterObject = after.asObject();
+            for (val entry : before.asObject()) {
+                val other = afterObject.get(entry.getKey());
+                if (other == null) {
+                    changed.add(CsonPointer.append(path, entry.getKey()));
+                } else {
+                    collectChanges(entry.getValue(), other, CsonPointer.append(path, entry.getKey()), changed);
+                }
+            }
+            val beforeObject = before.asObject();
+            for (val key : afterObject.keySet()) {
+                if (!beforeObject.has(key)) {
+                    changed.add(CsonPointer.append(path, key));
+                }
+            }
+        } else if (before.isArray() && after.isArray() && before.asArray().size() == after.asArray().size()) {
+            val beforeArray = before.asArray();
+            val afterArray = after.asArray();
+            for (int i = 0; i < beforeArray.size(); i++) {
+                collectChanges(beforeArray.get(i), afterArray.get(i), CsonPointer.append(path, i), changed);
+            }
+        } else {
+            changed.add(path);
+        }
+    }
+
+    @Override
+    public String toString() {
+        val hex = new StringBuilder(32);
+        appendHex(hex, this.high);
+        appendHex(hex, this.low);
+        return hex.toString();
+    }
+
+    private static void appendHex(StringBuilder builder, long value) {
+        val digits = Long.toHexString(value);
+        builder.append("0".repeat(16 - digits.length())).append(digits);
+    }
+}
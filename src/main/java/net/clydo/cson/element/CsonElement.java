@@ -24,7 +24,11 @@ import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.gson.Strictness;
 import com.google.gson.stream.JsonWriter;
 import net.clydo.cson.CsonConstants;
+import net.clydo.cson.patch.CsonDiff;
+import net.clydo.cson.patch.CsonDiffOptions;
+import net.clydo.cson.patch.CsonPatch;
 import net.clydo.cson.streams.CsonStreams;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.StringWriter;
@@ -37,6 +41,56 @@ public abstract class CsonElement {
 
     public abstract CsonElement deepCopy();
 
+    /**
+     * Estimates the number of heap bytes retained by this element and everything below it.
+     * Instances reachable more than once in the tree are counted once.
+     *
+     * @see CsonStats
+     */
+    public long estimateRetainedSize() {
+        return CsonSizeEstimator.retainedSize(this);
+    }
+
+    /**
+     * Returns the content digest of this element, computing it only for subtrees whose digest is
+     * not cached yet.
+     *
+     * @see CsonDigest
+     */
+    public CsonDigest digest() {
+        return CsonHasher.digest(this);
+    }
+
+    /**
+     * Computes the RFC 6902 JSON Patch that turns this element into the given one. The patch
+     * references subtrees of {@code other} rather than copying them.
+     */
+    public CsonPatch diff(CsonElement other) {
+        return CsonDiff.diff(this, other);
+    }
+
+    public CsonPatch diff(CsonElement other, CsonDiffOptions options) {
+        return CsonDiff.diff(this, other, options);
+    }
+
+    /**
+     * Walks this element and everything below it depth-first, without recursion.
+     *
+     * @return this element, or its replacement if the visitor replaced the root
+     */
+    public CsonElement accept(CsonVisitor visitor) {
+        return CsonCursor.walk(this, visitor);
+    }
+
+    /**
+     * Builds a new tree from this one, without recursion and without modifying this one.
+     *
+     * @return the transformed tree, or null if the transformer left the root out
+     */
+    public @Nullable CsonElement transform(CsonTransformer transformer) {
+        return CsonCursor.transform(this, transformer);
+    }
+
     //endregion
     //region This is ...
     //region CsonObject
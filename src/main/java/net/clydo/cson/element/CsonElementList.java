@@ -0,0 +1,87 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * The element list of a {@link CsonArray}. It exposes the modification count, which also counts
+ * {@link #set} here, so that values derived from the array can tell whether they are stale no
+ * matter which view the array was modified through. The part of that count raised by appending
+ * at the end is tracked separately, so that they can also tell whether the array only grew.
+ */
+final class CsonElementList extends ArrayList<CsonElement> {
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    private int appendModCount;
+
+    CsonElementList() {
+    }
+
+    CsonElementList(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    CsonElementList(Collection<CsonElement> elements) {
+        super(elements);
+    }
+
+    int modCount() {
+        return this.modCount;
+    }
+
+    /**
+     * Returns how much of the modification count was raised by {@link #add(CsonElement)} and
+     * {@link #addAll(Collection)}. If both counts grew by the same amount, nothing but appends
+     * happened in between.
+     */
+    int appendModCount() {
+        return this.appendModCount;
+    }
+
+    @Override
+    public boolean add(CsonElement element) {
+        val before = this.modCount;
+        val added = super.add(element);
+        this.appendModCount += this.modCount - before;
+        return added;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends CsonElement> elements) {
+        val before = this.modCount;
+        val added = super.addAll(elements);
+        this.appendModCount += this.modCount - before;
+        return added;
+    }
+
+    @Override
+    public CsonElement set(int index, CsonElement element) {
+        this.modCount++;
+        return super.set(index, element);
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computes {@link CsonDigest}s. The hash function is MurmurHash3 x64 128 fed with a stream of
+ * little-endian longs: a type tag per value followed by its normalized content. Containers hash
+ * the digests of their children rather than their bytes, which is what makes caching them per
+ * subtree possible.
+ */
+final class CsonHasher {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private static final long NULL = 1;
+    private static final long FALSE = 2;
+    private static final long TRUE = 3;
+    private static final long INTEGER = 4;
+    private static final long DOUBLE = 6;
+    private static final long STRING = 8;
+    private static final long ARRAY = 9;
+    private static final long OBJECT = 10;
+    private static final long MEMBER = 11;
+
+    private static final AtomicLong STAMPS = new AtomicLong();
+
+    private long h1;
+    private long h2;
+    private long pending;
+    private boolean hasPending;
+    private long length;
+
+    private CsonHasher() {
+    }
+
+    static CsonDigest digest(@NotNull CsonElement element) {
+        if (element instanceof CsonObject || element instanceof CsonArray) {
+            return validated(element).digest();
+        }
+        return primitiveDigest(element);
+    }
+
+    /**
+     * Returns the cached digest of a container, recomputing it if the container or anything below
+     * it changed since.
+     * <p>
+     * Each computed digest gets a new, larger stamp, and a container remembers the sum of the
+     * stamps of its container children at the time. A modified descendant is recomputed with a
+     * new stamp, which changes that sum for every ancestor up to the root. Containers do not know
+     * their parents, since one can be shared by several trees, so every call still visits all
+     * containers of the tree to add up their stamps; only the paths that changed are hashed
+     * again. The walk uses an explicit stack, so any depth is supported.
+     */
+    private static Cached validated(CsonElement root) {
+        val stack = new ArrayDeque<Frame>();
+        stack.push(new Frame(root));
+        while (true) {
+            val frame = stack.peek();
+            if (frame.children.hasNext()) {
+                val child = frame.children.next();
+                if (child instanceof CsonObject || child instanceof CsonArray) {
+                    stack.push(new Frame(child));
+                }
+                continue;
+            }
+
+            stack.pop();
+            val result = cached(frame);
+            if (stack.isEmpty()) {
+                return result;
+            }
+            stack.peek().childStamps += result.stamp();
+        }
+    }
+
+    /**
+     * Returns the digest of a container whose container children have all been validated,
+     * reusing the cached one if neither the container nor their stamps changed.
+     */
+    private static Cached cached(Frame frame) {
+        if (frame.container instanceof CsonObject object) {
+            val cached = object.cachedDigest();
+            if (cached != null && cached.modCount() == frame.modCount && cached.childStamps() == frame.childStamps) {
+                return cached;
+            }
+
+            // Members are combined by adding their digests, so their order does not matter
+            var high = 0L;
+            var low = 0L;
+            val hasher = new CsonHasher();
+            for (val entry : object) {
+                val value = childDigest(entry.getValue());
+                hasher.reset();
+                hasher.putLong(MEMBER);
+                hasher.putString(entry.getKey());
+                hasher.putLong(value.high());
+                hasher.putLong(value.low());
+                val member = hasher.finish();
+                high += member.high();
+                low += member.low();
+            }
+            hasher.reset();
+            hasher.putLong(OBJECT);
+            hasher.putLong(object.size());
+            hasher.putLong(high);
+            hasher.putLong(low);
+            val result = new Cached(hasher.finish(), frame.modCount, STAMPS.incrementAndGet(), frame.childStamps);
+            object.cacheDigest(result);
+            return result;
+        }
+
+        val array = (CsonArray) frame.container;
+        val cached = array.cachedDigest();
+        if (cached != null && cached.modCount() == frame.modCount && cached.childStamps() == frame.childStamps) {
+            return cached;
+        }
+
+        val hasher = new CsonHasher();
+        hasher.putLong(ARRAY);
+        hasher.putLong(array.size());
+        for (val child : array) {
+            val value = childDigest(child);
+            hasher.putLong(value.high());
+            hasher.putLong(value.low());
+        }
+        val result = new Cached(hasher.finish(), frame.modCount, STAMPS.incrementAndGet(), frame.childStamps);
+        array.cacheDigest(result);
+        return result;
+    }
+
+    /**
+     * Returns the digest of a child whose container, if it is one, has just been validated.
+     */
+    private static CsonDigest childDigest(CsonElement child) {
+        if (child instanceof CsonObject object) {
+            return object.cachedDigest().digest();
+        } else if (child instanceof CsonArray array) {
+            return array.cachedDigest().digest();
+        }
+        return primitiveDigest(child);
+    }
+
+    private static CsonDigest primitiveDigest(CsonElement element) {
+        val hasher = new CsonHasher();
+        if (element instanceof CsonPrimitive primitive) {
+            hasher.putPrimitive(primitive);
+        } else {
+            hasher.putLong(NULL);
+        }
+        return hasher.finish();
+    }
+
+    private void putPrimitive(CsonPrimitive primitive) {
+        if (primitive.isBoolean()) {
+            this.putLong(primitive.asBoolean() ? TRUE : FALSE);
+        } else if (primitive.isNumber()) {
+            this.putNumber(primitive);
+        } else {
+            this.putLong(STRING);
+            this.putString(primitive.asString());
+        }
+    }
+
+    /**
+     * Feeds a number in one canonical form, so that numbers {@link CsonPrimitive#equals} considers
+     * equal, whatever their types, digest the same: integral values in the range of a long as that
+     * long, and everything else as its double, which is what equals compares mixed types by. A
+     * double that is integral is fed as a long too.
+     * <p>
+     * Like equals, this is exact for integers, but not for decimals only a BigDecimal can hold:
+     * those digest like the double nearest to them.
+     */
+    private void putNumber(CsonPrimitive primitive) {
+        if (primitive.isExactLong()) {
+            this.putLong(INTEGER);
+            this.putLong(primitive.asLong());
+            return;
+        }
+        if (primitive.asNumber() instanceof BigDecimal decimal) {
+            try {
+                val value = decimal.longValueExact();
+                this.putLong(INTEGER);
+                this.putLong(value);
+                return;
+            } catch (ArithmeticException ignored) {
+                // Not an integer, or out of range for a long
+            }
+        }
+
+        val value = primitive.asDouble();
+        if (Double.isNaN(value) || Double.isInfinite(value) || value != Math.rint(value) || Math.abs(value) >= 0x1p63) {
+            this.putLong(DOUBLE);
+            // Collapses -0.0 into 0.0 and all NaNs into one, as equals does
+            this.putLong(value == 0 ? 0 : Double.doubleToLongBits(value));
+        } else {
+            this.putLong(INTEGER);
+            this.putLong((long) value);
+        }
+    }
+
+    private void putString(String string) {
+        val length = string.length();
+        this.putLong(length);
+        var i = 0;
+        for (; i + 4 <= length; i += 4) {
+            this.putLong(string.charAt(i)
+                    | (long) string.charAt(i + 1) << 16
+                    | (long) string.charAt(i + 2) << 32
+                    | (long) string.charAt(i + 3) << 48);
+        }
+        if (i < length) {
+            var tail = 0L;
+            for (int shift = 0; i < length; i++, shift += 16) {
+                tail |= (long) string.charAt(i) << shift;
+            }
+            this.putLong(tail);
+        }
+    }
+
+    private void putLong(long value) {
+        this.length += Long.BYTES;
+        if (!this.hasPending) {
+            this.pending = value;
+            this.hasPending = true;
+            return;
+        }
+        this.hasPending = false;
+
+        var k1 = this.pending;
+        var k2 = value;
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        this.h1 ^= k1;
+        this.h1 = Long.rotateLeft(this.h1, 27);
+        this.h1 += this.h2;
+        this.h1 = this.h1 * 5 + 0x52dce729;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        this.h2 ^= k2;
+        this.h2 = Long.rotateLeft(this.h2, 31);
+        this.h2 += this.h1;
+        this.h2 = this.h2 * 5 + 0x38495ab5;
+    }
+
+    private CsonDigest finish() {
+        if (this.hasPending) {
+            var k1 = this.pending;
+            k1 *= C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= C2;
+            this.h1 ^= k1;
+        }
+
+        this.h1 ^= this.length;
+        this.h2 ^= this.length;
+        this.h1 += this.h2;
+        this.h2 += this.h1;
+        this.h1 = mix(this.h1);
+        this.h2 = mix(this.h2);
+        this.h1 += this.h2;
+        this.h2 += this.h1;
+        return new CsonDigest(this.h1, this.h2);
+    }
+
+    private void reset() {
+        this.h1 = 0;
+        this.h2 = 0;
+        this.pending = 0;
+        this.hasPending = false;
+        this.length = 0;
+    }
+
+    private static long mix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    /**
+     * A container being validated, with the modification count it had when first visited.
+     */
+    private static final class Frame {
+        final CsonElement container;
+        final int modCount;
+        final Iterator<CsonElement> children;
+        long childStamps;
+
+        Frame(CsonElement container) {
+            this.container = container;
+            if (container instanceof CsonObject object) {
+                this.children = object.asMap().values().iterator();
+                this.modCount = object.modCount();
+            } else {
+                val array = (CsonArray) container;
+                this.modCount = array.modCount();
+                this.children = array.iterator();
+            }
+        }
+    }
+
+    /**
+     * A digest cached on a container, with what it was computed from.
+     *
+     * @param modCount    the modification count of the container
+     * @param stamp       a number larger than that of any digest cached before
+     * @param childStamps the sum of the stamps of the container children
+     */
+    record Cached(CsonDigest digest, int modCount, long stamp, long childStamps) {
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import com.google.gson.internal.LinkedTreeMap;
+import lombok.val;
+import net.clydo.cson.CsonConstants;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * The members of a {@link CsonObject}. Small objects keep them in a {@link LinkedTreeMap}; once an
+ * object grows past {@link CsonConstants#getLargeObjectThreshold()} they move to a
+ * {@link LinkedHashMap}, so that lookups in very large objects no longer pay O(log n) string
+ * comparisons. Both keep insertion order, and the switch is invisible through this map and its
+ * views, except that iterators created before it fail with a
+ * {@link ConcurrentModificationException} like after any other structural change.
+ */
+final class CsonMembers extends AbstractMap<String, CsonElement> {
+    private Map<String, CsonElement> delegate;
+
+    /*
+     * Bumped whenever a key is added or removed, but not when a value is replaced, so that the
+     * sorted key snapshot stays valid for as long as the key set does.
+     */
+    private int structureVersion;
+    /*
+     * Bumped on every change made through this map or its views, including replaced values.
+     */
+    private int modCount;
+    private SortedKeys sortedKeys;
+
+    private Set<Entry<String, CsonElement>> entrySet;
+    private Set<String> keySet;
+
+    CsonMembers() {
+        this.delegate = new LinkedTreeMap<>(false);
+    }
+
+    CsonMembers(int expectedSize) {
+        this.delegate = isLarge(expectedSize) ? newHashed(expectedSize) : new LinkedTreeMap<>(false);
+    }
+
+    /**
+     * Returns the map currently holding the members.
+     */
+    Map<String, CsonElement> delegate() {
+        return this.delegate;
+    }
+
+    int modCount() {
+        return this.modCount;
+    }
+
+    /**
+     * Returns the keys in ascending {@link String#compareTo} order. The array is cached until the
+     * key set changes and must not be modified.
+     */
+    String[] sortedKeys() {
+        val cached = this.sortedKeys;
+        if (cached != null && cached.version == this.structureVersion) {
+            return cached.keys;
+        }
+
+        val keys = this.delegate.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        this.sortedKeys = new SortedKeys(this.structureVersion, keys);
+        return keys;
+    }
+
+    /**
+     * Returns the cached sorted key snapshot without building it, or null.
+     */
+    String[] cachedSortedKeys() {
+        val cached = this.sortedKeys;
+        return cached != null && cached.version == this.structureVersion ? cached.keys : null;
+    }
+
+    @Override
+    public int size() {
+        return this.delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return this.delegate.containsKey(key);
+    }
+
+    @Override
+    public CsonElement get(Object key) {
+        return this.delegate.get(key);
+    }
+
+    @Override
+    public CsonElement put(@NotNull String key, @NotNull CsonElement value) {
+        Objects.requireNonNull(key, "key == null");
+        Objects.requireNonNull(value, "value == null");
+        val previous = this.delegate.put(key, value);
+        this.modCount++;
+        if (previous == null) {
+            this.structureVersion++;
+            if (this.delegate instanceof LinkedTreeMap && isLarge(this.delegate.size())) {
+                val hashed = newHashed(this.delegate.size());
+                hashed.putAll(this.delegate);
+                this.delegate = hashed;
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public CsonElement remove(Object key) {
+        val removed = this.delegate.remove(key);
+        if (removed != null) {
+            this.structureVersion++;
+            this.modCount++;
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        if (this.delegate instanceof LinkedTreeMap) {
+            this.delegate.clear();
+        } else {
+            this.delegate = new LinkedTreeMap<>(false);
+        }
+        this.structureVersion++;
+        this.modCount++;
+        this.sortedKeys = null;
+    }
+
+    @Override
+    public @NotNull Set<Entry<String, CsonElement>> entrySet() {
+        var entrySet = this.entrySet;
+        if (entrySet == null) {
+            this.entrySet = entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    @Override
+    public @NotNull Set<String> keySet() {
+        var keySet = this.keySet;
+        if (keySet == null) {
+            this.keySet = keySet = new KeySet();
+        }
+        return keySet;
+    }
+
+    private static boolean isLarge(int size) {
+        return size > CsonConstants.getLargeObjectThreshold();
+    }
+
+    private static Map<String, CsonElement> newHashed(int expectedSize) {
+        return new LinkedHashMap<>((int) Math.min(Integer.MAX_VALUE, (long) Math.ceil(expectedSize / 0.75)));
+    }
+
+    private record SortedKeys(int version, String[] keys) {
+    }
+
+    /**
+     * Wraps an iterator of the current delegate so that removals are counted, and so that it
+     * fails instead of walking, or removing from, a delegate that has since been replaced.
+     */
+    private class TrackingIterator<T> implements Iterator<T> {
+        private final Map<String, CsonElement> source;
+        private final Iterator<T> iterator;
+
+        private TrackingIterator(Map<String, CsonElement> source, Iterator<T> iterator) {
+            this.source = source;
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public T next() {
+            this.checkSource();
+            return this.iterator.next();
+        }
+
+        @Override
+        public void remove() {
+            this.checkSource();
+            this.iterator.remove();
+            CsonMembers.this.structureVersion++;
+            CsonMembers.this.modCount++;
+        }
+
+        void checkSource() {
+            if (CsonMembers.this.delegate != this.source) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * Hands out entries whose {@link Entry#setValue} is counted as a modification and rejects
+     * null, in both backing maps.
+     */
+    private final class EntryIterator extends TrackingIterator<Entry<String, CsonElement>> {
+        private EntryIterator(Map<String, CsonElement> source) {
+            super(source, source.entrySet().iterator());
+        }
+
+        @Override
+        public Entry<String, CsonElement> next() {
+            return new TrackedEntry(this, super.next());
+        }
+    }
+
+    private final class TrackedEntry implements Entry<String, CsonElement> {
+        private final EntryIterator iterator;
+        private final Entry<String, CsonElement> entry;
+
+        private TrackedEntry(EntryIterator iterator, Entry<String, CsonElement> entry) {
+            this.iterator = iterator;
+            this.entry = entry;
+        }
+
+        @Override
+        public String getKey() {
+            return this.entry.getKey();
+        }
+
+        @Override
+        public CsonElement getValue() {
+            return this.entry.getValue();
+        }
+
+        @Override
+        public CsonElement setValue(CsonElement value) {
+            // The hashed delegate would accept null, which put never lets in
+            Objects.requireNonNull(value, "value == null");
+            this.iterator.checkSource();
+            val previous = this.entry.setValue(value);
+            CsonMembers.this.modCount++;
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return this == o || this.entry.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.entry.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return this.entry.toString();
+        }
+    }
+
+    private final class EntrySet extends AbstractSet<Entry<String, CsonElement>> {
+        @Override
+        public @NotNull Iterator<Entry<String, CsonElement>> iterator() {
+            return new EntryIterator(CsonMembers.this.delegate);
+        }
+
+        @Override
+        public int size() {
+            return CsonMembers.this.delegate.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return CsonMembers.this.delegate.entrySet().contains(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (CsonMembers.this.delegate.entrySet().remove(o)) {
+                CsonMembers.this.structureVersion++;
+                CsonMembers.this.modCount++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public void clear() {
+            CsonMembers.this.clear();
+        }
+    }
+
+    private final class KeySet extends AbstractSet<String> {
+        @Override
+        public @NotNull Iterator<String> iterator() {
+            val delegate = CsonMembers.this.delegate;
+            return new TrackingIterator<>(delegate, delegate.keySet().iterator());
+        }
+
+        @Override
+        public int size() {
+            return CsonMembers.this.delegate.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return CsonMembers.this.delegate.containsKey(o);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            return CsonMembers.this.remove(o) != null;
+        }
+
+        @Override
+        public void clear() {
+            CsonMembers.this.clear();
+        }
+    }
+}
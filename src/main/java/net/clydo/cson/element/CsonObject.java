@@ -22,37 +22,53 @@ package net.clydo.cson.element;
 
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
 import com.google.gson.JsonSyntaxException;
-import com.google.gson.internal.LinkedTreeMap;
 import lombok.val;
+import net.clydo.cson.patch.CsonMergeOptions;
+import net.clydo.cson.patch.CsonMerger;
 import net.clydo.cson.util.CsonUtil;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class CsonObject extends CsonElement implements Iterable<Map.Entry<String, CsonElement>> {
-    private final LinkedTreeMap<String, CsonElement> members;
+    private final CsonMembers members;
+    private boolean released;
+    private CsonHasher.Cached digest;
 
     public CsonObject() {
-        this.members = new LinkedTreeMap<>(false);
+        this.members = new CsonMembers();
+    }
+
+    /**
+     * Creates an empty object sized for the given number of members. Objects expected to grow past
+     * {@link net.clydo.cson.CsonConstants#getLargeObjectThreshold()} start out hashed.
+     */
+    public CsonObject(int expectedSize) {
+        this.members = new CsonMembers(expectedSize);
     }
 
     public CsonObject(Map<String, CsonElement> members) {
-        this();
+        this(members.size());
         this.members.putAll(members);
     }
 
     public CsonObject putUnknown(String key, Object value) {
+        this.ensureLive();
         val psonElement = CsonUtil.toElement(value);
         this.members.put(key, psonElement);
         return this;
     }
 
     public CsonObject putUnknown(String key, Object value, Object defaultValue) {
+        this.ensureLive();
         if (!Objects.equals(value, defaultValue)) {
             val psonElement = CsonUtil.toElement(value);
             this.members.put(key, psonElement);
@@ -94,98 +110,225 @@ public class CsonObject extends CsonElement implements Iterable<Map.Entry<String
 
     @CanIgnoreReturnValue
     public CsonObject put(String key, CsonElement value) {
-        return this.putUnknown(key, value);
+        return this.putElement(key, value == null ? CsonNull.INSTANCE : value);
     }
 
     public CsonObject put(String key, CsonObject value, boolean putIfNotEmpty) {
         if (value != null && !value.isEmpty() && putIfNotEmpty) {
-            this.putUnknown(key, value);
+            this.putElement(key, value);
         }
 
         return this;
     }
 
     public CsonObject put(String key, CsonElement value, CsonElement defaultValue) {
-        return this.putUnknown(key, value, defaultValue);
+        return Objects.equals(value, defaultValue) ? this.live() : this.put(key, value);
     }
 
     public CsonObject put(String key, String value) {
-        return this.putUnknown(key, value);
+        return this.putElement(key, value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
     }
 
     public CsonObject put(String key, String value, String defaultValue) {
-        return this.putUnknown(key, value, defaultValue);
+        return Objects.equals(value, defaultValue) ? this.live() : this.put(key, value);
     }
 
     public CsonObject put(String key, Number value) {
-        return this.putUnknown(key, value);
+        return this.putElement(key, value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
     }
 
     public CsonObject put(String key, Number value, Number defaultValue) {
-        return this.putUnknown(key, value, defaultValue);
+        return Objects.equals(value, defaultValue) ? this.live() : this.put(key, value);
     }
 
     public CsonObject put(String key, Boolean value) {
-        return this.putUnknown(key, value);
+        return this.putElement(key, value == null ? CsonNull.INSTANCE : CsonPrimitive.of(value));
     }
 
     public CsonObject put(String key, Boolean value, Boolean defaultValue) {
-        return this.putUnknown(key, value, defaultValue);
+        return Objects.equals(value, defaultValue) ? this.live() : this.put(key, value);
     }
 
     public CsonObject put(String key, Character value) {
-        return this.putUnknown(key, value);
+        return this.putElement(key, value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
     }
 
     public CsonObject put(String key, Character value, Character defaultValue) {
-        return this.putUnknown(key, value, defaultValue);
+        return Objects.equals(value, defaultValue) ? this.live() : this.put(key, value);
+    }
+
+    private CsonObject putElement(String key, CsonElement element) {
+        this.ensureLive();
+        this.members.put(key, element);
+        return this;
+    }
+
+    private CsonObject live() {
+        this.ensureLive();
+        return this;
+    }
+
+    /**
+     * Returns a builder for an object of about the given size. The members are added without
+     * type dispatch into a map sized up front, so it is never rehashed while building.
+     */
+    @Contract("_ -> new")
+    public static @NotNull Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
     }
 
     @CanIgnoreReturnValue
     public CsonElement remove(String key) {
+        this.ensureLive();
         return this.members.remove(key);
     }
 
     public @NotNull Set<Map.Entry<String, CsonElement>> entrySet() {
+        this.ensureLive();
         return this.members.entrySet();
     }
 
     public @NotNull Set<String> keySet() {
+        this.ensureLive();
         return this.members.keySet();
     }
 
     public Map<String, CsonElement> asMap() {
+        this.ensureLive();
         return this.members;
     }
 
     public int size() {
+        this.ensureLive();
         return this.members.size();
     }
 
     public boolean isEmpty() {
+        this.ensureLive();
         return this.members.isEmpty();
     }
 
     public boolean has(String key) {
+        this.ensureLive();
         return this.members.containsKey(key);
     }
 
     public CsonElement get(String key) {
+        this.ensureLive();
         return this.members.get(key);
     }
 
+    /**
+     * Applies an RFC 7396 merge patch to this object in place.
+     *
+     * @return the JSON Pointers of the changed members
+     * @see CsonMerger#mergePatch(CsonObject, CsonElement)
+     */
+    @CanIgnoreReturnValue
+    public @NotNull List<String> mergePatch(@NotNull CsonElement patch) {
+        return CsonMerger.mergePatch(this, patch);
+    }
+
+    /**
+     * Deep-merges the source into this object in place.
+     *
+     * @return the JSON Pointers of the changed members
+     * @see CsonMerger#deepMerge(CsonObject, CsonObject, CsonMergeOptions)
+     */
+    @CanIgnoreReturnValue
+    public @NotNull List<String> deepMerge(@NotNull CsonObject source, @NotNull CsonMergeOptions options) {
+        return CsonMerger.deepMerge(this, source, options);
+    }
+
+    /**
+     * Returns the keys of this object in ascending {@link String#compareTo} order. The sorted
+     * snapshot is kept until a key is added or removed, so repeated calls on an unchanged object
+     * only sort once.
+     */
+    public @NotNull List<String> sortedKeys() {
+        this.ensureLive();
+        return Collections.unmodifiableList(Arrays.asList(this.members.sortedKeys()));
+    }
+
+    /**
+     * Returns the members whose keys lie in {@code [fromKey, toKey)}, in ascending key order, as
+     * found by binary search over the sorted key snapshot. The values are shared, not copied.
+     * For example {@code subMap("user:", "user;")} selects every key starting with {@code user:}.
+     */
+    public @NotNull CsonObject subMap(@NotNull String fromKey, @NotNull String toKey) {
+        this.ensureLive();
+        if (fromKey.compareTo(toKey) > 0) {
+            throw new IllegalArgumentException("fromKey > toKey: " + fromKey + " > " + toKey);
+        }
+        val keys = this.members.sortedKeys();
+        return this.range(keys, lowerBound(keys, fromKey), lowerBound(keys, toKey));
+    }
+
+    /**
+     * Returns the members whose keys start with the given prefix, in ascending key order. The
+     * values are shared, not copied.
+     */
+    public @NotNull CsonObject withKeyPrefix(@NotNull String prefix) {
+        this.ensureLive();
+        val keys = this.members.sortedKeys();
+        val from = lowerBound(keys, prefix);
+        var to = from;
+        while (to < keys.length && keys[to].startsWith(prefix)) {
+            to++;
+        }
+        return this.range(keys, from, to);
+    }
+
+    private CsonObject range(String[] keys, int from, int to) {
+        val result = new CsonObject(to - from);
+        for (int i = from; i < to; i++) {
+            result.members.put(keys[i], this.members.get(keys[i]));
+        }
+        return result;
+    }
+
+    private static int lowerBound(String[] keys, String key) {
+        val index = Arrays.binarySearch(keys, key);
+        return index >= 0 ? index : -index - 1;
+    }
+
     @Override
     public @NotNull Iterator<Map.Entry<String, CsonElement>> iterator() {
+        this.ensureLive();
         return this.members.entrySet().iterator();
     }
 
+    /**
+     * Returns a sized spliterator over the members. Sequential traversal walks the member map
+     * directly; the first split copies the remaining entries into an array, which is then split
+     * in halves.
+     */
+    @Override
+    public @NotNull Spliterator<Map.Entry<String, CsonElement>> spliterator() {
+        this.ensureLive();
+        return new EntrySpliterator(this.members.entrySet());
+    }
+
+    public @NotNull Stream<Map.Entry<String, CsonElement>> stream() {
+        return StreamSupport.stream(this.spliterator(), false);
+    }
+
+    public @NotNull Stream<Map.Entry<String, CsonElement>> parallelStream() {
+        return StreamSupport.stream(this.spliterator(), true);
+    }
+
+    /**
+     * Performs the action for every member on the common fork/join pool, in no particular order.
+     * The object must not be modified until this returns.
+     */
+    public void forEachParallel(@NotNull BiConsumer<? super String, ? super CsonElement> action) {
+        this.parallelStream().forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+    }
+
     @Override
     public CsonElement deepCopy() {
-        val result = new CsonObject();
-        for (val entry : this.members.entrySet()) {
-            result.put(entry.getKey(), entry.getValue().deepCopy());
-        }
-        return result;
+        this.ensureLive();
+        return CsonCursor.transform(this, CsonCursor.COPY);
     }
 
     @Override
@@ -617,11 +760,175 @@ public class CsonObject extends CsonElement implements Iterable<Map.Entry<String
 
     @Override
     public boolean equals(Object o) {
-        return (o == this) || (o instanceof CsonObject csonObject && csonObject.members.equals(this.members));
+        this.ensureLive();
+        return (o == this) || (o instanceof CsonObject csonObject && CsonDeep.equals(this, csonObject));
     }
 
     @Override
     public int hashCode() {
-        return members.hashCode();
+        this.ensureLive();
+        return CsonDeep.hashCode(this);
+    }
+
+    private static final class EntrySpliterator implements Spliterator<Map.Entry<String, CsonElement>> {
+        private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.SIZED | Spliterator.SUBSIZED
+                | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+        private final Collection<Map.Entry<String, CsonElement>> entries;
+        private Iterator<Map.Entry<String, CsonElement>> iterator;
+        private Spliterator<Map.Entry<String, CsonElement>> snapshot;
+        private long remaining;
+
+        private EntrySpliterator(Collection<Map.Entry<String, CsonElement>> entries) {
+            this.entries = entries;
+            this.remaining = entries.size();
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Map.Entry<String, CsonElement>> action) {
+            if (this.snapshot != null) {
+                return this.snapshot.tryAdvance(action);
+            }
+            if (this.iterator == null) {
+                this.iterator = this.entries.iterator();
+            }
+            if (!this.iterator.hasNext()) {
+                return false;
+            }
+            this.remaining--;
+            action.accept(this.iterator.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super Map.Entry<String, CsonElement>> action) {
+            if (this.snapshot != null) {
+                this.snapshot.forEachRemaining(action);
+                return;
+            }
+            if (this.iterator == null) {
+                this.iterator = this.entries.iterator();
+            }
+            this.iterator.forEachRemaining(action);
+            this.remaining = 0;
+        }
+
+        @Override
+        public Spliterator<Map.Entry<String, CsonElement>> trySplit() {
+            if (this.snapshot == null) {
+                if (this.iterator == null) {
+                    this.iterator = this.entries.iterator();
+                }
+                @SuppressWarnings("unchecked")
+                val array = (Map.Entry<String, CsonElement>[]) new Map.Entry<?, ?>[(int) this.remaining];
+                var count = 0;
+                while (count < array.length && this.iterator.hasNext()) {
+                    array[count++] = this.iterator.next();
+                }
+                this.snapshot = Spliterators.spliterator(array, 0, count, CHARACTERISTICS);
+            }
+            return this.snapshot.trySplit();
+        }
+
+        @Override
+        public long estimateSize() {
+            return this.snapshot != null ? this.snapshot.estimateSize() : this.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+
+    public static final class Builder {
+        private CsonObject object;
+
+        private Builder(int expectedSize) {
+            this.object = new CsonObject(expectedSize);
+        }
+
+        @Contract("_, _ -> this")
+        public @NotNull Builder put(@NotNull String key, @Nullable CsonElement value) {
+            return this.append(key, value == null ? CsonNull.INSTANCE : value);
+        }
+
+        @Contract("_, _ -> this")
+        public @NotNull Builder putLong(@NotNull String key, long value) {
+            return this.append(key, CsonPrimitive.of(value));
+        }
+
+        @Contract("_, _ -> this")
+        public @NotNull Builder putDouble(@NotNull String key, double value) {
+            return this.append(key, CsonPrimitive.of(value));
+        }
+
+        @Contract("_, _ -> this")
+        public @NotNull Builder putString(@NotNull String key, @Nullable String value) {
+            return this.append(key, value == null ? CsonNull.INSTANCE : new CsonPrimitive(value));
+        }
+
+        @Contract("_, _ -> this")
+        public @NotNull Builder putBoolean(@NotNull String key, boolean value) {
+            return this.append(key, CsonPrimitive.of(value));
+        }
+
+        @Contract("_ -> this")
+        public @NotNull Builder putNull(@NotNull String key) {
+            return this.append(key, CsonNull.INSTANCE);
+        }
+
+        /**
+         * Returns the built object. The builder cannot be used afterwards.
+         */
+        public @NotNull CsonObject build() {
+            val object = this.target();
+            this.object = null;
+            return object;
+        }
+
+        private Builder append(String key, CsonElement element) {
+            this.target().members.put(key, element);
+            return this;
+        }
+
+        private CsonObject target() {
+            if (this.object == null) {
+                throw new IllegalStateException("Builder has already been built");
+            }
+            return this.object;
+        }
+    }
+
+    int modCount() {
+        return this.members.modCount();
+    }
+
+    /**
+     * Returns the digest last computed for this object, which may be stale; {@link CsonHasher}
+     * validates it.
+     */
+    CsonHasher.Cached cachedDigest() {
+        return this.digest;
+    }
+
+    void cacheDigest(CsonHasher.Cached digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * Called by the owning {@link CsonArena} when it is reset.
+     *
+     * @param poison whether any later access to this object should fail
+     */
+    void release(boolean poison) {
+        this.members.clear();
+        this.released = poison;
+    }
+
+    private void ensureLive() {
+        if (this.released) {
+            throw new IllegalStateException("CsonObject used after its CsonArena was reset");
+        }
     }
 }
@@ -25,13 +25,35 @@ import com.google.gson.internal.NumberLimits;
 import lombok.val;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Objects;
 
 public class CsonPrimitive extends CsonElement {
+    private static final CsonPrimitive TRUE = new CsonPrimitive(Boolean.TRUE);
+    private static final CsonPrimitive FALSE = new CsonPrimitive(Boolean.FALSE);
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final CsonPrimitive[] SMALL_LONGS = new CsonPrimitive[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < SMALL_LONGS.length; i++) {
+            SMALL_LONGS[i] = new CsonPrimitive((long) (i + CACHE_LOW));
+        }
+    }
+
+    /*
+     * A Boolean, Number or String, or a Utf8Slice for a lazily decoded string.
+     */
     private final Object value;
+    /*
+     * The decoded String of a Utf8Slice, or the ParsedNumber of a LazilyParsedNumber, once first
+     * needed. Both are immutable, so racing threads at worst compute the same thing twice.
+     */
+    private Object cache;
 
     public CsonPrimitive(Object object) {
         this.value = Objects.requireNonNull(object);
@@ -53,11 +75,70 @@ public class CsonPrimitive extends CsonElement {
         this.value = Objects.requireNonNull(character).toString();
     }
 
+    private CsonPrimitive(Utf8Slice slice) {
+        this.value = slice;
+    }
+
+    /**
+     * Returns a boolean primitive. Both values are shared instances.
+     */
+    public static @NotNull CsonPrimitive of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * Returns a number primitive holding a {@link Long}. Values from -128 to 1023 are shared
+     * instances.
+     */
+    public static @NotNull CsonPrimitive of(long value) {
+        if (value >= CACHE_LOW && value <= CACHE_HIGH) {
+            return SMALL_LONGS[(int) value - CACHE_LOW];
+        }
+        return new CsonPrimitive(value);
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull CsonPrimitive of(double value) {
+        return new CsonPrimitive(value);
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull CsonPrimitive of(@NotNull String value) {
+        return new CsonPrimitive(value);
+    }
+
+    /**
+     * Creates a string primitive that keeps the given UTF-8 bytes and only decodes them on the
+     * first call to {@link #asString()}. The bytes are not copied, so the range must not be
+     * modified for as long as the primitive is in use.
+     */
+    @Contract("_, _, _ -> new")
+    public static @NotNull CsonPrimitive ofUtf8(byte @NotNull [] bytes, int offset, int length) {
+        return new CsonPrimitive(new Utf8Slice(bytes, offset, length));
+    }
+
+    /**
+     * Returns a read-only view of the raw UTF-8 bytes of a lazily decoded string, or
+     * {@code null} if this primitive is not such a string.
+     * Byte-oriented writers use this to copy the value out without decoding it.
+     */
+    public @Nullable ByteBuffer rawUtf8() {
+        return this.value instanceof Utf8Slice slice ? slice.asReadOnlyBuffer() : null;
+    }
+
     @Override
     public CsonElement deepCopy() {
         return this;
     }
 
+    Object value() {
+        return this.value;
+    }
+
+    Object cache() {
+        return this.cache;
+    }
+
     @Override
     public boolean isBoolean() {
         return this.value instanceof Boolean;
@@ -65,7 +146,7 @@ public class CsonPrimitive extends CsonElement {
 
     @Override
     public boolean isString() {
-        return this.value instanceof String;
+        return this.value instanceof String || this.value instanceof Utf8Slice;
     }
 
     @Override
@@ -82,6 +163,13 @@ public class CsonPrimitive extends CsonElement {
     public String asString() {
         if (this.value instanceof String) {
             return (String) this.value;
+        } else if (this.value instanceof Utf8Slice slice) {
+            if (this.cache instanceof String decoded) {
+                return decoded;
+            }
+            val decoded = slice.decode();
+            this.cache = decoded;
+            return decoded;
         } else if (this.value instanceof Character character) {
             return String.valueOf(character);
         } else if (this.isNumber()) {
@@ -114,8 +202,8 @@ public class CsonPrimitive extends CsonElement {
     public Number asNumber() {
         if (this.value instanceof Number number) {
             return number;
-        } else if (this.value instanceof String string) {
-            return new LazilyParsedNumber(string);
+        } else if (this.isString()) {
+            return new LazilyParsedNumber(this.asString());
         }
         throw new UnsupportedOperationException("Primitive is neither a number nor a string");
     }
@@ -132,6 +220,11 @@ public class CsonPrimitive extends CsonElement {
 
     @Override
     public int asInt() {
+        val parsed = this.parsedNumber();
+        if (parsed != null) {
+            // Narrowing the truncated long keeps the same low-order bits as intValue()
+            return (int) this.truncatedLong(parsed);
+        }
         return this.isNumber() ? this.asNumber().intValue() : Integer.parseInt(this.asString());
     }
 
@@ -142,11 +235,19 @@ public class CsonPrimitive extends CsonElement {
 
     @Override
     public double asDouble() {
+        val parsed = this.parsedNumber();
+        if (parsed != null) {
+            return parsed.doubleValue;
+        }
         return this.isNumber() ? this.asNumber().doubleValue() : Double.parseDouble(this.asString());
     }
 
     @Override
     public long asLong() {
+        val parsed = this.parsedNumber();
+        if (parsed != null) {
+            return this.truncatedLong(parsed);
+        }
         return this.isNumber() ? this.asNumber().longValue() : Long.parseLong(this.asString());
     }
 
@@ -171,7 +272,10 @@ public class CsonPrimitive extends CsonElement {
             return Long.hashCode(value);
         }
         if (this.value instanceof Number) {
-            return Double.hashCode(asNumber().doubleValue());
+            return Double.hashCode(this.asDouble());
+        }
+        if (this.value instanceof Utf8Slice) {
+            return this.asString().hashCode();
         }
         return this.value.hashCode();
     }
@@ -205,9 +309,57 @@ public class CsonPrimitive extends CsonElement {
             return (thisAsDouble == otherAsDouble)
                     || (Double.isNaN(thisAsDouble) && Double.isNaN(otherAsDouble));
         }
+        if (this.value instanceof Utf8Slice thisSlice && other.value instanceof Utf8Slice otherSlice
+                && thisSlice.contentEquals(otherSlice)) {
+            return true;
+        }
+        if (this.isString() && other.isString()) {
+            return this.asString().equals(other.asString());
+        }
         return this.value.equals(other.value);
     }
 
+    /**
+     * Returns true if this primitive is an integral number that fits into a long, without
+     * rounding.
+     */
+    boolean isExactLong() {
+        if (this.value instanceof Long || this.value instanceof Integer || this.value instanceof Short || this.value instanceof Byte) {
+            return true;
+        } else if (this.value instanceof BigInteger bigInteger) {
+            return bigInteger.bitLength() < 64;
+        }
+        val parsed = this.parsedNumber();
+        return parsed != null && parsed.exactLong;
+    }
+
+    /**
+     * Returns the cached conversions of a number read from JSON text, parsing it on first use,
+     * or null if this primitive does not hold such a number.
+     */
+    private @Nullable ParsedNumber parsedNumber() {
+        if (!(this.value instanceof LazilyParsedNumber number)) {
+            return null;
+        } else if (this.cache instanceof ParsedNumber parsed) {
+            return parsed;
+        }
+        val parsed = new ParsedNumber(number);
+        this.cache = parsed;
+        return parsed;
+    }
+
+    /**
+     * Returns the long value of a number read from JSON text, truncating it the way
+     * {@link LazilyParsedNumber#longValue()} does and caching the result.
+     */
+    private long truncatedLong(@NotNull ParsedNumber parsed) {
+        if (!parsed.hasLong) {
+            parsed = parsed.withTruncatedLong();
+            this.cache = parsed;
+        }
+        return parsed.longValue;
+    }
+
     /**
      * Returns true if the specified number is an integral type (Long, Integer, Short, Byte,
      * BigInteger)
@@ -223,4 +375,65 @@ public class CsonPrimitive extends CsonElement {
         }
         return false;
     }
+
+    /**
+     * A {@link LazilyParsedNumber} together with its double and long value, so that repeated
+     * numeric reads only parse the text once. The long value is known from the start for plain
+     * integers and added on first use for other numbers. It is immutable, which makes caching it
+     * without synchronization safe.
+     */
+    static final class ParsedNumber {
+        final LazilyParsedNumber number;
+        final double doubleValue;
+        final long longValue;
+        final boolean exactLong;
+        final boolean hasLong;
+
+        ParsedNumber(@NotNull LazilyParsedNumber number) {
+            this.number = number;
+            val text = number.toString();
+            this.doubleValue = Double.parseDouble(text);
+
+            var longValue = 0L;
+            var exactLong = false;
+            if (isPlainInteger(text)) {
+                try {
+                    longValue = Long.parseLong(text);
+                    exactLong = true;
+                } catch (NumberFormatException ignored) {
+                    // Out of range for a long, truncated on first use
+                }
+            }
+            this.longValue = longValue;
+            this.exactLong = exactLong;
+            this.hasLong = exactLong;
+        }
+
+        private ParsedNumber(@NotNull ParsedNumber parsed, long truncated) {
+            this.number = parsed.number;
+            this.doubleValue = parsed.doubleValue;
+            this.longValue = truncated;
+            this.exactLong = false;
+            this.hasLong = true;
+        }
+
+        @NotNull ParsedNumber withTruncatedLong() {
+            return new ParsedNumber(this, this.number.longValue());
+        }
+
+        private static boolean isPlainInteger(@NotNull String text) {
+            val length = text.length();
+            var i = length > 0 && text.charAt(0) == '-' ? 1 : 0;
+            if (i == length) {
+                return false;
+            }
+            for (; i < length; i++) {
+                val c = text.charAt(i);
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
 }
@@ -0,0 +1,235 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import com.google.gson.internal.LinkedTreeMap;
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+/**
+ * Estimates how much heap a tree of CsonElements occupies.
+ * <p>
+ * Sizes are computed from the field layout of the classes involved, assuming a 64-bit HotSpot
+ * VM with compressed references whenever the maximum heap is below 32 GiB. Node instances,
+ * keys and strings that are reachable more than once are only counted once, and JVM-wide shared
+ * instances ({@link CsonNull#INSTANCE}, the cached {@code Boolean} and small integer boxes)
+ * are not counted at all.
+ */
+final class CsonSizeEstimator {
+    private static final boolean COMPRESSED_OOPS = Runtime.getRuntime().maxMemory() < (32L << 30);
+    private static final int REFERENCE_SIZE = COMPRESSED_OOPS ? 4 : 8;
+    private static final int OBJECT_HEADER_SIZE = COMPRESSED_OOPS ? 12 : 16;
+    private static final int ARRAY_HEADER_SIZE = COMPRESSED_OOPS ? 16 : 24;
+    private static final int ALIGNMENT = 8;
+
+    private static final ClassValue<Long> SHALLOW_SIZES = new ClassValue<>() {
+        @Override
+        protected Long computeValue(@NotNull Class<?> type) {
+            long size = OBJECT_HEADER_SIZE;
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        size += fieldSize(field.getType());
+                    }
+                }
+            }
+            return align(size);
+        }
+    };
+
+    private static final Class<?> TREE_NODE_CLASS = nestedClass(LinkedTreeMap.class, "Node");
+    private static final Class<?> LINKED_HASH_NODE_CLASS = nestedClass(LinkedHashMap.class, "Entry");
+
+    private CsonSizeEstimator() {
+    }
+
+    static long retainedSize(@NotNull CsonElement root) {
+        val seen = newIdentitySet();
+        val stack = new ArrayDeque<CsonElement>();
+        stack.push(root);
+
+        long total = 0;
+        while (!stack.isEmpty()) {
+            val element = stack.pop();
+            total += ownSize(element, seen);
+            if (element instanceof CsonObject object && !object.isEmpty()) {
+                for (val entry : object.entrySet()) {
+                    stack.push(entry.getValue());
+                }
+            } else if (element instanceof CsonArray array) {
+                for (val child : array) {
+                    stack.push(child);
+                }
+            }
+        }
+        return total;
+    }
+
+    static Set<Object> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Returns the size of {@code element} together with the storage it owns privately, like map
+     * nodes, keys and string contents, but without its child elements. Returns 0 if the element
+     * has already been seen.
+     */
+    static long ownSize(CsonElement element, Set<Object> seen) {
+        if (element == CsonNull.INSTANCE || !seen.add(element)) {
+            return 0;
+        }
+
+        if (element instanceof CsonObject object) {
+            long size = shallowSize(CsonObject.class) + mapSize(object.asMap()) + digestSize(object.cachedDigest());
+            for (val key : object.keySet()) {
+                size += stringSize(key, seen);
+            }
+            return size;
+        } else if (element instanceof CsonArray array) {
+            return shallowSize(CsonArray.class) + shallowSize(CsonElementList.class) + arraySize(estimateCapacity(array.size()), REFERENCE_SIZE)
+                    + digestSize(array.cachedDigest());
+        } else if (element instanceof CsonPrimitive primitive) {
+            val cache = primitive.cache();
+            return shallowSize(CsonPrimitive.class) + valueSize(primitive.value(), seen) + (cache == null ? 0 : valueSize(cache, seen));
+        }
+        return shallowSize(element.getClass());
+    }
+
+    private static long digestSize(CsonHasher.Cached digest) {
+        return digest == null ? 0 : shallowSize(CsonHasher.Cached.class) + shallowSize(CsonDigest.class);
+    }
+
+    private static long mapSize(Map<String, CsonElement> map) {
+        if (map instanceof CsonMembers members) {
+            val sortedKeys = members.cachedSortedKeys();
+            return shallowSize(CsonMembers.class) + mapSize(members.delegate())
+                    + (sortedKeys == null ? 0 : arraySize(sortedKeys.length, REFERENCE_SIZE));
+        } else if (map instanceof LinkedTreeMap) {
+            // The map keeps one extra node as the head of its insertion-order list.
+            return shallowSize(LinkedTreeMap.class) + (map.size() + 1L) * shallowSize(TREE_NODE_CLASS);
+        } else if (map instanceof LinkedHashMap) {
+            val buckets = map.isEmpty() ? 0 : tableSizeFor((int) Math.ceil(map.size() / 0.75));
+            return shallowSize(LinkedHashMap.class) + arraySize(buckets, REFERENCE_SIZE) + map.size() * shallowSize(LINKED_HASH_NODE_CLASS);
+        }
+        return shallowSize(map.getClass()) + map.size() * 2L * REFERENCE_SIZE;
+    }
+
+    private static long valueSize(Object value, Set<Object> seen) {
+        if (value instanceof String string) {
+            return stringSize(string, seen);
+        } else if (value instanceof Boolean) {
+            return 0;
+        } else if (!seen.add(value)) {
+            return 0;
+        } else if (value instanceof Utf8Slice slice) {
+            // The whole input buffer stays reachable, however small the slice.
+            val buffer = seen.add(slice.bytes) ? arraySize(slice.bytes.length, 1) : 0;
+            return shallowSize(Utf8Slice.class) + buffer;
+        } else if (value instanceof CsonPrimitive.ParsedNumber parsed) {
+            return shallowSize(CsonPrimitive.ParsedNumber.class) + valueSize(parsed.number, seen);
+        } else if (value instanceof LazilyParsedNumber number) {
+            return shallowSize(LazilyParsedNumber.class) + stringSize(number.toString(), seen);
+        } else if (value instanceof BigInteger bigInteger) {
+            return shallowSize(BigInteger.class) + arraySize(bigInteger.bitLength() / 32 + 1, 4);
+        } else if (value instanceof BigDecimal bigDecimal) {
+            // Values of up to 18 digits are kept in a long, larger ones in a BigInteger.
+            val unscaled = bigDecimal.precision() > 18 ? valueSize(bigDecimal.unscaledValue(), seen) : 0;
+            return shallowSize(BigDecimal.class) + unscaled;
+        } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            val longValue = ((Number) value).longValue();
+            return longValue >= -128 && longValue <= 127 ? 0 : shallowSize(value.getClass());
+        }
+        return shallowSize(value.getClass());
+    }
+
+    static long stringSize(String string, Set<Object> seen) {
+        if (!seen.add(string)) {
+            return 0;
+        }
+        var latin1 = true;
+        for (int i = 0, length = string.length(); i < length && latin1; i++) {
+            latin1 = string.charAt(i) < 256;
+        }
+        return shallowSize(String.class) + arraySize(string.length(), latin1 ? 1 : 2);
+    }
+
+    static long shallowSize(Class<?> type) {
+        return SHALLOW_SIZES.get(type);
+    }
+
+    static long arraySize(long length, int elementSize) {
+        return align(ARRAY_HEADER_SIZE + length * elementSize);
+    }
+
+    /**
+     * Replays the growth policy of an {@link ArrayList} filled one element at a time, which is how
+     * parsed arrays are built.
+     */
+    private static long estimateCapacity(int size) {
+        if (size == 0) {
+            return 0;
+        }
+        long capacity = 10;
+        while (capacity < size) {
+            capacity += capacity >> 1;
+        }
+        return capacity;
+    }
+
+    private static int tableSizeFor(int capacity) {
+        val n = -1 >>> Integer.numberOfLeadingZeros(Math.max(capacity, 1) - 1);
+        return Math.max(n + 1, 16);
+    }
+
+    private static long fieldSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE_SIZE;
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    private static Class<?> nestedClass(Class<?> outer, String simpleName) {
+        for (Class<?> nested : outer.getDeclaredClasses()) {
+            if (nested.getSimpleName().equals(simpleName)) {
+                return nested;
+            }
+        }
+        throw new IllegalStateException("Missing " + outer.getName() + "$" + simpleName);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Aggregated memory and shape statistics of a tree of CsonElements.
+ * <p>
+ * Each node's estimated size is attributed to the first place it is reached from, the same way
+ * {@link CsonElement#estimateRetainedSize()} counts shared instances once.
+ */
+public final class CsonStats {
+    private static final int DEFAULT_TOP_KEYS = 10;
+
+    private final long retainedSize;
+    private final int objectCount;
+    private final int arrayCount;
+    private final int stringCount;
+    private final int numberCount;
+    private final int booleanCount;
+    private final int nullCount;
+    private final int[] nodesByDepth;
+    private final List<KeyWeight> heaviestKeys;
+
+    private CsonStats(long retainedSize, int @NotNull [] counts, int[] nodesByDepth, List<KeyWeight> heaviestKeys) {
+        this.retainedSize = retainedSize;
+        this.objectCount = counts[0];
+        this.arrayCount = counts[1];
+        this.stringCount = counts[2];
+        this.numberCount = counts[3];
+        this.booleanCount = counts[4];
+        this.nullCount = counts[5];
+        this.nodesByDepth = nodesByDepth;
+        this.heaviestKeys = heaviestKeys;
+    }
+
+    public static @NotNull CsonStats of(@NotNull CsonElement root) {
+        return of(root, DEFAULT_TOP_KEYS);
+    }
+
+    /**
+     * Walks {@code root} once and collects its statistics.
+     *
+     * @param topKeys how many of the heaviest object keys to report
+     */
+    public static @NotNull CsonStats of(@NotNull CsonElement root, int topKeys) {
+        val seen = CsonSizeEstimator.newIdentitySet();
+        val counts = new int[6];
+        var nodesByDepth = new int[16];
+        val weights = new HashMap<String, long[]>();
+
+        val stack = new ArrayDeque<Frame>();
+        val rootFrame = new Frame(root, null, null, 0);
+        stack.push(rootFrame);
+        while (!stack.isEmpty()) {
+            val frame = stack.peek();
+            if (!frame.expanded) {
+                frame.expanded = true;
+                val element = frame.element;
+                frame.size = CsonSizeEstimator.ownSize(element, seen);
+
+                if (frame.depth >= nodesByDepth.length) {
+                    nodesByDepth = Arrays.copyOf(nodesByDepth, nodesByDepth.length * 2);
+                }
+                nodesByDepth[frame.depth]++;
+                counts[kind(element)]++;
+
+                if (element instanceof CsonObject object) {
+                    for (val entry : object.entrySet()) {
+                        stack.push(new Frame(entry.getValue(), entry.getKey(), frame, frame.depth + 1));
+                    }
+                } else if (element instanceof CsonArray array) {
+                    for (val child : array) {
+                        stack.push(new Frame(child, null, frame, frame.depth + 1));
+                    }
+                }
+                continue;
+            }
+
+            stack.pop();
+            if (frame.parent != null) {
+                frame.parent.size += frame.size;
+            }
+            if (frame.key != null) {
+                val weight = weights.computeIfAbsent(frame.key, key -> new long[2]);
+                weight[0]++;
+                weight[1] += frame.size;
+            }
+        }
+
+        var maxDepth = nodesByDepth.length - 1;
+        while (maxDepth > 0 && nodesByDepth[maxDepth] == 0) {
+            maxDepth--;
+        }
+
+        val heaviest = new ArrayList<KeyWeight>(weights.size());
+        for (val entry : weights.entrySet()) {
+            heaviest.add(new KeyWeight(entry.getKey(), entry.getValue()[0], entry.getValue()[1]));
+        }
+        heaviest.sort(Comparator.comparingLong(KeyWeight::retainedSize).reversed());
+
+        return new CsonStats(
+                rootFrame.size,
+                counts,
+                Arrays.copyOf(nodesByDepth, maxDepth + 1),
+                List.copyOf(heaviest.subList(0, Math.min(Math.max(topKeys, 0), heaviest.size())))
+        );
+    }
+
+    private static int kind(CsonElement element) {
+        if (element instanceof CsonObject) {
+            return 0;
+        } else if (element instanceof CsonArray) {
+            return 1;
+        } else if (element.isString()) {
+            return 2;
+        } else if (element.isNumber()) {
+            return 3;
+        } else if (element.isBoolean()) {
+            return 4;
+        }
+        return 5;
+    }
+
+    public long retainedSize() {
+        return this.retainedSize;
+    }
+
+    public int objectCount() {
+        return this.objectCount;
+    }
+
+    public int arrayCount() {
+        return this.arrayCount;
+    }
+
+    public int stringCount() {
+        return this.stringCount;
+    }
+
+    public int numberCount() {
+        return this.numberCount;
+    }
+
+    public int booleanCount() {
+        return this.booleanCount;
+    }
+
+    public int nullCount() {
+        return this.nullCount;
+    }
+
+    public int nodeCount() {
+        return this.objectCount + this.arrayCount + this.stringCount + this.numberCount + this.booleanCount + this.nullCount;
+    }
+
+    public int maxDepth() {
+        return this.nodesByDepth.length - 1;
+    }
+
+    /**
+     * Returns the number of nodes at each depth, the root being at depth 0.
+     */
+    public int[] nodesByDepth() {
+        return this.nodesByDepth.clone();
+    }
+
+    /**
+     * Returns the object keys whose values retain the most memory, heaviest first. A key's weight
+     * is summed over every object it appears in, so nested occurrences of the same key are
+     * counted once per level.
+     */
+    public List<KeyWeight> heaviestKeys() {
+        return this.heaviestKeys;
+    }
+
+    @Override
+    public String toString() {
+        return "CsonStats{retainedSize=" + this.retainedSize
+                + ", objects=" + this.objectCount
+                + ", arrays=" + this.arrayCount
+                + ", strings=" + this.stringCount
+                + ", numbers=" + this.numberCount
+                + ", booleans=" + this.booleanCount
+                + ", nulls=" + this.nullCount
+                + ", maxDepth=" + this.maxDepth()
+                + ", heaviestKeys=" + this.heaviestKeys
+                + '}';
+    }
+
+    /**
+     * The memory retained by all values stored under one object key.
+     *
+     * @param key          the object key
+     * @param occurrences  how many objects contain the key
+     * @param retainedSize the estimated bytes retained by the values, including nested content
+     */
+    public record KeyWeight(String key, long occurrences, long retainedSize) {
+    }
+
+    private static final class Frame {
+        private final CsonElement element;
+        private final String key;
+        private final Frame parent;
+        private final int depth;
+        private long size;
+        private boolean expanded;
+
+        private Frame(CsonElement element, String key, Frame parent, int depth) {
+            this.element = element;
+            this.key = key;
+            this.parent = parent;
+            this.depth = depth;
+        }
+    }
+}
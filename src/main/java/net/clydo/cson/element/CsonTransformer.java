@@ -0,0 +1,52 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Callbacks for {@link CsonElement#transform(CsonTransformer)}, which builds a new tree from an
+ * existing one, bottom-up and without recursion. The source tree is not modified.
+ * <p>
+ * In {@link #enter}, the cursor can replace an element, in which case the replacement is taken
+ * over as it is, or skip its children, in which case the original subtree is shared with the
+ * result. Stopping takes everything not visited yet over unchanged. Containers that are
+ * descended into are rebuilt from their transformed children and passed to {@link #exit}, which
+ * decides what ends up in the result.
+ */
+public interface CsonTransformer {
+    default void enter(@NotNull CsonElement element, @NotNull CsonCursor cursor) {
+    }
+
+    /**
+     * Returns the element to put into the result in place of the original, or null to leave the
+     * member or array element out.
+     *
+     * @param original the element from the source tree
+     * @param rebuilt  for containers, a new container holding the transformed children;
+     *                 otherwise the original itself
+     */
+    default @Nullable CsonElement exit(@NotNull CsonElement original, @NotNull CsonElement rebuilt, @NotNull CsonCursor cursor) {
+        return rebuilt;
+    }
+}
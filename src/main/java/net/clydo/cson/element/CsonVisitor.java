@@ -0,0 +1,41 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Callbacks for {@link CsonElement#accept(CsonVisitor)}, which walks a tree depth-first with an
+ * explicit stack, so documents of any depth can be visited.
+ * <p>
+ * {@link #enter} is called before an element's children and {@link #exit} after them; for
+ * primitives and nulls one directly follows the other. Through the cursor, {@code enter} can skip
+ * the children of the element, and both callbacks can stop the walk or replace the element in
+ * its parent.
+ */
+public interface CsonVisitor {
+    default void enter(@NotNull CsonElement element, @NotNull CsonCursor cursor) {
+    }
+
+    default void exit(@NotNull CsonElement element, @NotNull CsonCursor cursor) {
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.element;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A not yet decoded UTF-8 string, referencing a range of a caller-owned buffer.
+ */
+final class Utf8Slice {
+    final byte[] bytes;
+    final int offset;
+    final int length;
+
+    Utf8Slice(byte @NotNull [] bytes, int offset, int length) {
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", buffer " + bytes.length);
+        }
+        this.bytes = bytes;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    String decode() {
+        return new String(this.bytes, this.offset, this.length, StandardCharsets.UTF_8);
+    }
+
+    ByteBuffer asReadOnlyBuffer() {
+        return ByteBuffer.wrap(this.bytes, this.offset, this.length).slice().asReadOnlyBuffer();
+    }
+
+    boolean contentEquals(@NotNull Utf8Slice other) {
+        return Arrays.equals(
+                this.bytes, this.offset, this.offset + this.length,
+                other.bytes, other.offset, other.offset + other.length
+        );
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.msgpack;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts trees to and from MessagePack. Encoding goes through a writer kept per thread, so
+ * its buffer is reused across calls instead of being grown anew for every value.
+ *
+ * @see CsonMsgPackWriter
+ * @see CsonMsgPackReader
+ */
+@UtilityClass
+public final class CsonMsgPack {
+    private static final ThreadLocal<CsonMsgPackWriter> WRITERS = ThreadLocal.withInitial(CsonMsgPackWriter::new);
+
+    public static byte @NotNull [] encode(@NotNull CsonElement element) {
+        val writer = WRITERS.get();
+        try {
+            writer.write(element);
+            return writer.toByteArray();
+        } finally {
+            writer.reset();
+        }
+    }
+
+    public static void write(@NotNull CsonElement element, @NotNull OutputStream out) throws JsonIOException {
+        val writer = WRITERS.get();
+        try {
+            writer.write(element);
+            writer.writeTo(out);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        } finally {
+            writer.reset();
+        }
+    }
+
+    public static @NotNull CsonElement decode(byte @NotNull [] bytes) throws JsonSyntaxException {
+        return decode(bytes, 0, bytes.length, false);
+    }
+
+    /**
+     * Decodes the range of {@code bytes}, which must hold exactly one value.
+     *
+     * @param lazyStrings whether string values should keep referencing {@code bytes} and only be
+     *                    decoded when read; the buffer must then not be modified while the tree
+     *                    is in use
+     */
+    public static @NotNull CsonElement decode(byte @NotNull [] bytes, int offset, int length, boolean lazyStrings) throws JsonSyntaxException {
+        val buffer = ByteBuffer.wrap(bytes, offset, length);
+        val element = decode(buffer, lazyStrings);
+        if (buffer.hasRemaining()) {
+            throw new JsonSyntaxException("Did not consume the entire document.");
+        }
+        return element;
+    }
+
+    /**
+     * Decodes the next value in {@code buffer}, advancing its position past it.
+     *
+     * @see CsonMsgPackReader#CsonMsgPackReader(ByteBuffer, boolean)
+     */
+    public static @NotNull CsonElement decode(@NotNull ByteBuffer buffer, boolean lazyStrings) throws JsonSyntaxException {
+        return new CsonMsgPackReader(buffer, lazyStrings).read();
+    }
+}
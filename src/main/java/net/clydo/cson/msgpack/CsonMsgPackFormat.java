@@ -0,0 +1,76 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.msgpack;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * The format bytes of MessagePack. Values start with one of these, or with a byte whose high
+ * bits mark it as one of the fix formats holding a small integer, or the size of a short string
+ * or container, in the remaining bits. Multi-byte payloads are big-endian.
+ */
+final class CsonMsgPackFormat {
+    static final int POSITIVE_FIXINT_MAX = 0x7F;
+    static final int FIXMAP = 0x80;
+    static final int FIXARRAY = 0x90;
+    static final int FIXSTR = 0xA0;
+    static final int NEGATIVE_FIXINT = 0xE0;
+
+    static final int NIL = 0xC0;
+    static final int NEVER_USED = 0xC1;
+    static final int FALSE = 0xC2;
+    static final int TRUE = 0xC3;
+    static final int BIN8 = 0xC4;
+    static final int BIN16 = 0xC5;
+    static final int BIN32 = 0xC6;
+    static final int EXT8 = 0xC7;
+    static final int EXT16 = 0xC8;
+    static final int EXT32 = 0xC9;
+    static final int FLOAT32 = 0xCA;
+    static final int FLOAT64 = 0xCB;
+    static final int UINT8 = 0xCC;
+    static final int UINT16 = 0xCD;
+    static final int UINT32 = 0xCE;
+    static final int UINT64 = 0xCF;
+    static final int INT8 = 0xD0;
+    static final int INT16 = 0xD1;
+    static final int INT32 = 0xD2;
+    static final int INT64 = 0xD3;
+    static final int FIXEXT1 = 0xD4;
+    static final int FIXEXT16 = 0xD8;
+    static final int STR8 = 0xD9;
+    static final int STR16 = 0xDA;
+    static final int STR32 = 0xDB;
+    static final int ARRAY16 = 0xDC;
+    static final int ARRAY32 = 0xDD;
+    static final int MAP16 = 0xDE;
+    static final int MAP32 = 0xDF;
+
+    static final VarHandle SHORTS = MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private CsonMsgPackFormat() {
+    }
+}
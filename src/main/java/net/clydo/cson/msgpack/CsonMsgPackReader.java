@@ -0,0 +1,344 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.msgpack;
+
+import com.google.gson.JsonSyntaxException;
+import lombok.val;
+import net.clydo.cson.element.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Base64;
+
+import static net.clydo.cson.msgpack.CsonMsgPackFormat.*;
+
+/**
+ * Reads MessagePack values as trees, one per {@link #read()}, from a {@link ByteBuffer} in place.
+ * The buffer is left positioned right after the last value read.
+ * <p>
+ * With lazy strings, strings in a buffer backed by an accessible array keep referencing it and
+ * are only decoded when read (see {@link CsonPrimitive#ofUtf8(byte[], int, int)}); the buffer
+ * must then not be modified while the tree is in use. Strings in other buffers are always
+ * decoded right away.
+ * <p>
+ * Integers are read as longs, and unsigned 64-bit integers past {@link Long#MAX_VALUE} as
+ * {@link BigInteger}s. Binary values become base64url strings without padding and integer map
+ * keys become their decimal text. Extension types have no counterpart in the JSON data model and
+ * are rejected. Malformed input is reported as a {@link JsonSyntaxException}.
+ */
+public final class CsonMsgPackReader {
+    private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+    private final ByteBuffer source;
+    /*
+     * A big-endian view of the source, read with absolute gets
+     */
+    private final ByteBuffer buffer;
+    private final byte[] array;
+    private final int arrayOffset;
+    private final boolean lazyStrings;
+    private int pos;
+    private final int limit;
+    private byte[] scratch;
+
+    public CsonMsgPackReader(@NotNull ByteBuffer source) {
+        this(source, false);
+    }
+
+    /**
+     * @param lazyStrings whether string values should keep referencing the array backing
+     *                    {@code source} and only be decoded when read
+     */
+    public CsonMsgPackReader(@NotNull ByteBuffer source, boolean lazyStrings) {
+        this.source = source;
+        this.buffer = source.duplicate().order(ByteOrder.BIG_ENDIAN);
+        this.array = source.hasArray() ? source.array() : null;
+        this.arrayOffset = source.hasArray() ? source.arrayOffset() : 0;
+        this.lazyStrings = lazyStrings;
+        this.pos = source.position();
+        this.limit = source.limit();
+    }
+
+    /**
+     * Returns whether another value follows.
+     */
+    public boolean hasNext() {
+        return this.pos < this.limit;
+    }
+
+    /**
+     * Reads the next value as a tree.
+     *
+     * @throws JsonSyntaxException if there is no next value or it is malformed
+     */
+    public @NotNull CsonElement read() {
+        try {
+            val stack = new ArrayDeque<Frame>();
+            val root = this.readShallow(stack);
+            while (!stack.isEmpty()) {
+                val frame = stack.peek();
+                if (frame.remaining == 0) {
+                    stack.pop();
+                    continue;
+                }
+                frame.remaining--;
+                if (frame.container instanceof CsonObject object) {
+                    val key = this.readKey();
+                    object.put(key, this.readShallow(stack));
+                } else {
+                    ((CsonArray) frame.container).add(this.readShallow(stack));
+                }
+            }
+            return root;
+        } finally {
+            this.source.position(this.pos);
+        }
+    }
+
+    /**
+     * Reads a value, or the header of a container, pushing a frame to fill it if it is not
+     * empty.
+     */
+    private CsonElement readShallow(ArrayDeque<Frame> stack) {
+        val format = this.readByte();
+        if (format <= POSITIVE_FIXINT_MAX) {
+            return CsonPrimitive.of(format);
+        } else if (format >= NEGATIVE_FIXINT) {
+            return CsonPrimitive.of((byte) format);
+        } else if (format < FIXARRAY) {
+            return this.beginObject(format & 0x0F, stack);
+        } else if (format < FIXSTR) {
+            return this.beginArray(format & 0x0F, stack);
+        } else if (format < NIL) {
+            return this.readString(format & 0x1F);
+        }
+
+        return switch (format) {
+            case NIL -> CsonNull.INSTANCE;
+            case FALSE -> CsonPrimitive.of(false);
+            case TRUE -> CsonPrimitive.of(true);
+            case BIN8, BIN16, BIN32 -> {
+                val length = this.readLength(format - BIN8);
+                val bytes = new byte[length];
+                this.buffer.get(this.pos, bytes, 0, length);
+                this.pos += length;
+                yield CsonPrimitive.of(BASE64URL.encodeToString(bytes));
+            }
+            case FLOAT32 -> {
+                this.require(4);
+                val value = this.buffer.getFloat(this.pos);
+                this.pos += 4;
+                yield CsonPrimitive.of(value);
+            }
+            case FLOAT64 -> {
+                this.require(8);
+                val value = this.buffer.getDouble(this.pos);
+                this.pos += 8;
+                yield CsonPrimitive.of(value);
+            }
+            case UINT8, UINT16, UINT32, UINT64, INT8, INT16, INT32, INT64 -> this.readInteger(format);
+            case STR8, STR16, STR32 -> this.readString(this.readLength(format - STR8));
+            case ARRAY16, ARRAY32 -> this.beginArray(this.readLength(format - ARRAY16 + 1), stack);
+            case MAP16, MAP32 -> this.beginObject(this.readLength(format - MAP16 + 1), stack);
+            default -> {
+                this.pos--;
+                if (format == NEVER_USED) {
+                    throw this.syntaxError("Unexpected format byte 0xc1");
+                }
+                // EXT8 to EXT32 and FIXEXT1 to FIXEXT16
+                throw this.syntaxError("Unsupported extension type");
+            }
+        };
+    }
+
+    private CsonArray beginArray(int size, ArrayDeque<Frame> stack) {
+        val array = new CsonArray(this.presize(size));
+        if (size > 0) {
+            stack.push(new Frame(array, size));
+        }
+        return array;
+    }
+
+    private CsonObject beginObject(int size, ArrayDeque<Frame> stack) {
+        val object = new CsonObject(this.presize(size));
+        if (size > 0) {
+            stack.push(new Frame(object, size));
+        }
+        return object;
+    }
+
+    /**
+     * Limits the capacity containers are created with by what the input can hold, so that a
+     * corrupt size does not allocate more than the input is worth.
+     */
+    private int presize(int size) {
+        return Math.min(size, this.limit - this.pos);
+    }
+
+    private String readKey() {
+        val format = this.readByte();
+        if (format >= FIXSTR && format < NIL) {
+            return this.decode(format & 0x1F);
+        } else if (format >= STR8 && format <= STR32) {
+            return this.decode(this.readLength(format - STR8));
+        } else if (format <= POSITIVE_FIXINT_MAX) {
+            return Integer.toString(format);
+        } else if (format >= NEGATIVE_FIXINT) {
+            return Integer.toString((byte) format);
+        } else if (format >= UINT8 && format <= INT64) {
+            return this.readInteger(format).asString();
+        }
+        this.pos--;
+        throw this.syntaxError("Unsupported map key format 0x" + Integer.toHexString(format));
+    }
+
+    //region Values
+    private CsonPrimitive readInteger(int format) {
+        switch (format) {
+            case UINT8 -> {
+                return CsonPrimitive.of(this.readByte());
+            }
+            case UINT16 -> {
+                this.require(2);
+                val value = this.buffer.getShort(this.pos) & 0xFFFF;
+                this.pos += 2;
+                return CsonPrimitive.of(value);
+            }
+            case UINT32 -> {
+                this.require(4);
+                val value = this.buffer.getInt(this.pos) & 0xFFFFFFFFL;
+                this.pos += 4;
+                return CsonPrimitive.of(value);
+            }
+            case UINT64 -> {
+                this.require(8);
+                val value = this.buffer.getLong(this.pos);
+                this.pos += 8;
+                return value >= 0 ? CsonPrimitive.of(value) : new CsonPrimitive(new BigInteger(Long.toUnsignedString(value)));
+            }
+            case INT8 -> {
+                return CsonPrimitive.of((byte) this.readByte());
+            }
+            case INT16 -> {
+                this.require(2);
+                val value = this.buffer.getShort(this.pos);
+                this.pos += 2;
+                return CsonPrimitive.of(value);
+            }
+            case INT32 -> {
+                this.require(4);
+                val value = this.buffer.getInt(this.pos);
+                this.pos += 4;
+                return CsonPrimitive.of(value);
+            }
+            default -> {
+                this.require(8);
+                val value = this.buffer.getLong(this.pos);
+                this.pos += 8;
+                return CsonPrimitive.of(value);
+            }
+        }
+    }
+
+    private CsonPrimitive readString(int length) {
+        if (this.lazyStrings && this.array != null) {
+            this.require(length);
+            val string = CsonPrimitive.ofUtf8(this.array, this.arrayOffset + this.pos, length);
+            this.pos += length;
+            return string;
+        }
+        return CsonPrimitive.of(this.decode(length));
+    }
+
+    private String decode(int length) {
+        this.require(length);
+        String string;
+        if (this.array != null) {
+            string = new String(this.array, this.arrayOffset + this.pos, length, StandardCharsets.UTF_8);
+        } else {
+            if (this.scratch == null || this.scratch.length < length) {
+                this.scratch = new byte[Math.max(length, 256)];
+            }
+            this.buffer.get(this.pos, this.scratch, 0, length);
+            string = new String(this.scratch, 0, length, StandardCharsets.UTF_8);
+        }
+        this.pos += length;
+        return string;
+    }
+    //endregion
+
+    //region Input
+    /**
+     * Reads a length of 1 &lt;&lt; {@code width} bytes, checking that the input can hold that
+     * many more bytes or, for containers, values.
+     */
+    private int readLength(int width) {
+        long length;
+        switch (width) {
+            case 0 -> length = this.readByte();
+            case 1 -> {
+                this.require(2);
+                length = this.buffer.getShort(this.pos) & 0xFFFF;
+                this.pos += 2;
+            }
+            default -> {
+                this.require(4);
+                length = this.buffer.getInt(this.pos) & 0xFFFFFFFFL;
+                this.pos += 4;
+            }
+        }
+        if (length > this.limit - this.pos) {
+            throw this.syntaxError("Length " + length + " exceeds the input");
+        }
+        return (int) length;
+    }
+
+    private int readByte() {
+        this.require(1);
+        return this.buffer.get(this.pos++) & 0xFF;
+    }
+
+    private void require(int length) {
+        if (this.limit - this.pos < length) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+    }
+
+    private JsonSyntaxException syntaxError(String message) {
+        return new JsonSyntaxException(message + " at offset " + this.pos);
+    }
+    //endregion
+
+    private static final class Frame {
+        private final CsonElement container;
+        private int remaining;
+
+        private Frame(CsonElement container, int remaining) {
+            this.container = container;
+            this.remaining = remaining;
+        }
+    }
+}
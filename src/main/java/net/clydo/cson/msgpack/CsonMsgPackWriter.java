@@ -0,0 +1,379 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.msgpack;
+
+import lombok.val;
+import net.clydo.cson.element.*;
+import net.clydo.cson.util.CsonUtf8;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import static net.clydo.cson.msgpack.CsonMsgPackFormat.*;
+
+/**
+ * Writes trees as MessagePack into a growable buffer, which {@link #reset()} empties for the
+ * next use so that one writer can serve many values without reallocating. Several writes before
+ * a reset are appended to each other.
+ * <p>
+ * Integers take the narrowest format that holds them. MessagePack has no arbitrary-precision
+ * numbers: integers must fit 64 bits, signed or unsigned, and other numbers are written as
+ * doubles, or as floats for {@link Float}s. Numbers that do not fit are rejected rather than
+ * rounded, so what is written always reads back equal; the caller can store such numbers as
+ * strings when it needs them.
+ * <p>
+ * Writers are not thread-safe.
+ */
+public final class CsonMsgPackWriter {
+    private static final int DEFAULT_CAPACITY = 1024;
+    /*
+     * Buffers grown past this are dropped on reset rather than kept, so one huge value does not
+     * pin its buffer for the lifetime of the writer.
+     */
+    private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+    private static final BigInteger UNSIGNED_LONG_LIMIT = BigInteger.ONE.shiftLeft(64);
+
+    private final int initialCapacity;
+    private byte[] buffer;
+    private int count;
+
+    public CsonMsgPackWriter() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CsonMsgPackWriter(int initialCapacity) {
+        if (initialCapacity < 0) {
+            throw new IllegalArgumentException("initialCapacity must not be negative");
+        }
+        this.initialCapacity = initialCapacity;
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Appends {@code element} to the buffer.
+     *
+     * @throws IllegalArgumentException if it holds an integer that does not fit 64 bits, or
+     *                                  another number that a double cannot hold exactly
+     */
+    public void write(@NotNull CsonElement element) {
+        val stack = new ArrayDeque<Iterator<?>>();
+        this.writeShallow(element, stack);
+        while (!stack.isEmpty()) {
+            val iterator = stack.peek();
+            if (!iterator.hasNext()) {
+                stack.pop();
+                continue;
+            }
+            var next = iterator.next();
+            if (next instanceof Map.Entry<?, ?> member) {
+                this.writeString((String) member.getKey());
+                next = member.getValue();
+            }
+            this.writeShallow((CsonElement) next, stack);
+        }
+    }
+
+    //region Output
+    public int size() {
+        return this.count;
+    }
+
+    public byte @NotNull [] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.count);
+    }
+
+    /**
+     * Returns a read-only view of what has been written, without copying it. The view is only
+     * valid until the next write or reset.
+     */
+    public @NotNull ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(this.buffer, 0, this.count).slice().asReadOnlyBuffer();
+    }
+
+    public void writeTo(@NotNull OutputStream out) throws IOException {
+        out.write(this.buffer, 0, this.count);
+    }
+
+    /**
+     * Empties the buffer, keeping it for the next values unless it has grown unusually large.
+     */
+    public void reset() {
+        this.count = 0;
+        if (this.buffer.length > MAX_RETAINED_CAPACITY) {
+            this.buffer = new byte[this.initialCapacity];
+        }
+    }
+    //endregion
+
+    /**
+     * Writes a value, or the header of a container, pushing the iterator over its children if
+     * it has any.
+     */
+    private void writeShallow(CsonElement element, ArrayDeque<Iterator<?>> stack) {
+        if (element == null || element.isNull()) {
+            this.writeByte(NIL);
+        } else if (element instanceof CsonPrimitive primitive) {
+            if (primitive.isBoolean()) {
+                this.writeByte(primitive.asBoolean() ? TRUE : FALSE);
+            } else if (primitive.isNumber()) {
+                this.writeNumber(primitive.asNumber());
+            } else {
+                val raw = primitive.rawUtf8();
+                if (raw != null) {
+                    this.writeString(raw);
+                } else {
+                    this.writeString(primitive.asString());
+                }
+            }
+        } else if (element instanceof CsonArray array) {
+            this.writeHeader(FIXARRAY, ARRAY16, ARRAY32, array.size());
+            if (!array.isEmpty()) {
+                stack.push(array.iterator());
+            }
+        } else if (element instanceof CsonObject object) {
+            this.writeHeader(FIXMAP, MAP16, MAP32, object.size());
+            if (!object.isEmpty()) {
+                stack.push(object.iterator());
+            }
+        } else {
+            throw new IllegalArgumentException("Couldn't write " + element.getClass());
+        }
+    }
+
+    //region Numbers
+    private void writeNumber(Number number) {
+        if (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte) {
+            this.writeInteger(number.longValue());
+        } else if (number instanceof Double) {
+            this.writeDouble(number.doubleValue());
+        } else if (number instanceof Float) {
+            this.ensureCapacity(5);
+            this.buffer[this.count++] = (byte) FLOAT32;
+            INTS.set(this.buffer, this.count, Float.floatToRawIntBits(number.floatValue()));
+            this.count += 4;
+        } else if (number instanceof BigInteger bigInteger) {
+            this.writeInteger(bigInteger);
+        } else {
+            this.writeNumberText(number.toString());
+        }
+    }
+
+    /**
+     * Writes a number known by its text, like one read from JSON, as an integer if it is one and
+     * as a double otherwise. Numbers that would not read back as the same value are rejected
+     * instead of being rounded.
+     */
+    private void writeNumberText(String text) {
+        val length = text.length();
+        val negative = length > 0 && text.charAt(0) == '-';
+        val digits = length - (negative ? 1 : 0);
+        var integer = digits > 0;
+        long value = 0;
+        for (int i = length - digits; integer && i < length; i++) {
+            val c = text.charAt(i);
+            integer = c >= '0' && c <= '9';
+            value = value * 10 + (c - '0');
+        }
+
+        try {
+            if (integer && negative && value == 0 && digits <= 18) {
+                // Only a double keeps the sign of -0
+                this.writeDouble(-0.0);
+            } else if (!integer) {
+                val parsed = Double.parseDouble(text);
+                if (!isExactDouble(text, parsed)) {
+                    throw new IllegalArgumentException("Number " + text + " is not exactly representable as a MessagePack double");
+                }
+                this.writeDouble(parsed);
+            } else if (digits <= 18) {
+                // Up to 18 digits always fit a long
+                this.writeInteger(negative ? -value : value);
+            } else {
+                this.writeInteger(new BigInteger(text));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Couldn't write number " + text, e);
+        }
+    }
+
+    /**
+     * Tells whether {@code value}, parsed from {@code text}, reads back as the same number. Up to
+     * 15 significant digits always do unless the value overflowed or lost precision as a
+     * subnormal; longer ones are compared exactly.
+     */
+    private static boolean isExactDouble(String text, double value) {
+        if (!Double.isFinite(value)) {
+            return text.endsWith("Infinity") || text.equals("NaN");
+        }
+        var significant = 0;
+        for (int i = 0, length = text.length(); i < length; i++) {
+            val c = text.charAt(i);
+            if (c == 'e' || c == 'E') {
+                break;
+            }
+            if (c >= '0' && c <= '9' && (significant > 0 || c != '0')) {
+                significant++;
+            }
+        }
+        if (significant <= 15 && (value == 0 ? significant == 0 : Math.abs(value) >= Double.MIN_NORMAL)) {
+            return true;
+        }
+        return new BigDecimal(text).compareTo(new BigDecimal(Double.toString(value))) == 0;
+    }
+
+    private void writeInteger(long value) {
+        this.ensureCapacity(9);
+        if (value >= 0) {
+            if (value <= POSITIVE_FIXINT_MAX) {
+                this.buffer[this.count++] = (byte) value;
+            } else if (value <= 0xFF) {
+                this.buffer[this.count++] = (byte) UINT8;
+                this.buffer[this.count++] = (byte) value;
+            } else if (value <= 0xFFFF) {
+                this.buffer[this.count++] = (byte) UINT16;
+                SHORTS.set(this.buffer, this.count, (short) value);
+                this.count += 2;
+            } else if (value <= 0xFFFFFFFFL) {
+                this.buffer[this.count++] = (byte) UINT32;
+                INTS.set(this.buffer, this.count, (int) value);
+                this.count += 4;
+            } else {
+                this.buffer[this.count++] = (byte) UINT64;
+                LONGS.set(this.buffer, this.count, value);
+                this.count += 8;
+            }
+        } else if (value >= -32) {
+            this.buffer[this.count++] = (byte) value;
+        } else if (value >= Byte.MIN_VALUE) {
+            this.buffer[this.count++] = (byte) INT8;
+            this.buffer[this.count++] = (byte) value;
+        } else if (value >= Short.MIN_VALUE) {
+            this.buffer[this.count++] = (byte) INT16;
+            SHORTS.set(this.buffer, this.count, (short) value);
+            this.count += 2;
+        } else if (value >= Integer.MIN_VALUE) {
+            this.buffer[this.count++] = (byte) INT32;
+            INTS.set(this.buffer, this.count, (int) value);
+            this.count += 4;
+        } else {
+            this.buffer[this.count++] = (byte) INT64;
+            LONGS.set(this.buffer, this.count, value);
+            this.count += 8;
+        }
+    }
+
+    private void writeInteger(BigInteger value) {
+        if (value.bitLength() < 64) {
+            this.writeInteger(value.longValue());
+        } else if (value.signum() > 0 && value.compareTo(UNSIGNED_LONG_LIMIT) < 0) {
+            this.ensureCapacity(9);
+            this.buffer[this.count++] = (byte) UINT64;
+            LONGS.set(this.buffer, this.count, value.longValue());
+            this.count += 8;
+        } else {
+            throw new IllegalArgumentException("Integer " + value + " does not fit MessagePack's 64 bits");
+        }
+    }
+
+    private void writeDouble(double value) {
+        this.ensureCapacity(9);
+        this.buffer[this.count++] = (byte) FLOAT64;
+        LONGS.set(this.buffer, this.count, Double.doubleToRawLongBits(value));
+        this.count += 8;
+    }
+    //endregion
+
+    //region Strings
+    private void writeString(String string) {
+        val utf8Length = CsonUtf8.length(string);
+        this.writeStringHeader(utf8Length);
+        this.ensureCapacity(utf8Length);
+        this.count = CsonUtf8.encode(string, this.buffer, this.count);
+    }
+
+    private void writeString(ByteBuffer raw) {
+        val length = raw.remaining();
+        this.writeStringHeader(length);
+        this.ensureCapacity(length);
+        raw.get(raw.position(), this.buffer, this.count, length);
+        this.count += length;
+    }
+
+    private void writeStringHeader(int length) {
+        this.ensureCapacity(5);
+        if (length < 32) {
+            this.buffer[this.count++] = (byte) (FIXSTR | length);
+        } else if (length <= 0xFF) {
+            this.buffer[this.count++] = (byte) STR8;
+            this.buffer[this.count++] = (byte) length;
+        } else {
+            this.writeSized(STR16, STR32, length);
+        }
+    }
+    //endregion
+
+    //region Buffer
+    private void writeHeader(int fix, int format16, int format32, int size) {
+        this.ensureCapacity(5);
+        if (size < 16) {
+            this.buffer[this.count++] = (byte) (fix | size);
+        } else {
+            this.writeSized(format16, format32, size);
+        }
+    }
+
+    private void writeSized(int format16, int format32, int size) {
+        if (size <= 0xFFFF) {
+            this.buffer[this.count++] = (byte) format16;
+            SHORTS.set(this.buffer, this.count, (short) size);
+            this.count += 2;
+        } else {
+            this.buffer[this.count++] = (byte) format32;
+            INTS.set(this.buffer, this.count, size);
+            this.count += 4;
+        }
+    }
+
+    private void writeByte(int b) {
+        this.ensureCapacity(1);
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    private void ensureCapacity(int length) {
+        if (length > this.buffer.length - this.count) {
+            val required = (long) this.count + length;
+            if (required > Integer.MAX_VALUE - 8) {
+                throw new OutOfMemoryError("MessagePack output too large");
+            }
+            this.buffer = Arrays.copyOf(this.buffer, (int) Math.max(required, Math.min(Integer.MAX_VALUE - 8L, this.buffer.length * 2L)));
+        }
+    }
+    //endregion
+}
@@ -0,0 +1,289 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.patch;
+
+import lombok.val;
+import net.clydo.cson.element.CsonArray;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Computes an RFC 6902 {@link CsonPatch} that turns one document into another.
+ * <p>
+ * Subtrees that are the same instance, or whose structural hashes and contents agree, are skipped
+ * without descending into them. The hashes are computed once per container and call. Arrays keep
+ * their common prefix and suffix and align the rest with a longest common subsequence, matching
+ * elements by equality or, if configured, by an identity key member.
+ */
+public final class CsonDiff {
+    private static final byte MATCH = 0;
+    private static final byte DELETE = 1;
+    private static final byte INSERT = 2;
+
+    private final CsonDiffOptions options;
+    private final IdentityHashMap<CsonElement, Integer> hashes = new IdentityHashMap<>();
+    private final List<CsonPatch.Operation> operations = new ArrayList<>();
+
+    private CsonDiff(CsonDiffOptions options) {
+        this.options = options;
+    }
+
+    public static @NotNull CsonPatch diff(@NotNull CsonElement source, @NotNull CsonElement target) {
+        return diff(source, target, CsonDiffOptions.defaults());
+    }
+
+    public static @NotNull CsonPatch diff(@NotNull CsonElement source, @NotNull CsonElement target, @NotNull CsonDiffOptions options) {
+        val diff = new CsonDiff(options);
+        if (!diff.same(source, target)) {
+            diff.diff(source, target, "");
+        }
+        return new CsonPatch(diff.operations);
+    }
+
+    /**
+     * Emits the operations turning source into target, which are known to differ.
+     */
+    private void diff(CsonElement source, CsonElement target, String path) {
+        if (source.isObject() && target.isObject()) {
+            this.diffObjects(source.asObject(), target.asObject(), path);
+        } else if (source.isArray() && target.isArray()) {
+            this.diffArrays(source.asArray(), target.asArray(), path);
+        } else {
+            this.operations.add(new CsonPatch.Replace(path, target));
+        }
+    }
+
+    private void diffObjects(CsonObject source, CsonObject target, String path) {
+        for (val entry : source) {
+            val key = entry.getKey();
+            val value = entry.getValue();
+            val other = target.get(key);
+            if (other == null) {
+                this.operations.add(new CsonPatch.Remove(CsonPointer.append(path, key)));
+            } else if (!this.same(value, other)) {
+                this.diff(value, other, CsonPointer.append(path, key));
+            }
+        }
+        for (val entry : target) {
+            if (!source.has(entry.getKey())) {
+                this.operations.add(new CsonPatch.Add(CsonPointer.append(path, entry.getKey()), entry.getValue()));
+            }
+        }
+    }
+
+    private void diffArrays(CsonArray source, CsonArray target, String path) {
+        val sourceSize = source.size();
+        val targetSize = target.size();
+
+        var prefix = 0;
+        while (prefix < sourceSize && prefix < targetSize && this.matches(source.get(prefix), target.get(prefix))) {
+            prefix++;
+        }
+        var suffix = 0;
+        while (suffix < sourceSize - prefix && suffix < targetSize - prefix
+                && this.matches(source.get(sourceSize - 1 - suffix), target.get(targetSize - 1 - suffix))) {
+            suffix++;
+        }
+
+        for (int i = 0; i < prefix; i++) {
+            this.diffMatched(source.get(i), target.get(i), path, i);
+        }
+
+        val script = this.editScript(source, target, prefix, sourceSize - suffix, targetSize - suffix);
+        var index = prefix;
+        var sourceIndex = prefix;
+        var targetIndex = prefix;
+        var step = 0;
+        while (step < script.length) {
+            if (script[step] == MATCH) {
+                this.diffMatched(source.get(sourceIndex++), target.get(targetIndex++), path, index++);
+                step++;
+                continue;
+            }
+
+            // A run of deletions and insertions: pair them up so that edited elements become
+            // nested edits, then remove or add whatever is left over.
+            var deletes = 0;
+            var inserts = 0;
+            while (step < script.length && script[step] != MATCH) {
+                if (script[step++] == DELETE) {
+                    deletes++;
+                } else {
+                    inserts++;
+                }
+            }
+            val pairs = Math.min(deletes, inserts);
+            for (int p = 0; p < pairs; p++) {
+                this.diffPaired(source.get(sourceIndex++), target.get(targetIndex++), CsonPointer.append(path, index++));
+            }
+            for (int d = pairs; d < deletes; d++) {
+                sourceIndex++;
+                this.operations.add(new CsonPatch.Remove(CsonPointer.append(path, index)));
+            }
+            for (int a = pairs; a < inserts; a++) {
+                this.operations.add(new CsonPatch.Add(CsonPointer.append(path, index++), target.get(targetIndex++)));
+            }
+        }
+
+        for (int i = 0; i < suffix; i++) {
+            this.diffMatched(source.get(sourceIndex++), target.get(targetIndex++), path, index++);
+        }
+    }
+
+    /**
+     * Aligns source[from, sourceEnd) with target[from, targetEnd), returning a sequence of
+     * {@link #MATCH}, {@link #DELETE} and {@link #INSERT} steps. Sections above the configured
+     * size are aligned by position.
+     */
+    private byte[] editScript(CsonArray source, CsonArray target, int from, int sourceEnd, int targetEnd) {
+        val n = sourceEnd - from;
+        val m = targetEnd - from;
+        val script = new byte[n + m];
+        var length = 0;
+
+        if ((long) (n + 1) * (m + 1) > this.options.maxLcsCells()) {
+            for (int i = 0; i < n; i++) {
+                script[length++] = DELETE;
+            }
+            for (int j = 0; j < m; j++) {
+                script[length++] = INSERT;
+            }
+            return script;
+        }
+
+        // lcs[i * (m + 1) + j] is the length of the longest common subsequence of the suffixes
+        // starting at source[from + i] and target[from + j].
+        val width = m + 1;
+        val lcs = new int[(n + 1) * width];
+        for (int i = n - 1; i >= 0; i--) {
+            val sourceElement = source.get(from + i);
+            for (int j = m - 1; j >= 0; j--) {
+                lcs[i * width + j] = this.matches(sourceElement, target.get(from + j))
+                        ? lcs[(i + 1) * width + j + 1] + 1
+                        : Math.max(lcs[(i + 1) * width + j], lcs[i * width + j + 1]);
+            }
+        }
+
+        var i = 0;
+        var j = 0;
+        while (i < n && j < m) {
+            if (lcs[i * width + j] == lcs[(i + 1) * width + j + 1] + 1
+                    && this.matches(source.get(from + i), target.get(from + j))) {
+                script[length++] = MATCH;
+                i++;
+                j++;
+            } else if (lcs[(i + 1) * width + j] >= lcs[i * width + j + 1]) {
+                script[length++] = DELETE;
+                i++;
+            } else {
+                script[length++] = INSERT;
+                j++;
+            }
+        }
+        while (i++ < n) {
+            script[length++] = DELETE;
+        }
+        while (j++ < m) {
+            script[length++] = INSERT;
+        }
+
+        // Matches consume one step for two elements, so the script may be shorter than n + m
+        val trimmed = new byte[length];
+        System.arraycopy(script, 0, trimmed, 0, length);
+        return trimmed;
+    }
+
+    private void diffMatched(CsonElement source, CsonElement target, String path, int index) {
+        if (!this.same(source, target)) {
+            this.diff(source, target, CsonPointer.append(path, index));
+        }
+    }
+
+    /**
+     * Turns an unmatched source element into the target element at the same position. Elements
+     * with different identity keys are distinct entities and get replaced outright.
+     */
+    private void diffPaired(CsonElement source, CsonElement target, String path) {
+        val sourceId = this.identity(source);
+        val targetId = this.identity(target);
+        if (sourceId != null && targetId != null && !sourceId.equals(targetId)) {
+            this.operations.add(new CsonPatch.Replace(path, target));
+        } else if (!this.same(source, target)) {
+            this.diff(source, target, path);
+        }
+    }
+
+    private boolean matches(CsonElement source, CsonElement target) {
+        val sourceId = this.identity(source);
+        val targetId = this.identity(target);
+        if (sourceId != null && targetId != null) {
+            return this.same(sourceId, targetId);
+        }
+        return sourceId == null && targetId == null && this.same(source, target);
+    }
+
+    private CsonElement identity(CsonElement element) {
+        val key = this.options.arrayIdentityKey();
+        if (key == null || !element.isObject()) {
+            return null;
+        }
+        val id = element.asObject().get(key);
+        return id == null || id.isNull() ? null : id;
+    }
+
+    private boolean same(CsonElement a, CsonElement b) {
+        return a == b || (this.hash(a) == this.hash(b) && a.equals(b));
+    }
+
+    /**
+     * A structural hash consistent with {@link CsonElement#equals}, memoized per container.
+     */
+    private int hash(CsonElement element) {
+        if (element instanceof CsonObject || element instanceof CsonArray) {
+            val cached = this.hashes.get(element);
+            if (cached != null) {
+                return cached;
+            }
+
+            var hash = 1;
+            if (element instanceof CsonObject object) {
+                hash = 0;
+                for (val entry : object) {
+                    hash += entry.getKey().hashCode() ^ this.hash(entry.getValue());
+                }
+            } else {
+                for (val child : element.asArray()) {
+                    hash = 31 * hash + this.hash(child);
+                }
+            }
+            this.hashes.put(element, hash);
+            return hash;
+        }
+        return element == CsonNull.INSTANCE ? 0 : element.hashCode();
+    }
+}
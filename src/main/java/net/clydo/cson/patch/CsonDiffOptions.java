@@ -0,0 +1,61 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.patch;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Options for {@link CsonDiff}.
+ *
+ * @param arrayIdentityKey the object member identifying array elements across both documents, so
+ *                         that an edited element is diffed in place instead of being replaced, or
+ *                         null to match elements by equality
+ * @param maxLcsCells      the largest array middle section, measured as the product of both
+ *                         lengths, that is aligned with a longest common subsequence; larger ones
+ *                         are compared position by position
+ */
+public record CsonDiffOptions(@Nullable String arrayIdentityKey, long maxLcsCells) {
+    private static final CsonDiffOptions DEFAULTS = new CsonDiffOptions(null, 1L << 22);
+
+    public CsonDiffOptions {
+        if (maxLcsCells < 0) {
+            throw new IllegalArgumentException("maxLcsCells must not be negative: " + maxLcsCells);
+        }
+    }
+
+    @Contract(pure = true)
+    public static @NotNull CsonDiffOptions defaults() {
+        return DEFAULTS;
+    }
+
+    @Contract("_ -> new")
+    public @NotNull CsonDiffOptions withArrayIdentityKey(@Nullable String arrayIdentityKey) {
+        return new CsonDiffOptions(arrayIdentityKey, this.maxLcsCells);
+    }
+
+    @Contract("_ -> new")
+    public @NotNull CsonDiffOptions withMaxLcsCells(long maxLcsCells) {
+        return new CsonDiffOptions(this.arrayIdentityKey, maxLcsCells);
+    }
+}
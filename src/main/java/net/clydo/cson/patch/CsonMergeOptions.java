@@ -0,0 +1,81 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.patch;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Options for {@link CsonMerger#deepMerge}.
+ *
+ * @param arrayStrategy how an array in the source is combined with an array in the target
+ * @param mergeKey      the member identifying array elements for {@link ArrayStrategy#MERGE_BY_KEY}
+ * @param nullRemoves   whether a null in the source removes the member from the target instead of
+ *                      setting it to null
+ */
+public record CsonMergeOptions(@NotNull ArrayStrategy arrayStrategy, @Nullable String mergeKey, boolean nullRemoves) {
+    public CsonMergeOptions {
+        Objects.requireNonNull(arrayStrategy, "arrayStrategy");
+        if (arrayStrategy == ArrayStrategy.MERGE_BY_KEY && mergeKey == null) {
+            throw new IllegalArgumentException("MERGE_BY_KEY requires a merge key");
+        }
+    }
+
+    @Contract(" -> new")
+    public static @NotNull CsonMergeOptions replaceArrays() {
+        return new CsonMergeOptions(ArrayStrategy.REPLACE, null, false);
+    }
+
+    @Contract(" -> new")
+    public static @NotNull CsonMergeOptions concatArrays() {
+        return new CsonMergeOptions(ArrayStrategy.CONCAT, null, false);
+    }
+
+    @Contract("_ -> new")
+    public static @NotNull CsonMergeOptions mergeArraysByKey(@NotNull String mergeKey) {
+        return new CsonMergeOptions(ArrayStrategy.MERGE_BY_KEY, Objects.requireNonNull(mergeKey, "mergeKey"), false);
+    }
+
+    @Contract("_ -> new")
+    public @NotNull CsonMergeOptions withNullRemoves(boolean nullRemoves) {
+        return new CsonMergeOptions(this.arrayStrategy, this.mergeKey, nullRemoves);
+    }
+
+    public enum ArrayStrategy {
+        /**
+         * The source array replaces the target array.
+         */
+        REPLACE,
+        /**
+         * The source elements are appended to the target array.
+         */
+        CONCAT,
+        /**
+         * Source objects are deep-merged into the target object with an equal {@code mergeKey}
+         * member; all other source elements are appended.
+         */
+        MERGE_BY_KEY
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.patch;
+
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import net.clydo.cson.element.CsonArray;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonObject;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Applies merge patches and deep merges to a {@link CsonObject} in place.
+ * <p>
+ * Both operations return the JSON Pointers of the members they changed. A reported path covers
+ * everything below it, so a replaced subtree is reported once rather than per leaf. Values taken
+ * from the patch or source are inserted by reference, not copied, and should not be modified
+ * afterwards unless the shared structure is intended.
+ */
+@UtilityClass
+public class CsonMerger {
+    /**
+     * Applies an RFC 7396 merge patch to the target: null members remove, objects merge
+     * recursively and everything else replaces.
+     *
+     * @throws IllegalArgumentException if the patch is not an object, since replacing the target
+     *                                  itself cannot be done in place
+     */
+    public @NotNull List<String> mergePatch(@NotNull CsonObject target, @NotNull CsonElement patch) {
+        if (!patch.isObject()) {
+            throw new IllegalArgumentException("Only an object merge patch can be applied to an object in place");
+        }
+        val changed = new ArrayList<String>();
+        mergePatch(target, patch.asObject(), "", changed);
+        return changed;
+    }
+
+    /**
+     * Merges the source into the target: objects merge recursively, arrays are combined as
+     * configured and everything else replaces.
+     */
+    public @NotNull List<String> deepMerge(@NotNull CsonObject target, @NotNull CsonObject source, @NotNull CsonMergeOptions options) {
+        val changed = new ArrayList<String>();
+        mergeObject(target, source, "", options, changed);
+        return changed;
+    }
+
+    private void mergePatch(CsonObject target, CsonObject patch, String path, List<String> changed) {
+        for (val entry : patch) {
+            val key = entry.getKey();
+            val value = entry.getValue();
+            val current = target.get(key);
+
+            if (value.isNull()) {
+                if (current != null) {
+                    target.remove(key);
+                    changed.add(CsonPointer.append(path, key));
+                }
+            } else if (value.isObject() && current != null && current.isObject()) {
+                mergePatch(current.asObject(), value.asObject(), CsonPointer.append(path, key), changed);
+            } else {
+                val replacement = withoutNullMembers(value);
+                if (!replacement.equals(current)) {
+                    target.put(key, replacement);
+                    changed.add(CsonPointer.append(path, key));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the patch value as it is merged into a missing or non-object member, which is the
+     * value without its null object members. The value itself is returned if it has none.
+     */
+    private CsonElement withoutNullMembers(CsonElement value) {
+        if (!value.isObject() || !hasNullMembers(value.asObject())) {
+            return value;
+        }
+
+        val result = new CsonObject();
+        for (val entry : value.asObject()) {
+            if (!entry.getValue().isNull()) {
+                result.put(entry.getKey(), withoutNullMembers(entry.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private boolean hasNullMembers(CsonObject object) {
+        for (val entry : object) {
+            val value = entry.getValue();
+            if (value.isNull() || (value.isObject() && hasNullMembers(value.asObject()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void mergeObject(CsonObject target, CsonObject source, String path, CsonMergeOptions options, List<String> changed) {
+        for (val entry : source) {
+            val key = entry.getKey();
+            val value = entry.getValue();
+            val current = target.get(key);
+
+            if (value.isNull() && options.nullRemoves()) {
+                if (current != null) {
+                    target.remove(key);
+                    changed.add(CsonPointer.append(path, key));
+                }
+            } else if (current != null && current.isObject() && value.isObject()) {
+                mergeObject(current.asObject(), value.asObject(), CsonPointer.append(path, key), options, changed);
+            } else if (current != null && current.isArray() && value.isArray()
+                    && options.arrayStrategy() != CsonMergeOptions.ArrayStrategy.REPLACE) {
+                mergeArray(current.asArray(), value.asArray(), CsonPointer.append(path, key), options, changed);
+            } else if (!value.equals(current)) {
+                target.put(key, value);
+                changed.add(CsonPointer.append(path, key));
+            }
+        }
+    }
+
+    private void mergeArray(CsonArray target, CsonArray source, String path, CsonMergeOptions options, List<String> changed) {
+        // Reading the size up front keeps merging an array into itself finite
+        val count = source.size();
+        if (options.arrayStrategy() == CsonMergeOptions.ArrayStrategy.CONCAT) {
+            for (int i = 0; i < count; i++) {
+                changed.add(CsonPointer.append(path, target.size()));
+                target.add(source.get(i));
+            }
+            return;
+        }
+
+        val mergeKey = options.mergeKey();
+        val positions = new HashMap<CsonElement, Integer>();
+        for (int i = 0; i < target.size(); i++) {
+            val id = identity(target.get(i), mergeKey);
+            if (id != null) {
+                positions.putIfAbsent(id, i);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            val element = source.get(i);
+            val id = identity(element, mergeKey);
+            val position = id == null ? null : positions.get(id);
+            if (position != null) {
+                mergeObject(target.get(position).asObject(), element.asObject(), CsonPointer.append(path, position), options, changed);
+            } else {
+                val index = target.size();
+                target.add(element);
+                if (id != null) {
+                    positions.put(id, index);
+                }
+                changed.add(CsonPointer.append(path, index));
+            }
+        }
+    }
+
+    private CsonElement identity(CsonElement element, String mergeKey) {
+        if (!element.isObject()) {
+            return null;
+        }
+        val id = element.asObject().get(mergeKey);
+        return id == null || id.isNull() ? null : id;
+    }
+}
@@ -0,0 +1,374 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.patch;
+
+import com.google.gson.JsonSyntaxException;
+import lombok.val;
+import net.clydo.cson.element.CsonArray;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonObject;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An RFC 6902 JSON Patch: a sequence of operations addressed by JSON Pointers.
+ * <p>
+ * Values held by operations are shared with the document they were taken from, in both
+ * directions: {@link CsonDiff} references the subtrees of the target document and
+ * {@link #apply(CsonElement)} inserts the operation values as they are.
+ */
+public final class CsonPatch implements Iterable<CsonPatch.Operation> {
+    private final List<Operation> operations;
+
+    public CsonPatch(@NotNull List<Operation> operations) {
+        this.operations = List.copyOf(operations);
+    }
+
+    public @NotNull List<Operation> operations() {
+        return this.operations;
+    }
+
+    public int size() {
+        return this.operations.size();
+    }
+
+    public boolean isEmpty() {
+        return this.operations.isEmpty();
+    }
+
+    @Override
+    public @NotNull Iterator<Operation> iterator() {
+        return this.operations.iterator();
+    }
+
+    @Contract(" -> new")
+    public @NotNull CsonArray toCsonArray() {
+        val array = new CsonArray(this.operations.size());
+        for (val operation : this.operations) {
+            array.add(operation.toCson());
+        }
+        return array;
+    }
+
+    /**
+     * Reads a patch from its JSON form, an array of operation objects.
+     *
+     * @throws JsonSyntaxException if an operation is malformed
+     */
+    public static @NotNull CsonPatch fromCson(@NotNull CsonElement patch) {
+        if (!patch.isArray()) {
+            throw new JsonSyntaxException("JSON patch must be an array");
+        }
+
+        val operations = new ArrayList<Operation>(patch.asArray().size());
+        for (val element : patch.asArray()) {
+            if (!element.isObject()) {
+                throw new JsonSyntaxException("JSON patch operation must be an object: " + element);
+            }
+            val object = element.asObject();
+            val op = object.asString("op");
+            val path = object.asString("path");
+            operations.add(switch (op) {
+                case "add" -> new Add(path, value(object));
+                case "remove" -> new Remove(path);
+                case "replace" -> new Replace(path, value(object));
+                case "move" -> new Move(object.asString("from"), path);
+                case "copy" -> new Copy(object.asString("from"), path);
+                case "test" -> new Test(path, value(object));
+                default -> throw new JsonSyntaxException("Unknown JSON patch operation: " + op);
+            });
+        }
+        return new CsonPatch(operations);
+    }
+
+    private static CsonElement value(CsonObject operation) {
+        val value = operation.get("value");
+        if (value == null) {
+            throw new JsonSyntaxException("JSON patch operation is missing its value: " + operation);
+        }
+        return value;
+    }
+
+    /**
+     * Applies the operations in order, modifying the target in place. The target is returned
+     * unless an operation replaced the whole document, in which case the new root is returned.
+     * <p>
+     * Operations are not rolled back: if one fails, the earlier ones stay applied. Apply the patch
+     * to a {@link CsonElement#deepCopy()} when the update has to be atomic.
+     *
+     * @throws IllegalStateException if a path does not exist or a test fails
+     */
+    public @NotNull CsonElement apply(@NotNull CsonElement target) {
+        var root = target;
+        for (val operation : this.operations) {
+            root = operation.applyTo(root);
+        }
+        return root;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof CsonPatch patch && patch.operations.equals(this.operations));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.operations.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.toCsonArray().toString();
+    }
+
+    //region Operations
+    public sealed interface Operation permits Add, Remove, Replace, Move, Copy, Test {
+        @NotNull String op();
+
+        @NotNull String path();
+
+        @NotNull CsonObject toCson();
+
+        /**
+         * Applies this operation and returns the resulting root.
+         */
+        @NotNull CsonElement applyTo(@NotNull CsonElement root);
+    }
+
+    public record Add(@NotNull String path, @NotNull CsonElement value) implements Operation {
+        @Override
+        public @NotNull String op() {
+            return "add";
+        }
+
+        @Override
+        public @NotNull CsonObject toCson() {
+            return new CsonObject().put("op", "add").put("path", this.path).put("value", this.value);
+        }
+
+        @Override
+        public @NotNull CsonElement applyTo(@NotNull CsonElement root) {
+            return add(root, this.path, this.value);
+        }
+    }
+
+    public record Remove(@NotNull String path) implements Operation {
+        @Override
+        public @NotNull String op() {
+            return "remove";
+        }
+
+        @Override
+        public @NotNull CsonObject toCson() {
+            return new CsonObject().put("op", "remove").put("path", this.path);
+        }
+
+        @Override
+        public @NotNull CsonElement applyTo(@NotNull CsonElement root) {
+            remove(root, this.path);
+            return root;
+        }
+    }
+
+    public record Replace(@NotNull String path, @NotNull CsonElement value) implements Operation {
+        @Override
+        public @NotNull String op() {
+            return "replace";
+        }
+
+        @Override
+        public @NotNull CsonObject toCson() {
+            return new CsonObject().put("op", "replace").put("path", this.path).put("value", this.value);
+        }
+
+        @Override
+        public @NotNull CsonElement applyTo(@NotNull CsonElement root) {
+            if (this.path.isEmpty()) {
+                return this.value;
+            }
+            remove(root, this.path);
+            return add(root, this.path, this.value);
+        }
+    }
+
+    public record Move(@NotNull String from, @NotNull String path) implements Operation {
+        @Override
+        public @NotNull String op() {
+            return "move";
+        }
+
+        @Override
+        public @NotNull CsonObject toCson() {
+            return new CsonObject().put("op", "move").put("from", this.from).put("path", this.path);
+        }
+
+        @Override
+        public @NotNull CsonElement applyTo(@NotNull CsonElement root) {
+            if (this.path.startsWith(this.from + '/')) {
+                throw new IllegalStateException("Cannot move " + this.from + " into its own child " + this.path);
+            }
+            if (this.from.equals(this.path)) {
+                return root;
+            }
+            return add(root, this.path, remove(root, this.from));
+        }
+    }
+
+    public record Copy(@NotNull String from, @NotNull String path) implements Operation {
+        @Override
+        public @NotNull String op() {
+            return "copy";
+        }
+
+        @Override
+        public @NotNull CsonObject toCson() {
+            return new CsonObject().put("op", "copy").put("from", this.from).put("path", this.path);
+        }
+
+        @Override
+        public @NotNull CsonElement applyTo(@NotNull CsonElement root) {
+            return add(root, this.path, resolve(root, this.from).deepCopy());
+        }
+    }
+
+    public record Test(@NotNull String path, @NotNull CsonElement value) implements Operation {
+        @Override
+        public @NotNull String op() {
+            return "test";
+        }
+
+        @Override
+        public @NotNull CsonObject toCson() {
+            return new CsonObject().put("op", "test").put("path", this.path).put("value", this.value);
+        }
+
+        @Override
+        public @NotNull CsonElement applyTo(@NotNull CsonElement root) {
+            if (!resolve(root, this.path).equals(this.value)) {
+                throw new IllegalStateException("Test failed at " + this.path + ": expected " + this.value);
+            }
+            return root;
+        }
+    }
+    //endregion
+
+    //region Pointer evaluation
+    private static CsonElement resolve(CsonElement root, String path) {
+        var current = root;
+        for (val token : CsonPointer.parse(path)) {
+            current = child(current, token, path);
+        }
+        return current;
+    }
+
+    private static CsonElement child(CsonElement parent, String token, String path) {
+        CsonElement child = null;
+        if (parent.isObject()) {
+            child = parent.asObject().get(token);
+        } else if (parent.isArray()) {
+            val array = parent.asArray();
+            val index = index(token, array.size() - 1, path);
+            child = array.get(index);
+        }
+        if (child == null) {
+            throw new IllegalStateException("No value at " + path);
+        }
+        return child;
+    }
+
+    private static CsonElement add(CsonElement root, String path, CsonElement value) {
+        Objects.requireNonNull(value, "value");
+        if (path.isEmpty()) {
+            return value;
+        }
+
+        val tokens = CsonPointer.parse(path);
+        val parent = parent(root, tokens, path);
+        val token = tokens.get(tokens.size() - 1);
+        if (parent.isObject()) {
+            parent.asObject().put(token, value);
+        } else if (parent.isArray()) {
+            val array = parent.asArray();
+            if (token.equals("-")) {
+                array.add(value);
+            } else {
+                array.add(index(token, array.size(), path), value);
+            }
+        } else {
+            throw new IllegalStateException("Parent of " + path + " is not a container");
+        }
+        return root;
+    }
+
+    private static CsonElement remove(CsonElement root, String path) {
+        if (path.isEmpty()) {
+            throw new IllegalStateException("Cannot remove the document root");
+        }
+
+        val tokens = CsonPointer.parse(path);
+        val parent = parent(root, tokens, path);
+        val token = tokens.get(tokens.size() - 1);
+        CsonElement removed = null;
+        if (parent.isObject()) {
+            removed = parent.asObject().remove(token);
+        } else if (parent.isArray()) {
+            val array = parent.asArray();
+            removed = array.remove(index(token, array.size() - 1, path));
+        }
+        if (removed == null) {
+            throw new IllegalStateException("No value at " + path);
+        }
+        return removed;
+    }
+
+    private static CsonElement parent(CsonElement root, List<String> tokens, String path) {
+        var current = root;
+        for (int i = 0, last = tokens.size() - 1; i < last; i++) {
+            current = child(current, tokens.get(i), path);
+        }
+        return current;
+    }
+
+    private static int index(String token, int maxIndex, String path) {
+        val length = token.length();
+        if (length == 0 || length > 10 || (length > 1 && token.charAt(0) == '0')) {
+            throw new IllegalStateException("Invalid array index '" + token + "' in " + path);
+        }
+        for (int i = 0; i < length; i++) {
+            val c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalStateException("Invalid array index '" + token + "' in " + path);
+            }
+        }
+        val index = Long.parseLong(token);
+        if (index > maxIndex) {
+            throw new IllegalStateException("Array index " + index + " out of bounds in " + path);
+        }
+        return (int) index;
+    }
+    //endregion
+}
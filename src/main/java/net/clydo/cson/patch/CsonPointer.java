@@ -0,0 +1,84 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.patch;
+
+import lombok.experimental.UtilityClass;
+import lombok.val;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers for RFC 6901 JSON Pointers such as {@code /users/0/name}. The empty string points to the
+ * document root.
+ */
+@UtilityClass
+public class CsonPointer {
+    public @NotNull String escape(@NotNull String token) {
+        if (token.indexOf('~') < 0 && token.indexOf('/') < 0) {
+            return token;
+        }
+        return token.replace("~", "~0").replace("/", "~1");
+    }
+
+    public @NotNull String unescape(@NotNull String token) {
+        if (token.indexOf('~') < 0) {
+            return token;
+        }
+        return token.replace("~1", "/").replace("~0", "~");
+    }
+
+    public @NotNull String append(@NotNull String pointer, @NotNull String key) {
+        return pointer + '/' + escape(key);
+    }
+
+    public @NotNull String append(@NotNull String pointer, int index) {
+        return pointer + '/' + index;
+    }
+
+    /**
+     * Splits a pointer into its unescaped reference tokens.
+     *
+     * @throws IllegalArgumentException if the pointer is neither empty nor starts with {@code /}
+     */
+    public @NotNull List<String> parse(@NotNull String pointer) {
+        val tokens = new ArrayList<String>();
+        if (pointer.isEmpty()) {
+            return tokens;
+        }
+        if (pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("JSON pointer must start with '/': " + pointer);
+        }
+
+        var start = 1;
+        while (true) {
+            val end = pointer.indexOf('/', start);
+            if (end < 0) {
+                tokens.add(unescape(pointer.substring(start)));
+                return tokens;
+            }
+            tokens.add(unescape(pointer.substring(start, end)));
+            start = end + 1;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.path;
+
+import com.google.gson.stream.JsonReader;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A compiled JSONPath expression such as {@code $.store.book[?(@.price < 10)].title}.
+ * <p>
+ * Supported are member names ({@code .name}, {@code ['name']}), indices counting from the end if
+ * negative ({@code [-1]}), wildcards ({@code *}), recursive descent ({@code ..}), slices
+ * ({@code [start:end:step]}), unions ({@code ['a','b']}, {@code [0,2]}) and filters
+ * ({@code [?(@.a >= 1 && !@.b)]}) with comparisons, {@code &&}, {@code ||}, {@code !},
+ * string, number, boolean and null literals, and {@code @} or {@code $} paths.
+ * <p>
+ * Compiled paths are immutable and can be shared between threads. {@link #compile(String)}
+ * caches them, so compiling the same expression again is a map lookup.
+ */
+public final class CsonPath {
+    private static final int CACHE_LIMIT = 1024;
+    private static final ConcurrentHashMap<String, CsonPath> CACHE = new ConcurrentHashMap<>();
+
+    private final String expression;
+    private final CsonPathStep[] steps;
+
+    CsonPath(String expression, CsonPathStep[] steps) {
+        this.expression = expression;
+        this.steps = steps;
+    }
+
+    /**
+     * Compiles the expression, or returns the cached compiled form.
+     *
+     * @throws IllegalArgumentException if the expression is not valid
+     */
+    public static @NotNull CsonPath compile(@NotNull String expression) {
+        val cached = CACHE.get(expression);
+        if (cached != null) {
+            return cached;
+        }
+
+        val path = new CsonPath(expression, CsonPathParser.parse(expression));
+        if (CACHE.size() >= CACHE_LIMIT) {
+            // Rarely hit with a fixed set of queries; keeps generated expressions from leaking
+            CACHE.clear();
+        }
+        val previous = CACHE.putIfAbsent(expression, path);
+        return previous != null ? previous : path;
+    }
+
+    /**
+     * Returns every element selected from the root, in document order per step.
+     */
+    public @NotNull List<CsonElement> select(@NotNull CsonElement root) {
+        val results = new ArrayList<CsonElement>();
+        this.evaluate(root, 0, new Sink(root) {
+            @Override
+            boolean accept(CsonElement element) {
+                results.add(element);
+                return true;
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Returns the first selected element, or null. Evaluation stops at the first match.
+     */
+    public @Nullable CsonElement selectFirst(@NotNull CsonElement root) {
+        val first = new FirstSink(root);
+        this.evaluate(root, 0, first);
+        return first.result;
+    }
+
+    /**
+     * Passes every selected element to the action without collecting them.
+     */
+    public void forEach(@NotNull CsonElement root, @NotNull Consumer<? super CsonElement> action) {
+        this.evaluate(root, 0, new Sink(root) {
+            @Override
+            boolean accept(CsonElement element) {
+                action.accept(element);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Evaluates the path while the document is read from the reader, without building it. Only
+     * selected values, the candidates of filters and arrays indexed from their end are
+     * materialized; everything else is skipped. Elements are produced lazily as the stream is
+     * consumed, in document order, which for recursive descent can differ from the order of
+     * {@link #select}. The reader is left positioned after the last token read.
+     *
+     * @throws UnsupportedOperationException if a filter refers to the document root
+     */
+    public @NotNull Stream<CsonElement> stream(@NotNull JsonReader reader) {
+        val evaluator = new CsonPathStreamEvaluator(this, reader);
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<CsonElement>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super CsonElement> action) {
+                val element = evaluator.next();
+                if (element == null) {
+                    return false;
+                }
+                action.accept(element);
+                return true;
+            }
+        }, false);
+    }
+
+    /**
+     * Reads the whole document from the reader, passing every selected element to the action.
+     *
+     * @see #stream(JsonReader)
+     */
+    public void forEach(@NotNull JsonReader reader, @NotNull Consumer<? super CsonElement> action) {
+        val evaluator = new CsonPathStreamEvaluator(this, reader);
+        for (var element = evaluator.next(); element != null; element = evaluator.next()) {
+            action.accept(element);
+        }
+    }
+
+    public boolean exists(@NotNull CsonElement root) {
+        return this.selectFirst(root) != null;
+    }
+
+    /**
+     * Returns whether the path selects at most one element, i.e. consists only of names and
+     * indices.
+     */
+    public boolean isDefinite() {
+        for (val step : this.steps) {
+            if (!(step instanceof CsonPathStep.Name) && !(step instanceof CsonPathStep.Index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public @NotNull String expression() {
+        return this.expression;
+    }
+
+    int stepCount() {
+        return this.steps.length;
+    }
+
+    CsonPathStep step(int index) {
+        return this.steps[index];
+    }
+
+    /**
+     * Applies the steps from the given index on to the node and passes what they select to the
+     * sink. Returns false if the sink stopped the evaluation.
+     */
+    boolean evaluate(CsonElement node, int step, Sink sink) {
+        if (step == this.steps.length) {
+            return sink.accept(node);
+        }
+        return this.steps[step].apply(this, node, step + 1, sink);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o == this || (o instanceof CsonPath path && path.expression.equals(this.expression));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.expression.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.expression;
+    }
+
+    /**
+     * Receives the selected elements. The root is what {@code $} refers to in filters.
+     */
+    abstract static class Sink {
+        final CsonElement root;
+
+        Sink(CsonElement root) {
+            this.root = root;
+        }
+
+        /**
+         * Returns false to stop the evaluation.
+         */
+        abstract boolean accept(CsonElement element);
+    }
+
+    private static final class FirstSink extends Sink {
+        private CsonElement result;
+
+        private FirstSink(CsonElement root) {
+            super(root);
+        }
+
+        @Override
+        boolean accept(CsonElement element) {
+            this.result = element;
+            return false;
+        }
+    }
+}
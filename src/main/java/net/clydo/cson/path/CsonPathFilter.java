@@ -0,0 +1,132 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.path;
+
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A compiled filter expression, tested against the candidate element ({@code @}) and the
+ * document root ({@code $}).
+ */
+sealed interface CsonPathFilter {
+    boolean test(CsonElement current, CsonElement root);
+
+    record Or(CsonPathFilter left, CsonPathFilter right) implements CsonPathFilter {
+        @Override
+        public boolean test(CsonElement current, CsonElement root) {
+            return this.left.test(current, root) || this.right.test(current, root);
+        }
+    }
+
+    record And(CsonPathFilter left, CsonPathFilter right) implements CsonPathFilter {
+        @Override
+        public boolean test(CsonElement current, CsonElement root) {
+            return this.left.test(current, root) && this.right.test(current, root);
+        }
+    }
+
+    record Not(CsonPathFilter filter) implements CsonPathFilter {
+        @Override
+        public boolean test(CsonElement current, CsonElement root) {
+            return !this.filter.test(current, root);
+        }
+    }
+
+    /**
+     * A path on its own, true if it selects anything
+     */
+    record Exists(Operand operand) implements CsonPathFilter {
+        @Override
+        public boolean test(CsonElement current, CsonElement root) {
+            return this.operand.value(current, root) != null;
+        }
+    }
+
+    record Compare(Operand left, Operator operator, Operand right) implements CsonPathFilter {
+        @Override
+        public boolean test(CsonElement current, CsonElement root) {
+            val left = this.left.value(current, root);
+            val right = this.right.value(current, root);
+            if (left == null || right == null) {
+                // Nothing compares equal to a missing value, not even another missing value
+                return this.operator == Operator.NOT_EQUAL;
+            }
+
+            return switch (this.operator) {
+                case EQUAL -> left.equals(right);
+                case NOT_EQUAL -> !left.equals(right);
+                default -> {
+                    val order = order(left, right);
+                    yield order != null && switch (this.operator) {
+                        case LESS -> order < 0;
+                        case LESS_OR_EQUAL -> order <= 0;
+                        case GREATER -> order > 0;
+                        default -> order >= 0;
+                    };
+                }
+            };
+        }
+
+        /**
+         * Orders two numbers or two strings, or returns null for values that have no order.
+         */
+        private static @Nullable Integer order(CsonElement left, CsonElement right) {
+            if (!left.isPrimitive() || !right.isPrimitive()) {
+                return null;
+            }
+            if (left.isNumber() && right.isNumber()) {
+                return Double.compare(left.asDouble(), right.asDouble());
+            }
+            if (left.isString() && right.isString()) {
+                return left.asString().compareTo(right.asString());
+            }
+            return null;
+        }
+    }
+
+    enum Operator {
+        EQUAL, NOT_EQUAL, LESS, LESS_OR_EQUAL, GREATER, GREATER_OR_EQUAL
+    }
+
+    sealed interface Operand {
+        /**
+         * Returns the value of this operand, or null if a path selects nothing.
+         */
+        @Nullable CsonElement value(CsonElement current, CsonElement root);
+    }
+
+    record Literal(CsonElement value) implements Operand {
+        @Override
+        public CsonElement value(CsonElement current, CsonElement root) {
+            return this.value;
+        }
+    }
+
+    record PathOperand(boolean relative, CsonPath path) implements Operand {
+        @Override
+        public @Nullable CsonElement value(CsonElement current, CsonElement root) {
+            return this.path.selectFirst(this.relative ? current : root);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.path;
+
+import com.google.gson.internal.LazilyParsedNumber;
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.element.CsonPrimitive;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recursive descent parser for {@link CsonPath} expressions.
+ */
+final class CsonPathParser {
+    private final String text;
+    private int position;
+
+    private CsonPathParser(String text) {
+        this.text = text;
+    }
+
+    static CsonPathStep[] parse(String expression) {
+        val parser = new CsonPathParser(expression);
+        if (!parser.consume('$')) {
+            throw parser.error("Path must start with '$'");
+        }
+        val steps = parser.parseSteps(false);
+        if (parser.position < expression.length()) {
+            throw parser.error("Unexpected character '" + expression.charAt(parser.position) + "'");
+        }
+        return steps.toArray(new CsonPathStep[0]);
+    }
+
+    /**
+     * Parses steps up to the end of the text or, inside a filter, up to the first character that
+     * cannot continue the path.
+     */
+    private List<CsonPathStep> parseSteps(boolean inFilter) {
+        val steps = new ArrayList<CsonPathStep>();
+        while (this.position < this.text.length()) {
+            val c = this.text.charAt(this.position);
+            if (c == '.') {
+                this.position++;
+                if (this.consume('.')) {
+                    steps.add(new CsonPathStep.Descendant(this.parseDescendantTarget()));
+                } else if (this.consume('*')) {
+                    steps.add(new CsonPathStep.Wildcard());
+                } else {
+                    steps.add(new CsonPathStep.Name(this.parseName()));
+                }
+            } else if (c == '[') {
+                steps.add(this.parseBracket());
+            } else if (inFilter) {
+                break;
+            } else {
+                throw this.error("Unexpected character '" + c + "'");
+            }
+        }
+        return steps;
+    }
+
+    private CsonPathStep parseDescendantTarget() {
+        if (this.consume('*')) {
+            return new CsonPathStep.Wildcard();
+        } else if (this.peek() == '[') {
+            return this.parseBracket();
+        }
+        return new CsonPathStep.Name(this.parseName());
+    }
+
+    private String parseName() {
+        val start = this.position;
+        while (this.position < this.text.length() && isNameChar(this.text.charAt(this.position))) {
+            this.position++;
+        }
+        if (start == this.position) {
+            throw this.error("Expected a member name");
+        }
+        return this.text.substring(start, this.position);
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '$' || c > 0x7F;
+    }
+
+    private CsonPathStep parseBracket() {
+        this.expect('[');
+        this.skipWhitespace();
+
+        CsonPathStep step;
+        if (this.consume('*')) {
+            step = new CsonPathStep.Wildcard();
+        } else if (this.consume('?')) {
+            this.skipWhitespace();
+            step = new CsonPathStep.Filter(this.parseOr());
+        } else {
+            val alternatives = new ArrayList<CsonPathStep>();
+            do {
+                this.skipWhitespace();
+                alternatives.add(this.parseSelector());
+                this.skipWhitespace();
+            } while (this.consume(','));
+            step = alternatives.size() == 1 ? alternatives.get(0) : new CsonPathStep.Union(List.copyOf(alternatives));
+        }
+
+        this.skipWhitespace();
+        this.expect(']');
+        return step;
+    }
+
+    /**
+     * Parses a quoted name, an index or a slice.
+     */
+    private CsonPathStep parseSelector() {
+        val c = this.peek();
+        if (c == '\'' || c == '"') {
+            return new CsonPathStep.Name(this.parseString());
+        }
+
+        val start = this.parseOptionalInt();
+        this.skipWhitespace();
+        if (!this.consume(':')) {
+            if (start == null) {
+                throw this.error("Expected a name, index or slice");
+            }
+            return new CsonPathStep.Index(start);
+        }
+
+        this.skipWhitespace();
+        val end = this.parseOptionalInt();
+        this.skipWhitespace();
+        var step = 1;
+        if (this.consume(':')) {
+            this.skipWhitespace();
+            val parsedStep = this.parseOptionalInt();
+            step = parsedStep == null ? 1 : parsedStep;
+        }
+        return new CsonPathStep.Slice(start, end, step);
+    }
+
+    private Integer parseOptionalInt() {
+        val start = this.position;
+        if (this.peek() == '-') {
+            this.position++;
+        }
+        while (this.position < this.text.length() && Character.isDigit(this.text.charAt(this.position))) {
+            this.position++;
+        }
+        if (this.position == start) {
+            return null;
+        }
+        try {
+            return Integer.parseInt(this.text.substring(start, this.position));
+        } catch (NumberFormatException e) {
+            this.position = start;
+            throw this.error("Invalid index");
+        }
+    }
+
+    //region Filters
+    private CsonPathFilter parseOr() {
+        var left = this.parseAnd();
+        while (this.consume("||")) {
+            left = new CsonPathFilter.Or(left, this.parseAnd());
+        }
+        return left;
+    }
+
+    private CsonPathFilter parseAnd() {
+        var left = this.parseUnary();
+        while (this.consume("&&")) {
+            left = new CsonPathFilter.And(left, this.parseUnary());
+        }
+        return left;
+    }
+
+    private CsonPathFilter parseUnary() {
+        this.skipWhitespace();
+        if (this.peek() == '!' && !this.text.startsWith("!=", this.position)) {
+            this.position++;
+            return new CsonPathFilter.Not(this.parseUnary());
+        }
+        if (this.consume('(')) {
+            val filter = this.parseOr();
+            this.skipWhitespace();
+            this.expect(')');
+            return filter;
+        }
+
+        val left = this.parseOperand();
+        val operator = this.parseOperator();
+        if (operator == null) {
+            if (!(left instanceof CsonPathFilter.PathOperand)) {
+                throw this.error("Expected a comparison operator");
+            }
+            return new CsonPathFilter.Exists(left);
+        }
+        return new CsonPathFilter.Compare(left, operator, this.parseOperand());
+    }
+
+    private CsonPathFilter.Operator parseOperator() {
+        this.skipWhitespace();
+        if (this.consume("==")) {
+            return CsonPathFilter.Operator.EQUAL;
+        } else if (this.consume("!=")) {
+            return CsonPathFilter.Operator.NOT_EQUAL;
+        } else if (this.consume("<=")) {
+            return CsonPathFilter.Operator.LESS_OR_EQUAL;
+        } else if (this.consume(">=")) {
+            return CsonPathFilter.Operator.GREATER_OR_EQUAL;
+        } else if (this.consume('<')) {
+            return CsonPathFilter.Operator.LESS;
+        } else if (this.consume('>')) {
+            return CsonPathFilter.Operator.GREATER;
+        }
+        return null;
+    }
+
+    private CsonPathFilter.Operand parseOperand() {
+        this.skipWhitespace();
+        val c = this.peek();
+        if (c == '@' || c == '$') {
+            val start = this.position++;
+            val steps = this.parseSteps(true);
+            val path = new CsonPath(this.text.substring(start, this.position), steps.toArray(new CsonPathStep[0]));
+            return new CsonPathFilter.PathOperand(c == '@', path);
+        } else if (c == '\'' || c == '"') {
+            return new CsonPathFilter.Literal(new CsonPrimitive(this.parseString()));
+        } else if (c == '-' || (c >= '0' && c <= '9')) {
+            return new CsonPathFilter.Literal(this.parseNumber());
+        } else if (this.consumeKeyword("true")) {
+            return new CsonPathFilter.Literal(CsonPrimitive.of(true));
+        } else if (this.consumeKeyword("false")) {
+            return new CsonPathFilter.Literal(CsonPrimitive.of(false));
+        } else if (this.consumeKeyword("null")) {
+            return new CsonPathFilter.Literal(CsonNull.INSTANCE);
+        }
+        throw this.error("Expected a path or literal");
+    }
+
+    private CsonElement parseNumber() {
+        val start = this.position;
+        if (this.peek() == '-') {
+            this.position++;
+        }
+        while (this.position < this.text.length()) {
+            val c = this.text.charAt(this.position);
+            if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E' || c == '+' || c == '-') {
+                this.position++;
+            } else {
+                break;
+            }
+        }
+        val number = this.text.substring(start, this.position);
+        try {
+            Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            this.position = start;
+            throw this.error("Invalid number '" + number + "'");
+        }
+        return new CsonPrimitive(new LazilyParsedNumber(number));
+    }
+    //endregion
+
+    private String parseString() {
+        val quote = this.text.charAt(this.position++);
+        val builder = new StringBuilder();
+        while (this.position < this.text.length()) {
+            val c = this.text.charAt(this.position++);
+            if (c == quote) {
+                return builder.toString();
+            } else if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            if (this.position >= this.text.length()) {
+                break;
+            }
+            val escaped = this.text.charAt(this.position++);
+            switch (escaped) {
+                case 'b' -> builder.append('\b');
+                case 'f' -> builder.append('\f');
+                case 'n' -> builder.append('\n');
+                case 'r' -> builder.append('\r');
+                case 't' -> builder.append('\t');
+                case 'u' -> {
+                    if (this.position + 4 > this.text.length()) {
+                        throw this.error("Unterminated escape sequence");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(this.text.substring(this.position, this.position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw this.error("Invalid escape sequence");
+                    }
+                    this.position += 4;
+                }
+                default -> builder.append(escaped);
+            }
+        }
+        throw this.error("Unterminated string");
+    }
+
+    private char peek() {
+        return this.position < this.text.length() ? this.text.charAt(this.position) : '\0';
+    }
+
+    private boolean consume(char c) {
+        if (this.peek() == c) {
+            this.position++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consume(String token) {
+        this.skipWhitespace();
+        if (this.text.startsWith(token, this.position)) {
+            this.position += token.length();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean consumeKeyword(String keyword) {
+        val end = this.position + keyword.length();
+        if (this.text.startsWith(keyword, this.position) && (end >= this.text.length() || !isNameChar(this.text.charAt(end)))) {
+            this.position = end;
+            return true;
+        }
+        return false;
+    }
+
+    private void expect(char c) {
+        if (!this.consume(c)) {
+            throw this.error("Expected '" + c + "'");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (this.position < this.text.length() && Character.isWhitespace(this.text.charAt(this.position))) {
+            this.position++;
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at position " + this.position + " in JSONPath " + this.text);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.path;
+
+import lombok.val;
+import net.clydo.cson.element.CsonElement;
+
+import java.util.List;
+
+/**
+ * One step of a compiled {@link CsonPath}. A step selects elements relative to the current one
+ * and hands each to the next step, so evaluation never builds intermediate result lists. Every
+ * method returns false once the sink asked to stop.
+ */
+sealed interface CsonPathStep {
+    boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink);
+
+    /**
+     * {@code .name} or {@code ['name']}
+     */
+    record Name(String name) implements CsonPathStep {
+        @Override
+        public boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink) {
+            if (node.isObject()) {
+                val child = node.asObject().get(this.name);
+                return child == null || path.evaluate(child, next, sink);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@code [n]}, counting from the end if negative
+     */
+    record Index(int index) implements CsonPathStep {
+        @Override
+        public boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink) {
+            if (node.isArray()) {
+                val array = node.asArray();
+                val index = this.index < 0 ? array.size() + this.index : this.index;
+                if (index >= 0 && index < array.size()) {
+                    return path.evaluate(array.get(index), next, sink);
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@code .*} or {@code [*]}
+     */
+    record Wildcard() implements CsonPathStep {
+        @Override
+        public boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink) {
+            if (node.isObject()) {
+                for (val entry : node.asObject()) {
+                    if (!path.evaluate(entry.getValue(), next, sink)) {
+                        return false;
+                    }
+                }
+            } else if (node.isArray()) {
+                for (val child : node.asArray()) {
+                    if (!path.evaluate(child, next, sink)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@code [start:end:step]} with Python semantics; a step of zero selects nothing
+     */
+    record Slice(Integer start, Integer end, int step) implements CsonPathStep {
+        @Override
+        public boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink) {
+            if (!node.isArray() || this.step == 0) {
+                return true;
+            }
+
+            val array = node.asArray();
+            val size = array.size();
+            if (this.step > 0) {
+                val from = this.start == null ? 0 : clamp(normalize(this.start, size), 0, size);
+                val to = this.end == null ? size : clamp(normalize(this.end, size), 0, size);
+                for (int i = from; i < to; i += this.step) {
+                    if (!path.evaluate(array.get(i), next, sink)) {
+                        return false;
+                    }
+                }
+            } else {
+                val from = this.start == null ? size - 1 : clamp(normalize(this.start, size), -1, size - 1);
+                val to = this.end == null ? -1 : clamp(normalize(this.end, size), -1, size - 1);
+                for (int i = from; i > to; i += this.step) {
+                    if (!path.evaluate(array.get(i), next, sink)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static int normalize(int index, int size) {
+            return index < 0 ? size + index : index;
+        }
+
+        private static int clamp(int value, int min, int max) {
+            return Math.max(min, Math.min(max, value));
+        }
+    }
+
+    /**
+     * {@code ['a','b']}, {@code [0,2]} and mixes with slices, selected in the order given
+     */
+    record Union(List<CsonPathStep> alternatives) implements CsonPathStep {
+        @Override
+        public boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink) {
+            for (val alternative : this.alternatives) {
+                if (!alternative.apply(path, node, next, sink)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@code ..step}: applies the inner step to the current element and all its descendants
+     */
+    record Descendant(CsonPathStep inner) implements CsonPathStep {
+        @Override
+        public boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink) {
+            if (!this.inner.apply(path, node, next, sink)) {
+                return false;
+            }
+            if (node.isObject()) {
+                for (val entry : node.asObject()) {
+                    if (!this.apply(path, entry.getValue(), next, sink)) {
+                        return false;
+                    }
+                }
+            } else if (node.isArray()) {
+                for (val child : node.asArray()) {
+                    if (!this.apply(path, child, next, sink)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * {@code [?(expression)]}: the array elements or object member values matching the expression
+     */
+    record Filter(CsonPathFilter filter) implements CsonPathStep {
+        @Override
+        public boolean apply(CsonPath path, CsonElement node, int next, CsonPath.Sink sink) {
+            if (node.isObject()) {
+                for (val entry : node.asObject()) {
+                    val child = entry.getValue();
+                    if (this.filter.test(child, sink.root) && !path.evaluate(child, next, sink)) {
+                        return false;
+                    }
+                }
+            } else if (node.isArray()) {
+                for (val child : node.asArray()) {
+                    if (this.filter.test(child, sink.root) && !path.evaluate(child, next, sink)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
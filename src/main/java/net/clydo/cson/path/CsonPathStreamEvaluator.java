@@ -0,0 +1,325 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.path;
+
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import lombok.val;
+import net.clydo.cson.adapter.CsonTypeAdapters;
+import net.clydo.cson.element.CsonElement;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Evaluates a {@link CsonPath} against a token stream without building the document.
+ * <p>
+ * Each open container on the stack carries the steps that still have to be applied to its
+ * children. Children no step can select are skipped unparsed. A value is only materialized when
+ * it is selected, when a filter has to test it, or when it is an array addressed from its end,
+ * and the tree evaluator then finishes the remaining steps on it. Memory is therefore bounded by
+ * the document depth plus the largest value that had to be materialized.
+ */
+final class CsonPathStreamEvaluator {
+    private final CsonPath path;
+    private final JsonReader reader;
+    private final ArrayDeque<CsonElement> pending = new ArrayDeque<>();
+    private final CsonPath.Sink sink = new CsonPath.Sink(null) {
+        @Override
+        boolean accept(CsonElement element) {
+            CsonPathStreamEvaluator.this.pending.add(element);
+            return true;
+        }
+    };
+
+    private Frame[] stack = new Frame[32];
+    private int stackSize;
+    private boolean started;
+
+    CsonPathStreamEvaluator(CsonPath path, JsonReader reader) {
+        for (int i = 0; i < path.stepCount(); i++) {
+            if (referencesRoot(path.step(i))) {
+                throw new UnsupportedOperationException("Filters referring to '$' cannot be evaluated on a stream: " + path);
+            }
+        }
+        this.path = path;
+        this.reader = reader;
+    }
+
+    /**
+     * Returns the next selected element, or null once the document has been read.
+     */
+    @Nullable CsonElement next() {
+        try {
+            while (this.pending.isEmpty()) {
+                if (!this.started) {
+                    this.started = true;
+                    if (this.reader.peek() != JsonToken.END_DOCUMENT) {
+                        this.visit(new int[]{0});
+                    }
+                    continue;
+                }
+                if (this.stackSize == 0) {
+                    return null;
+                }
+                this.advance(this.stack[this.stackSize - 1]);
+            }
+            return this.pending.poll();
+        } catch (MalformedJsonException | NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Reads the next child of the container on top of the stack, or closes the container.
+     */
+    private void advance(Frame frame) throws IOException {
+        if (!this.reader.hasNext()) {
+            if (frame.object) {
+                this.reader.endObject();
+            } else {
+                this.reader.endArray();
+            }
+            this.stack[--this.stackSize] = null;
+            return;
+        }
+
+        String name = null;
+        var index = -1;
+        if (frame.object) {
+            name = this.reader.nextName();
+        } else {
+            index = frame.index++;
+        }
+
+        if (!frame.filtered) {
+            this.visit(this.childStates(frame.states, name, index, null));
+            return;
+        }
+
+        // A filter has to see the whole child, so the rest of its steps run on the tree
+        val child = this.read();
+        val states = this.childStates(frame.states, name, index, child);
+        Arrays.sort(states);
+        for (int i = states.length - 1; i >= 0; i--) {
+            this.path.evaluate(child, states[i], this.sink);
+        }
+    }
+
+    /**
+     * Handles the value at the reader's position, reached with the given step indices pending.
+     */
+    private void visit(int[] states) throws IOException {
+        if (states.length == 0) {
+            this.reader.skipValue();
+            return;
+        }
+
+        if (this.needsTree(states)) {
+            val node = this.read();
+            // Steps further along first, so that a selected value precedes its selected descendants
+            Arrays.sort(states);
+            for (int i = states.length - 1; i >= 0; i--) {
+                this.path.evaluate(node, states[i], this.sink);
+            }
+            return;
+        }
+
+        val token = this.reader.peek();
+        if (token == JsonToken.BEGIN_OBJECT) {
+            this.reader.beginObject();
+            this.push(new Frame(true, states, this.isFiltered(states)));
+        } else if (token == JsonToken.BEGIN_ARRAY) {
+            this.reader.beginArray();
+            this.push(new Frame(false, states, this.isFiltered(states)));
+        } else {
+            // No step selects anything below a primitive
+            this.reader.skipValue();
+        }
+    }
+
+    private CsonElement read() throws IOException {
+        return CsonTypeAdapters.CSON_ELEMENT.read(this.reader, null);
+    }
+
+    private void push(Frame frame) {
+        if (this.stackSize == this.stack.length) {
+            this.stack = Arrays.copyOf(this.stack, this.stackSize * 2);
+        }
+        this.stack[this.stackSize++] = frame;
+    }
+
+    /**
+     * Returns the step indices pending for a child, given those pending for its parent.
+     */
+    private int[] childStates(int[] states, @Nullable String name, int index, @Nullable CsonElement child) {
+        var result = new int[states.length * 2];
+        var count = 0;
+        for (val state : states) {
+            val step = this.path.step(state);
+            if (step instanceof CsonPathStep.Descendant descendant) {
+                count = add(result, count, state);
+                if (selects(descendant.inner(), name, index, child)) {
+                    count = add(result, count, state + 1);
+                }
+            } else if (selects(step, name, index, child)) {
+                count = add(result, count, state + 1);
+            }
+        }
+        return count == result.length ? result : Arrays.copyOf(result, count);
+    }
+
+    private static int add(int[] states, int count, int state) {
+        for (int i = 0; i < count; i++) {
+            if (states[i] == state) {
+                return count;
+            }
+        }
+        states[count] = state;
+        return count + 1;
+    }
+
+    private static boolean selects(CsonPathStep step, @Nullable String name, int index, @Nullable CsonElement child) {
+        if (step instanceof CsonPathStep.Name named) {
+            return named.name().equals(name);
+        } else if (step instanceof CsonPathStep.Index indexed) {
+            return index >= 0 && indexed.index() == index;
+        } else if (step instanceof CsonPathStep.Wildcard) {
+            return true;
+        } else if (step instanceof CsonPathStep.Slice slice) {
+            val start = slice.start() == null ? 0 : slice.start();
+            return index >= start && (slice.end() == null || index < slice.end()) && (index - start) % slice.step() == 0;
+        } else if (step instanceof CsonPathStep.Union union) {
+            for (val alternative : union.alternatives()) {
+                if (selects(alternative, name, index, child)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (step instanceof CsonPathStep.Filter filter) {
+            return child != null && filter.filter().test(child, child);
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the value has to be materialized: because it is selected, or because a
+     * step selects its children by position from the end.
+     */
+    private boolean needsTree(int[] states) {
+        for (val state : states) {
+            if (state == this.path.stepCount() || !streamsChildren(this.path.step(state))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean streamsChildren(CsonPathStep step) {
+        if (step instanceof CsonPathStep.Index index) {
+            return index.index() >= 0;
+        } else if (step instanceof CsonPathStep.Slice slice) {
+            return slice.step() > 0 && (slice.start() == null || slice.start() >= 0) && (slice.end() == null || slice.end() >= 0);
+        } else if (step instanceof CsonPathStep.Union union) {
+            for (val alternative : union.alternatives()) {
+                if (!streamsChildren(alternative)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (step instanceof CsonPathStep.Descendant descendant) {
+            return streamsChildren(descendant.inner());
+        }
+        return true;
+    }
+
+    private boolean isFiltered(int[] states) {
+        for (val state : states) {
+            var step = this.path.step(state);
+            if (step instanceof CsonPathStep.Descendant descendant) {
+                step = descendant.inner();
+            }
+            if (step instanceof CsonPathStep.Filter) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean referencesRoot(CsonPathStep step) {
+        if (step instanceof CsonPathStep.Filter filter) {
+            return referencesRoot(filter.filter());
+        } else if (step instanceof CsonPathStep.Descendant descendant) {
+            return referencesRoot(descendant.inner());
+        }
+        return false;
+    }
+
+    private static boolean referencesRoot(CsonPathFilter filter) {
+        if (filter instanceof CsonPathFilter.Or or) {
+            return referencesRoot(or.left()) || referencesRoot(or.right());
+        } else if (filter instanceof CsonPathFilter.And and) {
+            return referencesRoot(and.left()) || referencesRoot(and.right());
+        } else if (filter instanceof CsonPathFilter.Not not) {
+            return referencesRoot(not.filter());
+        } else if (filter instanceof CsonPathFilter.Exists exists) {
+            return referencesRoot(exists.operand());
+        } else if (filter instanceof CsonPathFilter.Compare compare) {
+            return referencesRoot(compare.left()) || referencesRoot(compare.right());
+        }
+        return false;
+    }
+
+    private static boolean referencesRoot(CsonPathFilter.Operand operand) {
+        if (operand instanceof CsonPathFilter.PathOperand pathOperand) {
+            if (!pathOperand.relative()) {
+                return true;
+            }
+            for (int i = 0; i < pathOperand.path().stepCount(); i++) {
+                if (referencesRoot(pathOperand.path().step(i))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static final class Frame {
+        final boolean object;
+        final int[] states;
+        final boolean filtered;
+        int index;
+
+        Frame(boolean object, int[] states, boolean filtered) {
+            this.object = object;
+            this.states = states;
+            this.filtered = filtered;
+        }
+    }
+}
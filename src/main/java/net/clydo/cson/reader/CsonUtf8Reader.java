@@ -0,0 +1,343 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.reader;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.internal.LazilyParsedNumber;
+import lombok.val;
+import net.clydo.cson.element.*;
+import net.clydo.cson.util.CsonUtf8;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * Parses RFC 8259 JSON straight from UTF-8 bytes, without decoding the input to characters first.
+ * <p>
+ * With lazy strings enabled, string values that contain no escape sequences are kept as slices
+ * of the input (see {@link CsonPrimitive#ofUtf8(byte[], int, int)}) and are only decoded when
+ * read. The input buffer must then stay untouched for as long as the parsed tree is in use.
+ * Object keys are always decoded.
+ */
+public final class CsonUtf8Reader {
+    private final byte[] buffer;
+    private final int limit;
+    private final boolean lazyStrings;
+    private final CsonArena arena;
+    private int pos;
+
+    public CsonUtf8Reader(byte @NotNull [] buffer, int offset, int length, boolean lazyStrings, @Nullable CsonArena arena) {
+        if (offset < 0 || length < 0 || offset + length > buffer.length) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", length " + length + ", buffer " + buffer.length);
+        }
+        this.buffer = buffer;
+        this.pos = offset;
+        this.limit = offset + length;
+        this.lazyStrings = lazyStrings;
+        this.arena = arena;
+    }
+
+    /**
+     * Reads the whole input as a single JSON value. Empty input yields {@link CsonNull#INSTANCE}.
+     */
+    public @NotNull CsonElement read() throws JsonSyntaxException {
+        if (this.limit - this.pos >= 3
+                && this.buffer[this.pos] == (byte) 0xEF
+                && this.buffer[this.pos + 1] == (byte) 0xBB
+                && this.buffer[this.pos + 2] == (byte) 0xBF) {
+            this.pos += 3;
+        }
+
+        this.skipWhitespace();
+        if (this.pos == this.limit) {
+            return CsonNull.INSTANCE;
+        }
+
+        val element = this.readValue();
+        this.skipWhitespace();
+        if (this.pos != this.limit) {
+            throw this.syntaxError("Did not consume the entire document");
+        }
+        return element;
+    }
+
+    private CsonElement readValue() {
+        CsonElement current = this.tryBeginNesting();
+        if (current == null) {
+            return this.readTerminal();
+        }
+
+        val stack = new ArrayDeque<CsonElement>();
+        var first = true;
+        while (true) {
+            this.skipWhitespace();
+            val isArray = current instanceof CsonArray;
+            val c = this.peekByte();
+            if (c == (isArray ? ']' : '}')) {
+                this.pos++;
+                if (stack.isEmpty()) {
+                    return current;
+                }
+                current = stack.pop();
+                first = false;
+                continue;
+            }
+
+            if (!first) {
+                if (c != ',') {
+                    throw this.syntaxError(isArray ? "Expected ',' or ']'" : "Expected ',' or '}'");
+                }
+                this.pos++;
+                this.skipWhitespace();
+            }
+
+            String name = null;
+            if (!isArray) {
+                if (this.peekByte() != '"') {
+                    throw this.syntaxError("Expected a name");
+                }
+                name = (String) this.readString(false);
+                this.skipWhitespace();
+                if (this.peekByte() != ':') {
+                    throw this.syntaxError("Expected ':'");
+                }
+                this.pos++;
+                this.skipWhitespace();
+            }
+
+            var value = this.tryBeginNesting();
+            val isNesting = value != null;
+            if (!isNesting) {
+                value = this.readTerminal();
+            }
+
+            if (isArray) {
+                ((CsonArray) current).add(value);
+            } else {
+                ((CsonObject) current).put(name, value);
+            }
+
+            if (isNesting) {
+                stack.push(current);
+                current = value;
+                first = true;
+            } else {
+                first = false;
+            }
+        }
+    }
+
+    private @Nullable CsonElement tryBeginNesting() {
+        val c = this.peekByte();
+        if (c == '[') {
+            this.pos++;
+            return this.arena == null ? new CsonArray() : this.arena.newArray();
+        } else if (c == '{') {
+            this.pos++;
+            return this.arena == null ? new CsonObject() : this.arena.newObject();
+        }
+        return null;
+    }
+
+    private CsonElement readTerminal() {
+        val c = this.peekByte();
+        return switch (c) {
+            case '"' -> {
+                val string = this.readString(true);
+                yield string instanceof CsonPrimitive primitive ? primitive : new CsonPrimitive((String) string);
+            }
+            case 't' -> {
+                this.expectLiteral("true");
+                yield CsonPrimitive.of(true);
+            }
+            case 'f' -> {
+                this.expectLiteral("false");
+                yield CsonPrimitive.of(false);
+            }
+            case 'n' -> {
+                this.expectLiteral("null");
+                yield CsonNull.INSTANCE;
+            }
+            default -> {
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    yield new CsonPrimitive(this.readNumber());
+                }
+                throw this.syntaxError("Unexpected character '" + (char) c + "'");
+            }
+        };
+    }
+
+    /**
+     * Reads a string starting at the opening quote. Returns a lazy {@link CsonPrimitive} for
+     * escape-free, well-formed values when lazy strings are enabled, and a {@link String}
+     * otherwise, so that malformed input is replaced with U+FFFD either way.
+     */
+    private Object readString(boolean isValue) {
+        val start = ++this.pos;
+        StringBuilder builder = null;
+        var chunkStart = start;
+        var ascii = true;
+        while (true) {
+            if (this.pos >= this.limit) {
+                throw this.syntaxError("Unterminated string");
+            }
+            val b = this.buffer[this.pos];
+            if (b == '"') {
+                val end = this.pos++;
+                if (builder == null) {
+                    if (isValue && this.lazyStrings && (ascii || CsonUtf8.isWellFormed(this.buffer, start, end - start))) {
+                        return CsonPrimitive.ofUtf8(this.buffer, start, end - start);
+                    }
+                    return new String(this.buffer, start, end - start, StandardCharsets.UTF_8);
+                }
+                builder.append(new String(this.buffer, chunkStart, end - chunkStart, StandardCharsets.UTF_8));
+                return builder.toString();
+            } else if (b == '\\') {
+                if (builder == null) {
+                    builder = new StringBuilder();
+                }
+                builder.append(new String(this.buffer, chunkStart, this.pos - chunkStart, StandardCharsets.UTF_8));
+                this.pos++;
+                builder.append(this.readEscape());
+                chunkStart = this.pos;
+            } else if (b >= 0 && b < 0x20) {
+                throw this.syntaxError("Unescaped control character in string");
+            } else {
+                ascii &= b >= 0;
+                this.pos++;
+            }
+        }
+    }
+
+    private char readEscape() {
+        if (this.pos >= this.limit) {
+            throw this.syntaxError("Unterminated escape sequence");
+        }
+        val c = this.buffer[this.pos++];
+        return switch (c) {
+            case '"' -> '"';
+            case '\\' -> '\\';
+            case '/' -> '/';
+            case 'b' -> '\b';
+            case 'f' -> '\f';
+            case 'n' -> '\n';
+            case 'r' -> '\r';
+            case 't' -> '\t';
+            case 'u' -> {
+                if (this.pos + 4 > this.limit) {
+                    throw this.syntaxError("Unterminated escape sequence");
+                }
+                var result = 0;
+                for (int i = 0; i < 4; i++) {
+                    val digit = Character.digit(this.buffer[this.pos++], 16);
+                    if (digit < 0) {
+                        throw this.syntaxError("Malformed \\u escape sequence");
+                    }
+                    result = (result << 4) | digit;
+                }
+                yield (char) result;
+            }
+            default -> throw this.syntaxError("Invalid escape sequence");
+        };
+    }
+
+    private LazilyParsedNumber readNumber() {
+        val start = this.pos;
+        if (this.peekByte() == '-') {
+            this.pos++;
+        }
+
+        val first = this.peekByte();
+        if (first == '0') {
+            this.pos++;
+        } else if (first >= '1' && first <= '9') {
+            this.skipDigits();
+        } else {
+            throw this.syntaxError("Malformed number");
+        }
+
+        if (this.pos < this.limit && this.buffer[this.pos] == '.') {
+            this.pos++;
+            this.requireDigits();
+        }
+
+        if (this.pos < this.limit && (this.buffer[this.pos] == 'e' || this.buffer[this.pos] == 'E')) {
+            this.pos++;
+            if (this.pos < this.limit && (this.buffer[this.pos] == '+' || this.buffer[this.pos] == '-')) {
+                this.pos++;
+            }
+            this.requireDigits();
+        }
+
+        return new LazilyParsedNumber(new String(this.buffer, start, this.pos - start, StandardCharsets.ISO_8859_1));
+    }
+
+    private void requireDigits() {
+        val start = this.pos;
+        this.skipDigits();
+        if (this.pos == start) {
+            throw this.syntaxError("Malformed number");
+        }
+    }
+
+    private void skipDigits() {
+        while (this.pos < this.limit && this.buffer[this.pos] >= '0' && this.buffer[this.pos] <= '9') {
+            this.pos++;
+        }
+    }
+
+    private void expectLiteral(String literal) {
+        val length = literal.length();
+        if (this.pos + length > this.limit) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+        for (int i = 0; i < length; i++) {
+            if (this.buffer[this.pos + i] != literal.charAt(i)) {
+                throw this.syntaxError("Expected " + literal);
+            }
+        }
+        this.pos += length;
+    }
+
+    private void skipWhitespace() {
+        while (this.pos < this.limit) {
+            val b = this.buffer[this.pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return;
+            }
+            this.pos++;
+        }
+    }
+
+    private int peekByte() {
+        if (this.pos >= this.limit) {
+            throw this.syntaxError("Unexpected end of input");
+        }
+        return this.buffer[this.pos];
+    }
+
+    private JsonSyntaxException syntaxError(String message) {
+        return new JsonSyntaxException(message + " at offset " + this.pos);
+    }
+}
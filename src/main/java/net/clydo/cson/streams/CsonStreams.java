@@ -20,6 +20,7 @@
 
 package net.clydo.cson.streams;
 
+import com.google.gson.FormattingStyle;
 import com.google.gson.JsonIOException;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
@@ -29,24 +30,32 @@ import com.google.gson.stream.MalformedJsonException;
 import lombok.experimental.UtilityClass;
 import lombok.val;
 import net.clydo.cson.adapter.CsonTypeAdapters;
+import net.clydo.cson.element.CsonArena;
 import net.clydo.cson.element.CsonElement;
 import net.clydo.cson.element.CsonNull;
+import net.clydo.cson.writer.CsonUtf8Writer;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.util.Objects;
 
 @UtilityClass
 public final class CsonStreams {
     public CsonElement parse(@NotNull JsonReader reader) throws JsonParseException {
+        return parse(reader, null);
+    }
+
+    public CsonElement parse(@NotNull JsonReader reader, @Nullable CsonArena arena) throws JsonParseException {
         var isEmpty = true;
         try {
             val ignored = reader.peek();
             isEmpty = false;
-            return CsonTypeAdapters.CSON_ELEMENT.read(reader);
+            return CsonTypeAdapters.CSON_ELEMENT.read(reader, arena);
         } catch (EOFException e) {
             if (isEmpty) {
                 return CsonNull.INSTANCE;
@@ -63,6 +72,14 @@ public final class CsonStreams {
         CsonTypeAdapters.CSON_ELEMENT.write(writer, element);
     }
 
+    public void writeUtf8(CsonElement element, OutputStream out) throws IOException {
+        new CsonUtf8Writer(out).write(element);
+    }
+
+    public void writeUtf8(CsonElement element, OutputStream out, FormattingStyle formattingStyle) throws IOException {
+        new CsonUtf8Writer(out, formattingStyle).write(element);
+    }
+
     @Contract("null -> new")
     public @NotNull Writer writerForAppendable(Appendable appendable) {
         return appendable instanceof Writer ? (Writer) appendable : new AppendableWriter(appendable);
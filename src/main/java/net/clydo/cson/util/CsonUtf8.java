@@ -0,0 +1,140 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+package net.clydo.cson.util;
+
+import lombok.experimental.UtilityClass;
+import lombok.val;
+
+/**
+ * UTF-8 encoding shared by the binary writers. Unpaired surrogates are replaced with {@code '?'},
+ * the same way {@link String#getBytes} does, so {@link #length} always matches what
+ * {@link #encode} writes.
+ */
+@UtilityClass
+public class CsonUtf8 {
+    /**
+     * Returns the number of bytes {@link #encode} writes for the string.
+     */
+    public int length(String string) {
+        val length = string.length();
+        var utf8Length = length;
+        for (int i = 0; i < length; i++) {
+            val c = string.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                utf8Length++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                utf8Length += 2;
+                i++;
+            } else if (!Character.isSurrogate(c)) {
+                utf8Length += 2;
+            }
+        }
+        return utf8Length;
+    }
+
+    /**
+     * Encodes the string into the buffer at the offset, which must have room for
+     * {@link #length} bytes, and returns the offset after the last byte written.
+     */
+    public int encode(String string, byte[] buffer, int offset) {
+        val length = string.length();
+        var i = 0;
+        // ASCII prefix, tested directly
+        for (char c; i < length && (c = string.charAt(i)) < 0x80; i++) {
+            buffer[offset++] = (byte) c;
+        }
+        for (; i < length; i++) {
+            val c = string.charAt(i);
+            if (c < 0x80) {
+                buffer[offset++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[offset++] = (byte) (0xC0 | (c >> 6));
+                buffer[offset++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                val codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer[offset++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                buffer[offset++] = '?';
+            } else {
+                buffer[offset++] = (byte) (0xE0 | (c >> 12));
+                buffer[offset++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[offset++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return offset;
+    }
+
+    /**
+     * Tells whether the range holds well-formed UTF-8: no truncated or overlong sequences, no
+     * surrogates and nothing above U+10FFFF, which are what decoding would replace with U+FFFD.
+     */
+    public boolean isWellFormed(byte[] bytes, int offset, int length) {
+        val end = offset + length;
+        var i = offset;
+        while (i < end) {
+            val b = bytes[i++];
+            if (b >= 0) {
+                continue;
+            }
+            val lead = b & 0xFF;
+            final int continuations;
+            final int min;
+            final int max;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                continuations = 1;
+                min = 0x80;
+                max = 0xBF;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                continuations = 2;
+                // No overlong forms and no surrogates
+                min = lead == 0xE0 ? 0xA0 : 0x80;
+                max = lead == 0xED ? 0x9F : 0xBF;
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                continuations = 3;
+                // No overlong forms and nothing above U+10FFFF
+                min = lead == 0xF0 ? 0x90 : 0x80;
+                max = lead == 0xF4 ? 0x8F : 0xBF;
+            } else {
+                return false;
+            }
+            if (end - i < continuations) {
+                return false;
+            }
+            val second = bytes[i] & 0xFF;
+            if (second < min || second > max) {
+                return false;
+            }
+            for (int k = 1; k < continuations; k++) {
+                if ((bytes[i + k] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuations;
+        }
+        return true;
+    }
+}
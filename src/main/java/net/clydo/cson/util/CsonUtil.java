@@ -26,48 +26,90 @@ import lombok.val;
 import net.clydo.cson.element.*;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+
 @UtilityClass
 public class CsonUtil {
+    /**
+     * Converts a Gson tree, walking it with an explicit stack so that any depth is supported.
+     */
     public CsonElement toCsonElement(final JsonElement jsonElement) {
-        if (jsonElement != null) {
-            if (jsonElement.isJsonPrimitive()) {
-                val jsonPrimitive = jsonElement.getAsJsonPrimitive();
-                if (jsonPrimitive.isBoolean()) {
-                    return new CsonPrimitive(jsonPrimitive.getAsBoolean());
-                } else if (jsonPrimitive.isNumber()) {
-                    return new CsonPrimitive(jsonPrimitive.getAsBoolean());
-                } else if (jsonPrimitive.isString()) {
-                    return new CsonPrimitive(jsonPrimitive.getAsBoolean());
-                }
-            } else if (jsonElement.isJsonArray()) {
-                val psonArray = new CsonArray();
-
-                for (JsonElement element : jsonElement.getAsJsonArray()) {
-                    psonArray.add(CsonUtil.toCsonElement(element));
-                }
-
-                return psonArray;
-            } else if (jsonElement.isJsonObject()) {
-                val psonObject = new CsonObject();
-
-                for (val entry : jsonElement.getAsJsonObject().entrySet()) {
-                    val key = entry.getKey();
-                    val value = entry.getValue();
-
-                    psonObject.put(key, CsonUtil.toCsonElement(value));
-                }
-
-                return psonObject;
-            } else if (jsonElement.isJsonNull()) {
-                return CsonNull.INSTANCE;
+        if (jsonElement == null || !(jsonElement.isJsonObject() || jsonElement.isJsonArray())) {
+            return toCsonLeaf(jsonElement);
+        }
+
+        val root = newContainer(jsonElement);
+        val sources = new ArrayDeque<Iterator<?>>();
+        val targets = new ArrayDeque<CsonElement>();
+        sources.push(childrenOf(jsonElement));
+        targets.push(root);
+        while (!sources.isEmpty()) {
+            val source = sources.peek();
+            if (!source.hasNext()) {
+                sources.pop();
+                targets.pop();
+                continue;
+            }
+
+            val target = targets.peek();
+            val next = source.next();
+            String key = null;
+            JsonElement value;
+            if (next instanceof Map.Entry<?, ?> entry) {
+                key = (String) entry.getKey();
+                value = (JsonElement) entry.getValue();
+            } else {
+                value = (JsonElement) next;
+            }
+
+            CsonElement converted;
+            if (value.isJsonObject() || value.isJsonArray()) {
+                converted = newContainer(value);
+                sources.push(childrenOf(value));
+                targets.push(converted);
+            } else {
+                converted = toCsonLeaf(value);
+            }
+
+            if (key != null) {
+                target.asObject().put(key, converted);
+            } else {
+                target.asArray().add(converted);
             }
-        } else {
+        }
+        return root;
+    }
+
+    private CsonElement toCsonLeaf(final JsonElement jsonElement) {
+        if (jsonElement == null || jsonElement.isJsonNull()) {
             return CsonNull.INSTANCE;
         }
 
+        val jsonPrimitive = jsonElement.getAsJsonPrimitive();
+        if (jsonPrimitive.isBoolean()) {
+            return CsonPrimitive.of(jsonPrimitive.getAsBoolean());
+        } else if (jsonPrimitive.isNumber()) {
+            return new CsonPrimitive(jsonPrimitive.getAsNumber());
+        } else if (jsonPrimitive.isString()) {
+            return new CsonPrimitive(jsonPrimitive.getAsString());
+        }
         throw new IllegalStateException("invalid json element: " + jsonElement);
     }
 
+    private CsonElement newContainer(final JsonElement jsonElement) {
+        return jsonElement.isJsonObject()
+                ? new CsonObject(jsonElement.getAsJsonObject().size())
+                : new CsonArray(jsonElement.getAsJsonArray().size());
+    }
+
+    private Iterator<?> childrenOf(final JsonElement jsonElement) {
+        return jsonElement.isJsonObject()
+                ? jsonElement.getAsJsonObject().entrySet().iterator()
+                : jsonElement.getAsJsonArray().iterator();
+    }
+
     public CsonArray toArray(Object @NotNull ... values) {
         val psonElements = new CsonArray(values.length);
         for (Object value : values) {
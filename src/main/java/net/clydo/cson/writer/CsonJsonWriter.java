@@ -0,0 +1,51 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.writer;
+
+import com.google.gson.stream.JsonWriter;
+import lombok.Getter;
+import net.clydo.cson.CsonConstants;
+import net.clydo.cson.SortMode;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Writer;
+
+/**
+ * A {@link JsonWriter} that carries the {@link SortMode} trees written to it are sorted by,
+ * instead of the global one from {@link CsonConstants}.
+ */
+@Getter
+public class CsonJsonWriter extends JsonWriter {
+    private final @NotNull SortMode sortMode;
+
+    public CsonJsonWriter(@NotNull Writer out, @NotNull SortMode sortMode) {
+        super(out);
+        this.sortMode = sortMode;
+    }
+
+    /**
+     * Returns the sort mode to write trees with to a writer.
+     */
+    public static @NotNull SortMode sortModeOf(@NotNull JsonWriter writer) {
+        return writer instanceof CsonJsonWriter csonWriter ? csonWriter.sortMode : CsonConstants.getSortMode();
+    }
+}
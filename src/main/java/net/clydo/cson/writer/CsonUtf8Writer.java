@@ -0,0 +1,326 @@
+/*
+ * This file is part of Cson.
+ *
+ * Cson is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by the
+ * Free Software Foundation, either version 3 of the License, or (at your
+ * option) any later version.
+ *
+ * Cson is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Cson.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ * Copyright (C) 2024 ClydoNetwork
+ */
+
+
+package net.clydo.cson.writer;
+
+import com.google.gson.FormattingStyle;
+import lombok.val;
+import net.clydo.cson.CsonConstants;
+import net.clydo.cson.SortMode;
+import net.clydo.cson.element.*;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes CsonElements as UTF-8 encoded JSON straight to an {@link OutputStream}.
+ * <p>
+ * Output matches what {@link com.google.gson.stream.JsonWriter} produces for the same formatting
+ * style. Lazily decoded strings (see {@link CsonPrimitive#rawUtf8()}) are copied out as bytes
+ * without being decoded first.
+ */
+public final class CsonUtf8Writer implements Flushable {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[8192];
+    private int count;
+
+    private final byte[] newline;
+    private final byte[] indent;
+    private final byte[] colon;
+    private final byte[] comma;
+    private final boolean prettyPrinting;
+    private final SortMode sortMode;
+
+    private int depth;
+
+    public CsonUtf8Writer(@NotNull OutputStream out) {
+        this(out, CsonConstants.getGlobalFormattingStyle());
+    }
+
+    public CsonUtf8Writer(@NotNull OutputStream out, @NotNull FormattingStyle formattingStyle) {
+        this(out, formattingStyle, CsonConstants.getSortMode());
+    }
+
+    public CsonUtf8Writer(@NotNull OutputStream out, @NotNull FormattingStyle formattingStyle, @NotNull SortMode sortMode) {
+        this.out = out;
+        this.sortMode = sortMode;
+        this.newline = formattingStyle.getNewline().getBytes(StandardCharsets.UTF_8);
+        this.indent = formattingStyle.getIndent().getBytes(StandardCharsets.UTF_8);
+        this.colon = formattingStyle.usesSpaceAfterSeparators() ? new byte[]{':', ' '} : new byte[]{':'};
+        this.comma = formattingStyle.usesSpaceAfterSeparators() && this.newline.length == 0 ? new byte[]{',', ' '} : new byte[]{','};
+        this.prettyPrinting = this.newline.length != 0 || this.indent.length != 0;
+    }
+
+    /**
+     * Writes {@code element} and flushes the buffered output.
+     *
+     * @throws IllegalArgumentException if it holds NaN or an infinite number, which a strict
+     *                                  {@link com.google.gson.stream.JsonWriter} rejects as well
+     */
+    public void write(CsonElement element) throws IOException {
+        val stack = new ArrayDeque<Container>();
+        this.writeShallow(element, stack);
+        while (!stack.isEmpty()) {
+            val container = stack.peek();
+            if (!container.children.hasNext()) {
+                stack.pop();
+                this.depth--;
+                if (!container.empty) {
+                    this.writeNewline();
+                }
+                this.writeByte(container.close);
+                continue;
+            }
+
+            this.beforeMember(container.empty);
+            container.empty = false;
+            var next = container.children.next();
+            if (next instanceof Map.Entry<?, ?> member) {
+                this.writeString((String) member.getKey());
+                this.writeBytes(this.colon, 0, this.colon.length);
+                next = member.getValue();
+            }
+            this.writeShallow((CsonElement) next, stack);
+        }
+        this.flush();
+    }
+
+    /**
+     * Writes a value, or opens a container and pushes it, so that any depth is supported.
+     */
+    private void writeShallow(CsonElement element, ArrayDeque<Container> stack) throws IOException {
+        if (element == null || element.isNull()) {
+            this.writeAscii("null");
+        } else if (element instanceof CsonPrimitive primitive) {
+            if (primitive.isNumber()) {
+                this.writeNumber(primitive.asNumber().toString());
+            } else if (primitive.isBoolean()) {
+                this.writeAscii(primitive.asBoolean() ? "true" : "false");
+            } else {
+                val raw = primitive.rawUtf8();
+                if (raw != null) {
+                    this.writeString(raw);
+                } else {
+                    this.writeString(primitive.asString());
+                }
+            }
+        } else if (element instanceof CsonArray array) {
+            this.writeByte('[');
+            this.depth++;
+            stack.push(new Container(this.sortMode.sortArray(array), ']'));
+        } else if (element instanceof CsonObject object) {
+            this.writeByte('{');
+            this.depth++;
+            stack.push(new Container(this.sortMode.sortObject(object), '}'));
+        } else {
+            throw new IllegalArgumentException("Couldn't write " + element.getClass());
+        }
+    }
+
+    private void writeNumber(String text) throws IOException {
+        if (text.equals("NaN") || text.equals("Infinity") || text.equals("-Infinity")) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + text);
+        }
+        this.writeAscii(text);
+    }
+
+    private void beforeMember(boolean first) throws IOException {
+        if (!first) {
+            this.writeBytes(this.comma, 0, this.comma.length);
+        }
+        this.writeNewline();
+    }
+
+    private void writeNewline() throws IOException {
+        if (!this.prettyPrinting) {
+            return;
+        }
+        this.writeBytes(this.newline, 0, this.newline.length);
+        for (int i = 0; i < this.depth; i++) {
+            this.writeBytes(this.indent, 0, this.indent.length);
+        }
+    }
+
+    private void writeString(String string) throws IOException {
+        this.writeByte('"');
+        for (int i = 0, length = string.length(); i < length; i++) {
+            val c = string.charAt(i);
+            if (c < 0x80) {
+                if (c < 0x20 || c == '"' || c == '\\') {
+                    this.writeEscape(c);
+                } else {
+                    this.writeByte(c);
+                }
+            } else if (c < 0x800) {
+                this.ensureCapacity(2);
+                this.buffer[this.count++] = (byte) (0xC0 | (c >> 6));
+                this.buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c == '\u2028' || c == '\u2029') {
+                this.writeEscape(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1))) {
+                val codePoint = Character.toCodePoint(c, string.charAt(++i));
+                this.ensureCapacity(4);
+                this.buffer[this.count++] = (byte) (0xF0 | (codePoint >> 18));
+                this.buffer[this.count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                this.buffer[this.count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                this.buffer[this.count++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced, the same way String.getBytes does.
+                this.writeByte('?');
+            } else {
+                this.ensureCapacity(3);
+                this.buffer[this.count++] = (byte) (0xE0 | (c >> 12));
+                this.buffer[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                this.buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        this.writeByte('"');
+    }
+
+    /**
+     * Copies already encoded UTF-8 bytes, escaping only what JSON requires.
+     */
+    private void writeString(ByteBuffer raw) throws IOException {
+        this.writeByte('"');
+        val limit = raw.limit();
+        var runStart = raw.position();
+        for (int i = runStart; i < limit; i++) {
+            val b = raw.get(i);
+            final char escaped;
+            final int length;
+            if ((b & 0xFF) < 0x20 || b == '"' || b == '\\') {
+                escaped = (char) b;
+                length = 1;
+            } else if (b == (byte) 0xE2 && i + 2 < limit && raw.get(i + 1) == (byte) 0x80
+                    && (raw.get(i + 2) == (byte) 0xA8 || raw.get(i + 2) == (byte) 0xA9)) {
+                escaped = raw.get(i + 2) == (byte) 0xA8 ? '\u2028' : '\u2029';
+                length = 3;
+            } else {
+                continue;
+            }
+            this.copyRun(raw, runStart, i);
+            this.writeEscape(escaped);
+            i += length - 1;
+            runStart = i + 1;
+        }
+        this.copyRun(raw, runStart, limit);
+        this.writeByte('"');
+    }
+
+    private void copyRun(ByteBuffer raw, int from, int to) throws IOException {
+        while (from < to) {
+            if (this.count == this.buffer.length) {
+                this.flushBuffer();
+            }
+            val length = Math.min(to - from, this.buffer.length - this.count);
+            raw.get(from, this.buffer, this.count, length);
+            this.count += length;
+            from += length;
+        }
+    }
+
+    private void writeEscape(char c) throws IOException {
+        switch (c) {
+            case '"' -> this.writeAscii("\\\"");
+            case '\\' -> this.writeAscii("\\\\");
+            case '\t' -> this.writeAscii("\\t");
+            case '\b' -> this.writeAscii("\\b");
+            case '\n' -> this.writeAscii("\\n");
+            case '\r' -> this.writeAscii("\\r");
+            case '\f' -> this.writeAscii("\\f");
+            default -> {
+                this.ensureCapacity(6);
+                this.buffer[this.count++] = '\\';
+                this.buffer[this.count++] = 'u';
+                this.buffer[this.count++] = HEX[(c >> 12) & 0xF];
+                this.buffer[this.count++] = HEX[(c >> 8) & 0xF];
+                this.buffer[this.count++] = HEX[(c >> 4) & 0xF];
+                this.buffer[this.count++] = HEX[c & 0xF];
+            }
+        }
+    }
+
+    private void writeAscii(String ascii) throws IOException {
+        val length = ascii.length();
+        this.ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            this.buffer[this.count++] = (byte) ascii.charAt(i);
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        this.ensureCapacity(1);
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    private void writeBytes(byte[] bytes, int offset, int length) throws IOException {
+        if (length > this.buffer.length) {
+            this.flushBuffer();
+            this.out.write(bytes, offset, length);
+            return;
+        }
+        this.ensureCapacity(length);
+        System.arraycopy(bytes, offset, this.buffer, this.count, length);
+        this.count += length;
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (this.count + length > this.buffer.length) {
+            this.flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (this.count > 0) {
+            this.out.write(this.buffer, 0, this.count);
+            this.count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        this.flushBuffer();
+        this.out.flush();
+    }
+
+    /**
+     * An open array or object, with its children left to write.
+     */
+    private static final class Container {
+        final Iterator<?> children;
+        final char close;
+        boolean empty = true;
+
+        Container(Iterator<?> children, char close) {
+            this.children = children;
+            this.close = close;
+        }
+    }
+}